@@ -0,0 +1,271 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import de.schildbach.pte.dto.ResultHeader;
+
+/**
+ * Stress test for the thread-safety of providers: runs all benchmarks concurrently against a single instance of each
+ * benchmark, and thus of each provider, and compares every result against the result of a single-threaded run.
+ * Results are compared by a dump of all their fields, as the {@code toString()} of most DTOs leaves out most of the
+ * content.
+ * 
+ * <p>
+ * Run with: java -cp target/benchmarks.jar de.schildbach.pte.benchmarks.ConcurrencyStress [threads] [iterations]
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class ConcurrencyStress
+{
+	private static final Class<?>[] BENCHMARKS = { HafasBenchmark.class, EfaBenchmark.class, NavitiaBenchmark.class, TsiBenchmark.class };
+
+	private static final class Scenario
+	{
+		final String name;
+		final Object benchmark;
+		final Method method;
+		final String expected;
+
+		Scenario(final Object benchmark, final Method method) throws Exception
+		{
+			this.name = benchmark.getClass().getSimpleName() + "." + method.getName();
+			this.benchmark = benchmark;
+			this.method = method;
+			this.expected = run();
+		}
+
+		String run() throws Exception
+		{
+			try
+			{
+				return dump(method.invoke(benchmark));
+			}
+			catch (final InvocationTargetException x)
+			{
+				final Throwable cause = x.getCause();
+				if (cause instanceof Exception)
+					throw (Exception) cause;
+				throw x;
+			}
+		}
+	}
+
+	/**
+	 * Dumps every field of the DTOs reachable from the given object, with collections in iteration order, except for
+	 * sets and maps, which are sorted by the dumps of their elements or keys. The server time is left out, as it is not
+	 * deterministic.
+	 */
+	static String dump(final Object object)
+	{
+		final StringBuilder builder = new StringBuilder();
+		dump(object, builder, new IdentityHashMap<Object, Boolean>());
+		return builder.toString();
+	}
+
+	private static void dump(final Object object, final StringBuilder builder, final Map<Object, Boolean> path)
+	{
+		if (object == null)
+		{
+			builder.append("null");
+			return;
+		}
+
+		final Class<?> clazz = object.getClass();
+
+		if (object instanceof Date)
+		{
+			builder.append(((Date) object).getTime());
+		}
+		else if (clazz.isArray())
+		{
+			builder.append('[');
+			for (int i = 0; i < Array.getLength(object); i++)
+			{
+				dump(Array.get(object, i), builder, path);
+				builder.append(',');
+			}
+			builder.append(']');
+		}
+		else if (object instanceof Set)
+		{
+			final List<String> elements = new ArrayList<String>();
+			for (final Object element : (Set<?>) object)
+				elements.add(dump(element));
+			Collections.sort(elements);
+			builder.append(elements);
+		}
+		else if (object instanceof Collection)
+		{
+			builder.append('[');
+			for (final Object element : (Collection<?>) object)
+			{
+				dump(element, builder, path);
+				builder.append(',');
+			}
+			builder.append(']');
+		}
+		else if (object instanceof Map)
+		{
+			final Map<String, String> entries = new TreeMap<String, String>();
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet())
+				entries.put(dump(entry.getKey()), dump(entry.getValue()));
+			builder.append(entries);
+		}
+		else if (!clazz.getName().startsWith("de.schildbach.pte.") || clazz.isEnum())
+		{
+			builder.append(object);
+		}
+		else if (path.containsKey(object))
+		{
+			builder.append("<cycle>");
+		}
+		else
+		{
+			path.put(object, Boolean.TRUE);
+			builder.append(clazz.getSimpleName()).append('{');
+			for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass())
+			{
+				for (final Field field : c.getDeclaredFields())
+				{
+					if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+						continue;
+					// EFA takes the milliseconds of the server time from the local clock
+					if (c == ResultHeader.class && field.getName().equals("serverTime"))
+						continue;
+
+					field.setAccessible(true);
+					builder.append(field.getName()).append('=');
+					try
+					{
+						dump(field.get(object), builder, path);
+					}
+					catch (final IllegalAccessException x)
+					{
+						throw new RuntimeException(x);
+					}
+					builder.append(';');
+				}
+			}
+			builder.append('}');
+			path.remove(object);
+		}
+	}
+
+	public static void main(final String[] args) throws Exception
+	{
+		final int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		final int numIterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		final List<Scenario> scenarios = new ArrayList<Scenario>();
+		for (final Class<?> benchmarkClass : BENCHMARKS)
+		{
+			final Object benchmark = benchmarkClass.newInstance();
+			benchmarkClass.getMethod("setup").invoke(benchmark);
+			for (final Method method : benchmarkClass.getMethods())
+				if (method.isAnnotationPresent(Benchmark.class))
+					scenarios.add(new Scenario(benchmark, method));
+		}
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicReference<String> firstFailure = new AtomicReference<String>();
+		final List<Thread> threads = new ArrayList<Thread>(numThreads);
+
+		for (int t = 0; t < numThreads; t++)
+		{
+			final int offset = t;
+			final Thread thread = new Thread("stress-" + t)
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+					}
+					catch (final InterruptedException x)
+					{
+						return;
+					}
+
+					for (int i = 0; i < numIterations; i++)
+					{
+						// threads start at different scenarios, so that all of them overlap
+						final Scenario scenario = scenarios.get((offset + i) % scenarios.size());
+						String failure;
+						try
+						{
+							final String result = scenario.run();
+							failure = result.equals(scenario.expected) ? null : scenario.name + " differs:\n  expected " + scenario.expected
+									+ "\n  but was  " + result;
+						}
+						catch (final Exception x)
+						{
+							failure = scenario.name + " failed: " + x;
+						}
+
+						runs.incrementAndGet();
+						if (failure != null)
+						{
+							failures.incrementAndGet();
+							firstFailure.compareAndSet(null, failure);
+						}
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+
+		final long startTime = System.currentTimeMillis();
+		start.countDown();
+		for (final Thread thread : threads)
+			thread.join();
+		final long time = System.currentTimeMillis() - startTime;
+
+		System.out.println(scenarios.size() + " scenarios, " + numThreads + " threads, " + runs + " runs in " + time + " ms: " + failures
+				+ " failures");
+		if (firstFailure.get() != null)
+		{
+			System.out.println("first failure: " + firstFailure.get());
+			System.exit(1);
+		}
+	}
+}
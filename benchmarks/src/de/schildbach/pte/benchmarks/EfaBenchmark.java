@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.schildbach.pte.BayernProvider;
+import de.schildbach.pte.VrrProvider;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+
+/**
+ * Parses EFA departure monitors, both in the XSLT format and in the mobile format.
+ * 
+ * @author Andreas Schildbach
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EfaBenchmark
+{
+	private VrrProvider vrr;
+	private BayernProvider bayern;
+	private Date time;
+
+	@Setup
+	public void setup()
+	{
+		vrr = new VrrProvider();
+		vrr.setHttpTransport(new FixtureTransport().add("XSLT_DM_REQUEST", "efa-dm.xml", "text/xml; charset=UTF-8"));
+
+		bayern = new BayernProvider();
+		bayern.setHttpTransport(new FixtureTransport().add("DM_REQUEST", "efa-dm-mobile.xml", "text/xml; charset=UTF-8"));
+
+		time = new Date(FixtureTransport.RECORDED_AT);
+	}
+
+	@Benchmark
+	public QueryDeparturesResult xsltDepartureMonitor() throws IOException
+	{
+		return vrr.queryDepartures("20009289", time, 60, false);
+	}
+
+	@Benchmark
+	public QueryDeparturesResult mobileDepartureMonitor() throws IOException
+	{
+		return bayern.queryDepartures("1000", time, 60, false);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.schildbach.pte.util.HttpTransport;
+
+/**
+ * {@link HttpTransport} that serves recorded responses from the classpath, so that benchmarks measure nothing but the
+ * parsers. Requests are matched against a fragment of their URL, in the order the fixtures have been added.
+ * 
+ * @author Andreas Schildbach
+ */
+public final class FixtureTransport implements HttpTransport
+{
+	/** Time the fixtures have been recorded at, 2015-06-10 08:00 CEST. */
+	public static final long RECORDED_AT = 1433916000000L;
+
+	private final List<String> urlFragments = new ArrayList<String>();
+	private final List<byte[]> bodies = new ArrayList<byte[]>();
+	private final List<Map<String, List<String>>> headers = new ArrayList<Map<String, List<String>>>();
+
+	public FixtureTransport add(final String urlFragment, final String fixture, final String contentType)
+	{
+		final Map<String, List<String>> responseHeaders = new HashMap<String, List<String>>();
+		responseHeaders.put("Content-Type", Collections.singletonList(contentType));
+
+		urlFragments.add(urlFragment);
+		bodies.add(load(fixture));
+		headers.add(Collections.unmodifiableMap(responseHeaders));
+
+		return this;
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final String url = request.url.toString();
+
+		for (int i = 0; i < urlFragments.size(); i++)
+			if (url.contains(urlFragments.get(i)))
+				return new Response(request.url, 200, "OK", headers.get(i), new ByteArrayInputStream(bodies.get(i)));
+
+		throw new IOException("no fixture for " + request);
+	}
+
+	private static byte[] load(final String fixture)
+	{
+		final InputStream is = FixtureTransport.class.getResourceAsStream("fixtures/" + fixture);
+		if (is == null)
+			throw new IllegalArgumentException("unknown fixture: " + fixture);
+
+		try
+		{
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final byte[] buf = new byte[4096];
+			int read;
+			while ((read = is.read(buf)) != -1)
+				os.write(buf, 0, read);
+			return os.toByteArray();
+		}
+		catch (final IOException x)
+		{
+			throw new RuntimeException(x);
+		}
+		finally
+		{
+			try
+			{
+				is.close();
+			}
+			catch (final IOException x)
+			{
+				// swallow
+			}
+		}
+	}
+}
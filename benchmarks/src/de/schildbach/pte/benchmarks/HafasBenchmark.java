@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.schildbach.pte.BahnProvider;
+import de.schildbach.pte.RtProvider;
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.LocationType;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Parses Hafas binary trips, XML station boards and JSON getStops suggestions.
+ * 
+ * @author Andreas Schildbach
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HafasBenchmark
+{
+	private static final Location FROM = new Location(LocationType.STATION, "8000001");
+	private static final Location TO = new Location(LocationType.STATION, "8000002");
+
+	private RtProvider rt;
+	private BahnProvider bahn;
+	private Date time;
+
+	@Setup
+	public void setup()
+	{
+		rt = new RtProvider();
+		rt.setHttpTransport(new FixtureTransport().add("query.exe", "hafas-query-trips.bin", "application/octet-stream"));
+
+		bahn = new BahnProvider();
+		bahn.setHttpTransport(new FixtureTransport() //
+				.add("bhftafel.exe", "hafas-stboard.xml", "text/xml; charset=ISO-8859-1") //
+				.add("ajax-getstop.exe", "hafas-getstop.js", "text/javascript; charset=ISO-8859-1"));
+
+		time = new Date(FixtureTransport.RECORDED_AT);
+	}
+
+	@Benchmark
+	public QueryTripsResult queryTripsBinary() throws IOException
+	{
+		return rt.queryTrips(FROM, null, TO, time, true, null, null, null, null);
+	}
+
+	@Benchmark
+	public QueryDeparturesResult xmlStationBoard() throws IOException
+	{
+		return bahn.queryDepartures("8000098", time, 60, false);
+	}
+
+	@Benchmark
+	public SuggestLocationsResult jsonGetStops() throws IOException
+	{
+		return bahn.suggestLocations("Essen");
+	}
+}
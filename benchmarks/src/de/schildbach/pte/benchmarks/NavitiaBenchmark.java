@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.schildbach.pte.ParisProvider;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Parses Navitia places and departures. Departures include the follow-up request for the routes serving the stop point.
+ * 
+ * @author Andreas Schildbach
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class NavitiaBenchmark
+{
+	private ParisProvider paris;
+	private Date time;
+
+	@Setup
+	public void setup()
+	{
+		paris = new ParisProvider("token");
+		paris.setHttpTransport(new FixtureTransport() //
+				.add("/places?", "navitia-places.json", "application/json; charset=UTF-8") //
+				.add("/routes?", "navitia-routes.json", "application/json; charset=UTF-8") //
+				.add("/departures?", "navitia-departures.json", "application/json; charset=UTF-8"));
+
+		time = new Date(FixtureTransport.RECORDED_AT);
+	}
+
+	@Benchmark
+	public SuggestLocationsResult suggestLocations() throws IOException
+	{
+		return paris.suggestLocations("gare");
+	}
+
+	@Benchmark
+	public QueryDeparturesResult queryDepartures() throws IOException
+	{
+		return paris.queryDepartures("stop_point:RTP:SP:3000", time, 40, false);
+	}
+}
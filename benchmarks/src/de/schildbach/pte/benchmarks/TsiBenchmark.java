@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.schildbach.pte.PacaProvider;
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.LocationType;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Parses TSI trip point searches, by keyword and by coordinate.
+ * 
+ * @author Andreas Schildbach
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TsiBenchmark
+{
+	private static final Location MARSEILLE = new Location(LocationType.ADDRESS, null, 43290000, 5370000);
+
+	private PacaProvider paca;
+
+	@Setup
+	public void setup()
+	{
+		paca = new PacaProvider();
+		paca.setHttpTransport(new FixtureTransport().add("SearchTripPoint", "tsi-search.json", "application/json; charset=UTF-8"));
+	}
+
+	@Benchmark
+	public SuggestLocationsResult suggestLocations() throws IOException
+	{
+		return paca.suggestLocations("gare");
+	}
+
+	@Benchmark
+	public NearbyStationsResult queryNearbyStations() throws IOException
+	{
+		return paca.queryNearbyStations(MARSEILLE, 1000, 50);
+	}
+}
@@ -0,0 +1 @@
+SLs.sls={"suggestions":[{"value":"Dsseldorf Hauptbahnhof","id":"A=1@O=Dsseldorf Hauptbahnhof@X=6780000@Y=51450000@U=80@L=008000000@B=1@p=1432541167@","extId":"008000000","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6780000","ycoord":"51450000","state":"id","prodClass":"1","weight":"30000"},{"value":"Essen Kirche","id":"A=1@O=Essen Kirche@X=6781000@Y=51450700@U=80@L=008000013@B=1@p=1432541167@","extId":"008000013","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6781000","ycoord":"51450700","state":"id","prodClass":"2","weight":"29900"},{"value":"Duisburg Zoo","id":"A=1@O=Duisburg Zoo@X=6782000@Y=51451400@U=80@L=008000026@B=1@p=1432541167@","extId":"008000026","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6782000","ycoord":"51451400","state":"id","prodClass":"4","weight":"29800"},{"value":"Bochum, Berliner Platz 4","id":"A=2@O=Bochum, Berliner Platz 4@X=6783000@Y=51452100@U=103@L=980000003@B=1@p=1432541167@","extId":"008000039","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6783000","ycoord":"51452100","state":"id","prodClass":"8","weight":"29700"},{"value":"Dortmund, Messe (Museum)","id":"A=4@O=Dortmund, Messe (Museum)@X=6784000@Y=51452800@U=104@L=990000004@B=1@p=1432541167@","extId":"008000052","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6784000","ycoord":"51452800","state":"id","prodClass":"16","weight":"29600"},{"value":"Kln Markt","id":"A=1@O=Kln Markt@X=6785000@Y=51453500@U=80@L=008000065@B=1@p=1432541167@","extId":"008000065","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6785000","ycoord":"51453500","state":"id","prodClass":"32","weight":"29500"},{"value":"Wuppertal Sdstrae","id":"A=1@O=Wuppertal Sdstrae@X=6786000@Y=51454200@U=80@L=008000078@B=1@p=1432541167@","extId":"008000078","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6786000","ycoord":"51454200","state":"id","prodClass":"64","weight":"29400"},{"value":"Mlheim Bahnhof West","id":"A=1@O=Mlheim Bahnhof West@X=6787000@Y=51454900@U=80@L=008000091@B=1@p=1432541167@","extId":"008000091","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6787000","ycoord":"51454900","state":"id","prodClass":"128","weight":"29300"},{"value":"Dsseldorf, Schule 9","id":"A=2@O=Dsseldorf, Schule 9@X=6788000@Y=51455600@U=103@L=980000008@B=1@p=1432541167@","extId":"008000104","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6788000","ycoord":"51455600","state":"id","prodClass":"256","weight":"29200"},{"value":"Essen, Theater (Museum)","id":"A=4@O=Essen, Theater (Museum)@X=6789000@Y=51456300@U=104@L=990000009@B=1@p=1432541167@","extId":"008000117","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6789000","ycoord":"51456300","state":"id","prodClass":"512","weight":"29100"},{"value":"Duisburg Friedhof","id":"A=1@O=Duisburg Friedhof@X=6790000@Y=51457000@U=80@L=008000130@B=1@p=1432541167@","extId":"008000130","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6790000","ycoord":"51457000","state":"id","prodClass":"1","weight":"29000"},{"value":"Bochum Flughafen","id":"A=1@O=Bochum Flughafen@X=6791000@Y=51457700@U=80@L=008000143@B=1@p=1432541167@","extId":"008000143","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6791000","ycoord":"51457700","state":"id","prodClass":"2","weight":"28900"},{"value":"Dortmund Universitt","id":"A=1@O=Dortmund Universitt@X=6792000@Y=51458400@U=80@L=008000156@B=1@p=1432541167@","extId":"008000156","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6792000","ycoord":"51458400","state":"id","prodClass":"4","weight":"28800"},{"value":"Kln, Hafen 14","id":"A=2@O=Kln, Hafen 14@X=6793000@Y=51459100@U=103@L=980000013@B=1@p=1432541167@","extId":"008000169","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6793000","ycoord":"51459100","state":"id","prodClass":"8","weight":"28700"},{"value":"Wuppertal, Rathaus (Museum)","id":"A=4@O=Wuppertal, Rathaus (Museum)@X=6794000@Y=51459800@U=104@L=990000014@B=1@p=1432541167@","extId":"008000182","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6794000","ycoord":"51459800","state":"id","prodClass":"16","weight":"28600"},{"value":"Mlheim Am Stadtpark","id":"A=1@O=Mlheim Am Stadtpark@X=6795000@Y=51460500@U=80@L=008000195@B=1@p=1432541167@","extId":"008000195","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6795000","ycoord":"51460500","state":"id","prodClass":"32","weight":"28500"},{"value":"Dsseldorf Hauptbahnhof","id":"A=1@O=Dsseldorf Hauptbahnhof@X=6796000@Y=51461200@U=80@L=008000208@B=1@p=1432541167@","extId":"008000208","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6796000","ycoord":"51461200","state":"id","prodClass":"64","weight":"28400"},{"value":"Essen Kirche","id":"A=1@O=Essen Kirche@X=6797000@Y=51461900@U=80@L=008000221@B=1@p=1432541167@","extId":"008000221","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6797000","ycoord":"51461900","state":"id","prodClass":"128","weight":"28300"},{"value":"Duisburg, Zoo 19","id":"A=2@O=Duisburg, Zoo 19@X=6798000@Y=51462600@U=103@L=980000018@B=1@p=1432541167@","extId":"008000234","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6798000","ycoord":"51462600","state":"id","prodClass":"256","weight":"28200"},{"value":"Bochum, Berliner Platz (Museum)","id":"A=4@O=Bochum, Berliner Platz (Museum)@X=6799000@Y=51463300@U=104@L=990000019@B=1@p=1432541167@","extId":"008000247","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6799000","ycoord":"51463300","state":"id","prodClass":"512","weight":"28100"},{"value":"Dortmund Messe","id":"A=1@O=Dortmund Messe@X=6800000@Y=51464000@U=80@L=008000260@B=1@p=1432541167@","extId":"008000260","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6800000","ycoord":"51464000","state":"id","prodClass":"1","weight":"28000"},{"value":"Kln Markt","id":"A=1@O=Kln Markt@X=6801000@Y=51464700@U=80@L=008000273@B=1@p=1432541167@","extId":"008000273","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6801000","ycoord":"51464700","state":"id","prodClass":"2","weight":"27900"},{"value":"Wuppertal Sdstrae","id":"A=1@O=Wuppertal Sdstrae@X=6802000@Y=51465400@U=80@L=008000286@B=1@p=1432541167@","extId":"008000286","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6802000","ycoord":"51465400","state":"id","prodClass":"4","weight":"27800"},{"value":"Mlheim, Bahnhof West 24","id":"A=2@O=Mlheim, Bahnhof West 24@X=6803000@Y=51466100@U=103@L=980000023@B=1@p=1432541167@","extId":"008000299","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6803000","ycoord":"51466100","state":"id","prodClass":"8","weight":"27700"},{"value":"Dsseldorf, Schule (Museum)","id":"A=4@O=Dsseldorf, Schule (Museum)@X=6804000@Y=51466800@U=104@L=990000024@B=1@p=1432541167@","extId":"008000312","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6804000","ycoord":"51466800","state":"id","prodClass":"16","weight":"27600"},{"value":"Essen Theater","id":"A=1@O=Essen Theater@X=6805000@Y=51467500@U=80@L=008000325@B=1@p=1432541167@","extId":"008000325","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6805000","ycoord":"51467500","state":"id","prodClass":"32","weight":"27500"},{"value":"Duisburg Friedhof","id":"A=1@O=Duisburg Friedhof@X=6806000@Y=51468200@U=80@L=008000338@B=1@p=1432541167@","extId":"008000338","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6806000","ycoord":"51468200","state":"id","prodClass":"64","weight":"27400"},{"value":"Bochum Flughafen","id":"A=1@O=Bochum Flughafen@X=6807000@Y=51468900@U=80@L=008000351@B=1@p=1432541167@","extId":"008000351","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6807000","ycoord":"51468900","state":"id","prodClass":"128","weight":"27300"},{"value":"Dortmund, Universitt 29","id":"A=2@O=Dortmund, Universitt 29@X=6808000@Y=51469600@U=103@L=980000028@B=1@p=1432541167@","extId":"008000364","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6808000","ycoord":"51469600","state":"id","prodClass":"256","weight":"27200"},{"value":"Kln, Hafen (Museum)","id":"A=4@O=Kln, Hafen (Museum)@X=6809000@Y=51470300@U=104@L=990000029@B=1@p=1432541167@","extId":"008000377","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6809000","ycoord":"51470300","state":"id","prodClass":"512","weight":"27100"},{"value":"Wuppertal Rathaus","id":"A=1@O=Wuppertal Rathaus@X=6810000@Y=51471000@U=80@L=008000390@B=1@p=1432541167@","extId":"008000390","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6810000","ycoord":"51471000","state":"id","prodClass":"1","weight":"27000"},{"value":"Mlheim Am Stadtpark","id":"A=1@O=Mlheim Am Stadtpark@X=6811000@Y=51471700@U=80@L=008000403@B=1@p=1432541167@","extId":"008000403","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6811000","ycoord":"51471700","state":"id","prodClass":"2","weight":"26900"},{"value":"Dsseldorf Hauptbahnhof","id":"A=1@O=Dsseldorf Hauptbahnhof@X=6812000@Y=51472400@U=80@L=008000416@B=1@p=1432541167@","extId":"008000416","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6812000","ycoord":"51472400","state":"id","prodClass":"4","weight":"26800"},{"value":"Essen, Kirche 34","id":"A=2@O=Essen, Kirche 34@X=6813000@Y=51473100@U=103@L=980000033@B=1@p=1432541167@","extId":"008000429","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6813000","ycoord":"51473100","state":"id","prodClass":"8","weight":"26700"},{"value":"Duisburg, Zoo (Museum)","id":"A=4@O=Duisburg, Zoo (Museum)@X=6814000@Y=51473800@U=104@L=990000034@B=1@p=1432541167@","extId":"008000442","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6814000","ycoord":"51473800","state":"id","prodClass":"16","weight":"26600"},{"value":"Bochum Berliner Platz","id":"A=1@O=Bochum Berliner Platz@X=6815000@Y=51474500@U=80@L=008000455@B=1@p=1432541167@","extId":"008000455","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6815000","ycoord":"51474500","state":"id","prodClass":"32","weight":"26500"},{"value":"Dortmund Messe","id":"A=1@O=Dortmund Messe@X=6816000@Y=51475200@U=80@L=008000468@B=1@p=1432541167@","extId":"008000468","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6816000","ycoord":"51475200","state":"id","prodClass":"64","weight":"26400"},{"value":"Kln Markt","id":"A=1@O=Kln Markt@X=6817000@Y=51475900@U=80@L=008000481@B=1@p=1432541167@","extId":"008000481","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6817000","ycoord":"51475900","state":"id","prodClass":"128","weight":"26300"},{"value":"Wuppertal, Sdstrae 39","id":"A=2@O=Wuppertal, Sdstrae 39@X=6818000@Y=51476600@U=103@L=980000038@B=1@p=1432541167@","extId":"008000494","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6818000","ycoord":"51476600","state":"id","prodClass":"256","weight":"26200"},{"value":"Mlheim, Bahnhof West (Museum)","id":"A=4@O=Mlheim, Bahnhof West (Museum)@X=6819000@Y=51477300@U=104@L=990000039@B=1@p=1432541167@","extId":"008000507","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6819000","ycoord":"51477300","state":"id","prodClass":"512","weight":"26100"},{"value":"Dsseldorf Schule","id":"A=1@O=Dsseldorf Schule@X=6820000@Y=51478000@U=80@L=008000520@B=1@p=1432541167@","extId":"008000520","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6820000","ycoord":"51478000","state":"id","prodClass":"1","weight":"26000"},{"value":"Essen Theater","id":"A=1@O=Essen Theater@X=6821000@Y=51478700@U=80@L=008000533@B=1@p=1432541167@","extId":"008000533","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6821000","ycoord":"51478700","state":"id","prodClass":"2","weight":"25900"},{"value":"Duisburg Friedhof","id":"A=1@O=Duisburg Friedhof@X=6822000@Y=51479400@U=80@L=008000546@B=1@p=1432541167@","extId":"008000546","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6822000","ycoord":"51479400","state":"id","prodClass":"4","weight":"25800"},{"value":"Bochum, Flughafen 44","id":"A=2@O=Bochum, Flughafen 44@X=6823000@Y=51480100@U=103@L=980000043@B=1@p=1432541167@","extId":"008000559","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6823000","ycoord":"51480100","state":"id","prodClass":"8","weight":"25700"},{"value":"Dortmund, Universitt (Museum)","id":"A=4@O=Dortmund, Universitt (Museum)@X=6824000@Y=51480800@U=104@L=990000044@B=1@p=1432541167@","extId":"008000572","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6824000","ycoord":"51480800","state":"id","prodClass":"16","weight":"25600"},{"value":"Kln Hafen","id":"A=1@O=Kln Hafen@X=6825000@Y=51481500@U=80@L=008000585@B=1@p=1432541167@","extId":"008000585","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6825000","ycoord":"51481500","state":"id","prodClass":"32","weight":"25500"},{"value":"Wuppertal Rathaus","id":"A=1@O=Wuppertal Rathaus@X=6826000@Y=51482200@U=80@L=008000598@B=1@p=1432541167@","extId":"008000598","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6826000","ycoord":"51482200","state":"id","prodClass":"64","weight":"25400"},{"value":"Mlheim Am Stadtpark","id":"A=1@O=Mlheim Am Stadtpark@X=6827000@Y=51482900@U=80@L=008000611@B=1@p=1432541167@","extId":"008000611","type":"1","typeStr":"[Bhf/Hst]","xcoord":"6827000","ycoord":"51482900","state":"id","prodClass":"128","weight":"25300"},{"value":"Dsseldorf, Hauptbahnhof 49","id":"A=2@O=Dsseldorf, Hauptbahnhof 49@X=6828000@Y=51483600@U=103@L=980000048@B=1@p=1432541167@","extId":"008000624","type":"2","typeStr":"[Bhf/Hst]","xcoord":"6828000","ycoord":"51483600","state":"id","prodClass":"256","weight":"25200"},{"value":"Essen, Kirche (Museum)","id":"A=4@O=Essen, Kirche (Museum)@X=6829000@Y=51484300@U=104@L=990000049@B=1@p=1432541167@","extId":"008000637","type":"4","typeStr":"[Bhf/Hst]","xcoord":"6829000","ycoord":"51484300","state":"id","prodClass":"512","weight":"25100"}]};SLs.showSuggestion();
\ No newline at end of file
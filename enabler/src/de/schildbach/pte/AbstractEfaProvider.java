@@ -41,7 +41,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 import de.schildbach.pte.dto.Departure;
 import de.schildbach.pte.dto.Fare;
@@ -66,6 +65,8 @@ import de.schildbach.pte.dto.Trip;
 import de.schildbach.pte.exception.InvalidDataException;
 import de.schildbach.pte.exception.ParserException;
 import de.schildbach.pte.util.ParserUtils;
+import de.schildbach.pte.util.Trace;
+import de.schildbach.pte.util.XmlPullParserPool;
 import de.schildbach.pte.util.XmlPullUtil;
 
 /**
@@ -100,15 +101,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 	private boolean useStringCoordListOutputFormat = true;
 	private float fareCorrectionFactor = 1f;
 
-	private final XmlPullParserFactory parserFactory;
-
 	private static class Context implements QueryTripsContext
 	{
 		private final String context;
+		private final String sessionKey;
 
-		private Context(final String context)
+		private Context(final String context, final String sessionKey)
 		{
 			this.context = context;
+			this.sessionKey = sessionKey;
 		}
 
 		public boolean canQueryLater()
@@ -145,15 +146,6 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 	public AbstractEfaProvider(final String departureMonitorEndpoint, final String tripEndpoint, final String stopFinderEndpoint,
 			final String coordEndpoint)
 	{
-		try
-		{
-			parserFactory = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
-		}
-		catch (final XmlPullParserException x)
-		{
-			throw new RuntimeException(x);
-		}
-
 		this.departureMonitorEndpoint = departureMonitorEndpoint;
 		this.tripEndpoint = tripEndpoint;
 		this.stopFinderEndpoint = stopFinderEndpoint;
@@ -162,72 +154,86 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 
 	protected void setAdditionalQueryParameter(final String additionalQueryParameter)
 	{
+		checkNotFrozen();
 		this.additionalQueryParameter = additionalQueryParameter;
 	}
 
 	protected void setRequestUrlEncoding(final Charset requestUrlEncoding)
 	{
+		checkNotFrozen();
 		this.requestUrlEncoding = requestUrlEncoding;
 	}
 
 	protected void setHttpReferer(final String httpReferer)
 	{
+		checkNotFrozen();
 		this.httpReferer = httpReferer;
 		this.httpRefererTrip = httpReferer;
 	}
 
 	public void setHttpRefererTrip(final String httpRefererTrip)
 	{
+		checkNotFrozen();
 		this.httpRefererTrip = httpRefererTrip;
 	}
 
 	protected void setHttpPost(final boolean httpPost)
 	{
+		checkNotFrozen();
 		this.httpPost = httpPost;
 	}
 
 	protected void setUseRealtime(final boolean useRealtime)
 	{
+		checkNotFrozen();
 		this.useRealtime = useRealtime;
 	}
 
 	protected void setIncludeRegionId(final boolean includeRegionId)
 	{
+		checkNotFrozen();
 		this.includeRegionId = includeRegionId;
 	}
 
 	protected void setUseProxFootSearch(final boolean useProxFootSearch)
 	{
+		checkNotFrozen();
 		this.useProxFootSearch = useProxFootSearch;
 	}
 
 	protected void setUseRouteIndexAsTripId(final boolean useRouteIndexAsTripId)
 	{
+		checkNotFrozen();
 		this.useRouteIndexAsTripId = useRouteIndexAsTripId;
 	}
 
 	protected void setUseLineRestriction(final boolean useLineRestriction)
 	{
+		checkNotFrozen();
 		this.useLineRestriction = useLineRestriction;
 	}
 
 	protected void setUseStringCoordListOutputFormat(final boolean useStringCoordListOutputFormat)
 	{
+		checkNotFrozen();
 		this.useStringCoordListOutputFormat = useStringCoordListOutputFormat;
 	}
 
 	protected void setCanAcceptPoiId(final boolean canAcceptPoiId)
 	{
+		checkNotFrozen();
 		this.canAcceptPoiId = canAcceptPoiId;
 	}
 
 	protected void setNeedsSpEncId(final boolean needsSpEncId)
 	{
+		checkNotFrozen();
 		this.needsSpEncId = needsSpEncId;
 	}
 
 	protected void setFareCorrectionFactor(final float fareCorrectionFactor)
 	{
+		checkNotFrozen();
 		this.fareCorrectionFactor = fareCorrectionFactor;
 	}
 
@@ -256,7 +262,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(uri);
 		// System.out.println(parameters);
 
-		final CharSequence page = ParserUtils.scrape(uri.toString(), httpPost ? parameters.substring(1) : null, UTF_8);
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, UTF_8);
 		final ResultHeader header = new ResultHeader(SERVER_PRODUCT);
 
 		try
@@ -377,14 +383,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterItdRequest(pp);
 
@@ -441,6 +448,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -456,14 +464,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterEfa(pp);
 
@@ -536,6 +545,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -565,14 +575,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterItdRequest(pp);
 
@@ -622,6 +633,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -637,14 +649,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterEfa(pp);
 
@@ -697,6 +710,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -910,14 +924,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterItdRequest(pp);
 
@@ -997,6 +1012,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -1484,14 +1500,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterItdRequest(pp);
 
@@ -1684,6 +1701,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -1700,14 +1718,15 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(parameters);
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpReferer, null);
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			final XmlPullParser pp = parserFactory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(is, null);
 			final ResultHeader header = enterEfa(pp);
 			final QueryDeparturesResult result = new QueryDeparturesResult(header);
@@ -1777,6 +1796,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		{
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -2168,15 +2188,22 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(uri);
 		// System.out.println(parameters);
 
+		final String sessionKey = newSessionKey();
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
+		final Trace.Span span = Trace.start("efa.xml.trips", id());
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpRefererTrip, sessionCookieName);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpRefererTrip,
+					session(sessionKey));
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			return queryTrips(uri.toString(), is);
+			pp = XmlPullParserPool.obtain();
+			pp.setInput(is, null);
+
+			return traced(span, queryTrips(uri.toString(), pp, sessionKey));
 		}
 		catch (final XmlPullParserException x)
 		{
@@ -2188,8 +2215,10 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		}
 		finally
 		{
+			span.end();
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -2207,15 +2236,22 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		// System.out.println(uri);
 		// System.out.println(parameters);
 
+		final String sessionKey = newSessionKey();
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
+		final Trace.Span span = Trace.start("efa.mobile.trips", id());
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), httpPost ? parameters.substring(1) : null, null, httpRefererTrip, sessionCookieName);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), httpPost ? parameters.substring(1) : null, null, httpRefererTrip,
+					session(sessionKey));
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			return queryTripsMobile(uri.toString(), from, via, to, is);
+			pp = XmlPullParserPool.obtain();
+			pp.setInput(is, null);
+
+			return traced(span, queryTripsMobile(uri.toString(), from, via, to, pp, sessionKey));
 		}
 		catch (final XmlPullParserException x)
 		{
@@ -2227,8 +2263,10 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		}
 		finally
 		{
+			span.end();
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -2240,14 +2278,19 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		uri.append("&command=").append(later ? "tripNext" : "tripPrev");
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
+		final Trace.Span span = Trace.start("efa.xml.trips", id());
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), null, null, httpRefererTrip, sessionCookieName);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), null, null, httpRefererTrip, session(context.sessionKey));
 			firstChars = ParserUtils.peekFirstChars(is);
 
-			return queryTrips(uri.toString(), is);
+			pp = XmlPullParserPool.obtain();
+			pp.setInput(is, null);
+
+			return traced(span, queryTrips(uri.toString(), pp, context.sessionKey));
 		}
 		catch (final XmlPullParserException x)
 		{
@@ -2259,8 +2302,10 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		}
 		finally
 		{
+			span.end();
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -2272,15 +2317,20 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		uri.append("&command=").append(later ? "tripNext" : "tripPrev");
 
 		InputStream is = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
+		final Trace.Span span = Trace.start("efa.mobile.trips", id());
 
 		try
 		{
-			is = ParserUtils.scrapeInputStream(uri.toString(), null, null, httpRefererTrip, sessionCookieName);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri.toString(), null, null, httpRefererTrip, session(context.sessionKey));
 			firstChars = ParserUtils.peekFirstChars(is);
 			is.mark(512);
 
-			return queryTripsMobile(uri.toString(), null, null, null, is);
+			pp = XmlPullParserPool.obtain();
+			pp.setInput(is, null);
+
+			return traced(span, queryTripsMobile(uri.toString(), null, null, null, pp, context.sessionKey));
 		}
 		catch (final XmlPullParserException x)
 		{
@@ -2292,17 +2342,17 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		}
 		finally
 		{
+			span.end();
 			if (is != null)
 				is.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
-	private QueryTripsResult queryTrips(final String uri, final InputStream is) throws XmlPullParserException, IOException
+	private QueryTripsResult queryTrips(final String uri, final XmlPullParser pp, final String sessionKey) throws XmlPullParserException, IOException
 	{
 		// System.out.println(uri);
 
-		final XmlPullParser pp = parserFactory.newPullParser();
-		pp.setInput(is, null);
 		final ResultHeader header = enterItdRequest(pp);
 		final Object context = header.context;
 
@@ -2849,16 +2899,14 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 			XmlPullUtil.next(pp);
 		}
 
-		return new QueryTripsResult(header, uri, from, via, to, new Context(commandLink((String) context, requestId)), trips);
+		return new QueryTripsResult(header, uri, from, via, to, new Context(commandLink((String) context, requestId), sessionKey), trips);
 	}
 
-	private QueryTripsResult queryTripsMobile(final String uri, final Location from, final Location via, final Location to, final InputStream is)
-			throws XmlPullParserException, IOException
+	private QueryTripsResult queryTripsMobile(final String uri, final Location from, final Location via, final Location to, final XmlPullParser pp,
+			final String sessionKey) throws XmlPullParserException, IOException
 	{
 		// System.out.println(uri);
 
-		final XmlPullParser pp = parserFactory.newPullParser();
-		pp.setInput(is, null);
 		final ResultHeader header = enterEfa(pp);
 
 		final Calendar plannedTime = new GregorianCalendar(timeZone);
@@ -3114,7 +3162,7 @@ public abstract class AbstractEfaProvider extends AbstractNetworkProvider
 		if (trips.size() > 0)
 		{
 			final String[] context = (String[]) header.context;
-			return new QueryTripsResult(header, uri, from, via, to, new Context(commandLink(context[0], context[1])), trips);
+			return new QueryTripsResult(header, uri, from, via, to, new Context(commandLink(context[0], context[1]), sessionKey), trips);
 		}
 		else
 		{
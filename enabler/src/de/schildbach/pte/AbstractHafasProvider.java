@@ -17,15 +17,15 @@
 
 package de.schildbach.pte;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +38,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,7 +47,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
 
 import de.schildbach.pte.dto.Departure;
 import de.schildbach.pte.dto.Line;
@@ -67,9 +67,10 @@ import de.schildbach.pte.dto.SuggestedLocation;
 import de.schildbach.pte.dto.Trip;
 import de.schildbach.pte.exception.ParserException;
 import de.schildbach.pte.exception.SessionExpiredException;
-import de.schildbach.pte.util.LittleEndianDataInputStream;
+import de.schildbach.pte.util.MultiStringReplaceReader;
 import de.schildbach.pte.util.ParserUtils;
-import de.schildbach.pte.util.StringReplaceReader;
+import de.schildbach.pte.util.Trace;
+import de.schildbach.pte.util.XmlPullParserPool;
 import de.schildbach.pte.util.XmlPullUtil;
 
 /**
@@ -102,12 +103,14 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		public final String laterContext;
 		public final String earlierContext;
 		public final int sequence;
+		public final String sessionKey;
 
-		public Context(final String laterContext, final String earlierContext, final int sequence)
+		public Context(final String laterContext, final String earlierContext, final int sequence, final String sessionKey)
 		{
 			this.laterContext = laterContext;
 			this.earlierContext = earlierContext;
 			this.sequence = sequence;
+			this.sessionKey = sessionKey;
 		}
 
 		public boolean canQueryLater()
@@ -128,14 +131,17 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		public final String ld;
 		public final int usedBufferSize;
 		private final boolean canQueryMore;
+		public final String sessionKey;
 
-		public QueryTripsBinaryContext(final String ident, final int seqNr, final String ld, final int usedBufferSize, final boolean canQueryMore)
+		public QueryTripsBinaryContext(final String ident, final int seqNr, final String ld, final int usedBufferSize, final boolean canQueryMore,
+				final String sessionKey)
 		{
 			this.ident = ident;
 			this.seqNr = seqNr;
 			this.ld = ld;
 			this.usedBufferSize = usedBufferSize;
 			this.canQueryMore = canQueryMore;
+			this.sessionKey = sessionKey;
 		}
 
 		public boolean canQueryLater()
@@ -167,56 +173,67 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 	protected void setClientType(final String clientType)
 	{
+		checkNotFrozen();
 		this.clientType = clientType;
 	}
 
 	protected void setAccessId(final String accessId)
 	{
+		checkNotFrozen();
 		this.accessId = accessId;
 	}
 
 	protected void setDominantPlanStopTime(final boolean dominantPlanStopTime)
 	{
+		checkNotFrozen();
 		this.dominantPlanStopTime = dominantPlanStopTime;
 	}
 
 	protected void setJsonGetStopsEncoding(final Charset jsonGetStopsEncoding)
 	{
+		checkNotFrozen();
 		this.jsonGetStopsEncoding = jsonGetStopsEncoding;
 	}
 
 	protected void setJsonGetStopsUseWeight(final boolean jsonGetStopsUseWeight)
 	{
+		checkNotFrozen();
 		this.jsonGetStopsUseWeight = jsonGetStopsUseWeight;
 	}
 
 	protected void setJsonNearbyStationsEncoding(final Charset jsonNearbyStationsEncoding)
 	{
+		checkNotFrozen();
 		this.jsonNearbyStationsEncoding = jsonNearbyStationsEncoding;
 	}
 
 	protected void setUseIso8601(final boolean useIso8601)
 	{
+		checkNotFrozen();
 		this.useIso8601 = useIso8601;
 	}
 
 	protected void setExtXmlEndpoint(final String extXmlEndpoint)
 	{
+		checkNotFrozen();
 		this.extXmlEndpoint = extXmlEndpoint;
 	}
 
 	protected void setStationBoardHasStationTable(final boolean stationBoardHasStationTable)
 	{
+		checkNotFrozen();
 		this.stationBoardHasStationTable = stationBoardHasStationTable;
 	}
 
 	protected void setStationBoardHasLocation(final boolean stationBoardHasLocation)
 	{
+		checkNotFrozen();
 		this.stationBoardHasLocation = stationBoardHasLocation;
 	}
 
 	protected void setStationBoardCanDoEquivs(final boolean canDoEquivs)
 	{
+		checkNotFrozen();
 		this.stationBoardCanDoEquivs = canDoEquivs;
 	}
 
@@ -365,7 +382,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 	protected final SuggestLocationsResult jsonGetStops(final String uri) throws IOException
 	{
-		final CharSequence page = ParserUtils.scrape(uri, null, jsonGetStopsEncoding);
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri, null, jsonGetStopsEncoding);
 
 		// System.out.println(uri);
 		// System.out.println(page);
@@ -454,7 +471,15 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(stationBoardEndpoint);
 		appendXmlStationBoardParameters(uri, time, stationId, maxDepartures, equivs, "vs_java3");
 
-		return xmlStationBoard(uri.toString(), stationId);
+		final Trace.Span span = Trace.start("hafas.xml.stationboard", id());
+		try
+		{
+			return traced(span, xmlStationBoard(uri.toString(), stationId));
+		}
+		finally
+		{
+			span.end();
+		}
 	}
 
 	protected void appendXmlStationBoardParameters(final StringBuilder uri, final Date time, final String stationId, final int maxDepartures,
@@ -496,27 +521,34 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 	{
 		final String normalizedStationId = normalizeStationId(stationId);
 
-		StringReplaceReader reader = null;
+		MultiStringReplaceReader reader = null;
+		XmlPullParser pp = null;
 
 		try
 		{
-			// work around unparsable XML
-			reader = new StringReplaceReader(new InputStreamReader(ParserUtils.scrapeInputStream(uri), ISO_8859_1), " & ", " &amp; ");
-			reader.replace("<b>", " ");
-			reader.replace("</b>", " ");
-			reader.replace("<u>", " ");
-			reader.replace("</u>", " ");
-			reader.replace("<br />", " ");
-			reader.replace(" ->", " &#x2192;"); // right arrow
-			reader.replace(" <-", " &#x2190;"); // left arrow
-			reader.replace(" <> ", " &#x2194; "); // left-right arrow
+			// work around unparsable XML, each pass working on the output of the previous one; arrows get a pass each,
+			// as they compete for shared spaces
+			final MultiStringReplaceReader markup = new MultiStringReplaceReader(new InputStreamReader(ParserUtils.scrapeInputStream(
+					httpTransport(), uri), ISO_8859_1));
+			markup.replace(" & ", " &amp; ");
+			markup.replace("<b>", " ");
+			markup.replace("</b>", " ");
+			markup.replace("<u>", " ");
+			markup.replace("</u>", " ");
+			markup.replace("<br />", " ");
+			final MultiStringReplaceReader rightArrows = new MultiStringReplaceReader(markup);
+			rightArrows.replace(" ->", " &#x2192;"); // right arrow
+			final MultiStringReplaceReader leftArrows = new MultiStringReplaceReader(rightArrows);
+			leftArrows.replace(" <-", " &#x2190;"); // left arrow
+			final MultiStringReplaceReader leftRightArrows = new MultiStringReplaceReader(leftArrows);
+			leftRightArrows.replace(" <> ", " &#x2194; "); // left-right arrow
+			reader = new MultiStringReplaceReader(leftRightArrows);
 			addCustomReplaces(reader);
 
 			// System.out.println(uri);
 			// ParserUtils.printFromReader(reader);
 
-			final XmlPullParserFactory factory = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
-			final XmlPullParser pp = factory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(reader);
 
 			pp.nextTag();
@@ -737,6 +769,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		{
 			if (reader != null)
 				reader.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -749,7 +782,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		return null;
 	}
 
-	protected void addCustomReplaces(final StringReplaceReader reader)
+	protected void addCustomReplaces(final MultiStringReplaceReader reader)
 	{
 	}
 
@@ -850,7 +883,15 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		conReq.append(" sMode=\"N\"/>");
 		conReq.append("</ConReq>");
 
-		return queryTripsXml(null, true, conReq, from, via, to);
+		final Trace.Span span = Trace.start("hafas.xml.trips", id());
+		try
+		{
+			return traced(span, queryTripsXml(null, true, conReq, from, via, to));
+		}
+		finally
+		{
+			span.end();
+		}
 	}
 
 	protected final QueryTripsResult queryMoreTripsXml(final QueryTripsContext contextObj, final boolean later) throws IOException
@@ -862,7 +903,15 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		conScrReq.append("<ConResCtxt>").append(later ? context.laterContext : context.earlierContext).append("</ConResCtxt>");
 		conScrReq.append("</ConScrReq>");
 
-		return queryTripsXml(context, later, conScrReq, null, null, null);
+		final Trace.Span span = Trace.start("hafas.xml.trips", id());
+		try
+		{
+			return traced(span, queryTripsXml(context, later, conScrReq, null, null, null));
+		}
+		finally
+		{
+			span.end();
+		}
 	}
 
 	private QueryTripsResult queryTripsXml(final Context previousContext, final boolean later, final CharSequence conReq, final Location from,
@@ -871,20 +920,21 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		final String request = wrapReqC(conReq, null);
 
 		// System.out.println(request);
-		// ParserUtils.printXml(ParserUtils.scrape(queryEndpoint, request, null, null));
+		// ParserUtils.printXml(ParserUtils.scrape(httpTransport(), queryEndpoint, request, null, null));
 
 		Reader reader = null;
+		XmlPullParser pp = null;
 		String firstChars = null;
 
 		try
 		{
 			final String endpoint = extXmlEndpoint != null ? extXmlEndpoint : queryEndpoint;
-			final InputStream is = ParserUtils.scrapeInputStream(endpoint, request, null, null, sessionCookieName);
+			final String sessionKey = previousContext != null ? previousContext.sessionKey : newSessionKey();
+			final InputStream is = ParserUtils.scrapeInputStream(httpTransport(), endpoint, request, null, null, session(sessionKey));
 			firstChars = ParserUtils.peekFirstChars(is);
 			reader = new InputStreamReader(is, ISO_8859_1);
 
-			final XmlPullParserFactory factory = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
-			final XmlPullParser pp = factory.newPullParser();
+			pp = XmlPullParserPool.obtain();
 			pp.setInput(reader);
 
 			XmlPullUtil.require(pp, "ResC");
@@ -939,11 +989,11 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 			final String c = XmlPullUtil.optValueTag(pp, "ConResCtxt", null);
 			final Context context;
 			if (previousContext == null)
-				context = new Context(c, c, 0);
+				context = new Context(c, c, 0, sessionKey);
 			else if (later)
-				context = new Context(c, previousContext.earlierContext, previousContext.sequence + 1);
+				context = new Context(c, previousContext.earlierContext, previousContext.sequence + 1, sessionKey);
 			else
-				context = new Context(previousContext.laterContext, c, previousContext.sequence + 1);
+				context = new Context(previousContext.laterContext, c, previousContext.sequence + 1, sessionKey);
 
 			XmlPullUtil.enter(pp, "ConnectionList");
 
@@ -1242,6 +1292,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		{
 			if (reader != null)
 				reader.close();
+			XmlPullParserPool.recycle(pp);
 		}
 	}
 
@@ -1486,7 +1537,15 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(queryEndpoint);
 		appendQueryTripsBinaryParameters(uri, from, via, to, date, dep, products, accessibility, options);
 
-		return queryTripsBinary(uri.toString(), from, via, to, QUERY_TRIPS_BINARY_BUFFER_SIZE);
+		final Trace.Span span = Trace.start("hafas.binary.trips", id());
+		try
+		{
+			return traced(span, queryTripsBinary(uri.toString(), from, via, to, QUERY_TRIPS_BINARY_BUFFER_SIZE, newSessionKey()));
+		}
+		finally
+		{
+			span.end();
+		}
 	}
 
 	protected void appendQueryMoreTripsBinaryParameters(final StringBuilder uri, final QueryTripsBinaryContext context, final boolean later)
@@ -1507,24 +1566,61 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(queryEndpoint);
 		appendQueryMoreTripsBinaryParameters(uri, context, later);
 
-		return queryTripsBinary(uri.toString(), null, null, null, QUERY_TRIPS_BINARY_BUFFER_SIZE + context.usedBufferSize);
+		final Trace.Span span = Trace.start("hafas.binary.trips", id());
+		try
+		{
+			return traced(span, queryTripsBinary(uri.toString(), null, null, null, QUERY_TRIPS_BINARY_BUFFER_SIZE + context.usedBufferSize,
+					context.sessionKey));
+		}
+		finally
+		{
+			span.end();
+		}
 	}
 
-	private class CustomBufferedInputStream extends BufferedInputStream
+	private static final int MAX_POOLED_BINARY_BUFFER_SIZE = 2 * 1024 * 1024;
+	private static final ThreadLocal<byte[]> binaryBuffer = new ThreadLocal<byte[]>();
+
+	/**
+	 * Read the whole response into a buffer that is reused by subsequent queries on the same thread. The returned buffer
+	 * is only valid until the next call.
+	 */
+	private static ByteBuffer readBinary(final InputStream is, final int expectedSize) throws IOException
 	{
-		public CustomBufferedInputStream(final InputStream in)
-		{
-			super(in);
-		}
+		byte[] buffer = binaryBuffer.get();
+		if (buffer == null || buffer.length < expectedSize)
+			buffer = new byte[expectedSize];
 
-		public int getCount()
+		int count = 0;
+		while (true)
 		{
-			return count;
+			if (count == buffer.length)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+
+			final int read = is.read(buffer, count, buffer.length - count);
+			if (read == -1)
+				break;
+			count += read;
 		}
+
+		if (buffer.length <= MAX_POOLED_BINARY_BUFFER_SIZE)
+			binaryBuffer.set(buffer);
+
+		return ByteBuffer.wrap(buffer, 0, count).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static int readShort(final ByteBuffer buf)
+	{
+		return buf.getShort() & 0xffff;
+	}
+
+	private static void skip(final ByteBuffer buf, final int bytes)
+	{
+		buf.position(buf.position() + bytes);
 	}
 
 	private QueryTripsResult queryTripsBinary(final String uri, final Location from, final Location via, final Location to,
-			final int expectedBufferSize) throws IOException
+			final int expectedBufferSize, final String sessionKey) throws IOException
 	{
 		/*
 		 * Many thanks to Malte Starostik and Robert, who helped a lot with analyzing this API!
@@ -1532,111 +1628,102 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 		// System.out.println(uri);
 
-		LittleEndianDataInputStream is = null;
+		InputStream is = null;
 
 		try
 		{
-			final CustomBufferedInputStream bis = new CustomBufferedInputStream(ParserUtils.scrapeInputStream(uri, sessionCookieName));
-			final String firstChars = ParserUtils.peekFirstChars(bis);
+			is = ParserUtils.scrapeInputStream(httpTransport(), uri, session(sessionKey));
+			final String firstChars = ParserUtils.peekFirstChars(is);
 
-			// initialize input stream
-			is = new LittleEndianDataInputStream(bis);
-			is.mark(expectedBufferSize);
+			// read whole response, all tables are accessed by absolute offsets
+			final ByteBuffer buf = readBinary(is, expectedBufferSize);
 
 			// quick check of status
-			final int version = is.readShortReverse();
+			final int version = readShort(buf);
 			if (version != 6 && version != 5)
 				throw new IllegalStateException("unknown version: " + version + ", first chars: " + firstChars);
 			final ResultHeader header = new ResultHeader(SERVER_PRODUCT, Integer.toString(version), 0, null);
 
 			// quick seek for pointers
-			is.reset();
-			is.skipBytes(0x20);
-			final int serviceDaysTablePtr = is.readIntReverse();
-			final int stringTablePtr = is.readIntReverse();
+			buf.position(0x20);
+			final int serviceDaysTablePtr = buf.getInt();
+			final int stringTablePtr = buf.getInt();
 
-			is.reset();
-			is.skipBytes(0x36);
-			final int stationTablePtr = is.readIntReverse();
-			final int commentTablePtr = is.readIntReverse();
+			buf.position(0x36);
+			final int stationTablePtr = buf.getInt();
+			final int commentTablePtr = buf.getInt();
 
-			is.reset();
-			is.skipBytes(0x46);
-			final int extensionHeaderPtr = is.readIntReverse();
+			buf.position(0x46);
+			final int extensionHeaderPtr = buf.getInt();
 
 			// read strings
-			final StringTable strings = new StringTable(is, stringTablePtr, serviceDaysTablePtr - stringTablePtr);
+			final StringTable strings = new StringTable(buf, stringTablePtr, serviceDaysTablePtr - stringTablePtr);
 
-			is.reset();
-			is.skipBytes(extensionHeaderPtr);
+			buf.position(extensionHeaderPtr);
 
 			// read extension header
-			final int extensionHeaderLength = is.readIntReverse();
+			final int extensionHeaderLength = buf.getInt();
 			if (extensionHeaderLength < 0x2c)
 				throw new IllegalStateException("too short: " + extensionHeaderLength);
 
-			is.skipBytes(12);
-			final int errorCode = is.readShortReverse();
+			skip(buf, 12);
+			final int errorCode = readShort(buf);
 
 			if (errorCode == 0)
 			{
 				// string encoding
-				is.skipBytes(14);
-				final Charset stringEncoding = Charset.forName(strings.read(is));
+				skip(buf, 14);
+				final Charset stringEncoding = Charset.forName(strings.read(buf));
 				strings.setEncoding(stringEncoding);
 
 				// read number of trips
-				is.reset();
-				is.skipBytes(30);
+				buf.position(30);
 
-				final int numTrips = is.readShortReverse();
+				final int numTrips = readShort(buf);
 				if (numTrips == 0)
 					return new QueryTripsResult(header, uri, from, via, to, null, new LinkedList<Trip>());
 
 				// read rest of header
-				is.reset();
-				is.skipBytes(0x02);
+				buf.position(0x02);
 
-				final Location resDeparture = location(is, strings);
-				final Location resArrival = location(is, strings);
+				final Location resDeparture = location(buf, strings);
+				final Location resArrival = location(buf, strings);
 
-				is.skipBytes(10);
+				skip(buf, 10);
 
-				final long resDate = date(is);
-				/* final long resDate30 = */date(is);
+				final TimeTable times = new TimeTable(timeZone, readShort(buf));
+				/* final int resDate30 = */readShort(buf);
 
-				is.reset();
-				is.skipBytes(extensionHeaderPtr + 0x8);
+				buf.position(extensionHeaderPtr + 0x8);
 
-				final int seqNr = is.readShortReverse();
+				final int seqNr = readShort(buf);
 				if (seqNr == 0)
 					throw new SessionExpiredException();
 				else if (seqNr < 0)
 					throw new IllegalStateException("illegal sequence number: " + seqNr);
 
-				final String requestId = strings.read(is);
+				final String requestId = strings.read(buf);
 
-				final int tripDetailsPtr = is.readIntReverse();
+				final int tripDetailsPtr = buf.getInt();
 				if (tripDetailsPtr == 0)
 					throw new IllegalStateException("no connection details");
 
-				is.skipBytes(4);
+				skip(buf, 4);
 
-				final int disruptionsPtr = is.readIntReverse();
+				final int disruptionsPtr = buf.getInt();
 
-				is.skipBytes(10);
+				skip(buf, 10);
 
-				final String ld = strings.read(is);
-				final int attrsOffset = is.readIntReverse();
+				final String ld = strings.read(buf);
+				final int attrsOffset = buf.getInt();
 
 				final int tripAttrsPtr;
 				if (extensionHeaderLength >= 0x30)
 				{
 					if (extensionHeaderLength < 0x32)
 						throw new IllegalArgumentException("too short: " + extensionHeaderLength);
-					is.reset();
-					is.skipBytes(extensionHeaderPtr + 0x2c);
-					tripAttrsPtr = is.readIntReverse();
+					buf.position(extensionHeaderPtr + 0x2c);
+					tripAttrsPtr = buf.getInt();
 				}
 				else
 				{
@@ -1644,55 +1731,52 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 				}
 
 				// determine stops offset
-				is.reset();
-				is.skipBytes(tripDetailsPtr);
-				final int tripDetailsVersion = is.readShortReverse();
+				buf.position(tripDetailsPtr);
+				final int tripDetailsVersion = readShort(buf);
 				if (tripDetailsVersion != 1)
 					throw new IllegalStateException("unknown trip details version: " + tripDetailsVersion);
-				is.skipBytes(0x02);
+				skip(buf, 0x02);
 
-				final int tripDetailsIndexOffset = is.readShortReverse();
-				final int tripDetailsLegOffset = is.readShortReverse();
-				final int tripDetailsLegSize = is.readShortReverse();
-				final int stopsSize = is.readShortReverse();
-				final int stopsOffset = is.readShortReverse();
+				final int tripDetailsIndexOffset = readShort(buf);
+				final int tripDetailsLegOffset = readShort(buf);
+				final int tripDetailsLegSize = readShort(buf);
+				final int stopsSize = readShort(buf);
+				final int stopsOffset = readShort(buf);
 
 				// read stations
-				final StationTable stations = new StationTable(is, stationTablePtr, commentTablePtr - stationTablePtr, strings);
+				final StationTable stations = new StationTable(buf, stationTablePtr, commentTablePtr - stationTablePtr, strings);
 
 				// read comments
-				final CommentTable comments = new CommentTable(is, commentTablePtr, tripDetailsPtr - commentTablePtr, strings);
+				final CommentTable comments = new CommentTable(buf, commentTablePtr, tripDetailsPtr - commentTablePtr, strings);
 
 				final List<Trip> trips = new ArrayList<Trip>(numTrips);
 
 				// read trips
 				for (int iTrip = 0; iTrip < numTrips; iTrip++)
 				{
-					is.reset();
-					is.skipBytes(0x4a + iTrip * 12);
+					buf.position(0x4a + iTrip * 12);
 
-					final int serviceDaysTableOffset = is.readShortReverse();
+					final int serviceDaysTableOffset = readShort(buf);
 
-					final int legsOffset = is.readIntReverse();
+					final int legsOffset = buf.getInt();
 
-					final int numLegs = is.readShortReverse();
+					final int numLegs = readShort(buf);
 
-					final int numChanges = is.readShortReverse();
+					final int numChanges = readShort(buf);
 
-					/* final long duration = time(is, 0, 0); */is.readShortReverse();
+					/* final long duration = times.read(buf, 0); */readShort(buf);
 
-					is.reset();
-					is.skipBytes(serviceDaysTablePtr + serviceDaysTableOffset);
+					buf.position(serviceDaysTablePtr + serviceDaysTableOffset);
 
-					/* final String serviceDaysText = */strings.read(is);
+					/* final String serviceDaysText = */strings.read(buf);
 
-					final int serviceBitBase = is.readShortReverse();
-					final int serviceBitLength = is.readShortReverse();
+					final int serviceBitBase = readShort(buf);
+					final int serviceBitLength = readShort(buf);
 
 					int tripDayOffset = serviceBitBase * 8;
 					for (int i = 0; i < serviceBitLength; i++)
 					{
-						int serviceBits = is.read();
+						int serviceBits = buf.get() & 0xff;
 						if (serviceBits == 0)
 						{
 							tripDayOffset += 8;
@@ -1706,42 +1790,38 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 						break;
 					}
 
-					is.reset();
-					is.skipBytes(tripDetailsPtr + tripDetailsIndexOffset + iTrip * 2);
-					final int tripDetailsOffset = is.readShortReverse();
+					buf.position(tripDetailsPtr + tripDetailsIndexOffset + iTrip * 2);
+					final int tripDetailsOffset = readShort(buf);
 
-					is.reset();
-					is.skipBytes(tripDetailsPtr + tripDetailsOffset);
-					final int realtimeStatus = is.readShortReverse();
+					buf.position(tripDetailsPtr + tripDetailsOffset);
+					final int realtimeStatus = readShort(buf);
 
-					/* final short delay = */is.readShortReverse();
+					/* final short delay = */readShort(buf);
 
-					/* final int legIndex = */is.readShortReverse();
+					/* final int legIndex = */readShort(buf);
 
-					is.skipBytes(2); // 0xffff
+					skip(buf, 2); // 0xffff
 
-					/* final int legStatus = */is.readShortReverse();
+					/* final int legStatus = */readShort(buf);
 
-					is.skipBytes(2); // 0x0000
+					skip(buf, 2); // 0x0000
 
 					String connectionId = null;
 					if (tripAttrsPtr != 0)
 					{
-						is.reset();
-						is.skipBytes(tripAttrsPtr + iTrip * 2);
-						final int tripAttrsIndex = is.readShortReverse();
+						buf.position(tripAttrsPtr + iTrip * 2);
+						final int tripAttrsIndex = readShort(buf);
 
-						is.reset();
-						is.skipBytes(attrsOffset + tripAttrsIndex * 4);
+						buf.position(attrsOffset + tripAttrsIndex * 4);
 						while (true)
 						{
-							final String key = strings.read(is);
+							final String key = strings.read(buf);
 							if (key == null)
 								break;
 							else if (key.equals("ConnectionId"))
-								connectionId = strings.read(is);
+								connectionId = strings.read(buf);
 							else
-								is.skipBytes(2);
+								skip(buf, 2);
 						}
 					}
 
@@ -1749,28 +1829,27 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 					for (int iLegs = 0; iLegs < numLegs; iLegs++)
 					{
-						is.reset();
-						is.skipBytes(0x4a + legsOffset + iLegs * 20);
+						buf.position(0x4a + legsOffset + iLegs * 20);
 
-						final long plannedDepartureTime = time(is, resDate, tripDayOffset);
-						final Location departureLocation = stations.read(is);
+						final long plannedDepartureTime = times.read(buf, tripDayOffset);
+						final Location departureLocation = stations.read(buf);
 
-						final long plannedArrivalTime = time(is, resDate, tripDayOffset);
-						final Location arrivalLocation = stations.read(is);
+						final long plannedArrivalTime = times.read(buf, tripDayOffset);
+						final Location arrivalLocation = stations.read(buf);
 
-						final int type = is.readShortReverse();
+						final int type = readShort(buf);
 
-						final String lineName = strings.read(is);
+						final String lineName = strings.read(buf);
 
-						final Position plannedDeparturePosition = normalizePosition(strings.read(is));
-						final Position plannedArrivalPosition = normalizePosition(strings.read(is));
+						final Position plannedDeparturePosition = normalizePosition(strings.read(buf));
+						final Position plannedArrivalPosition = normalizePosition(strings.read(buf));
 
-						final int legAttrIndex = is.readShortReverse();
+						final int legAttrIndex = readShort(buf);
 
 						final List<Line.Attr> lineAttrs = new ArrayList<Line.Attr>();
 						String lineComment = null;
 						boolean lineOnDemand = false;
-						for (final String comment : comments.read(is))
+						for (final String comment : comments.read(buf))
 						{
 							if (comment.startsWith("bf "))
 							{
@@ -1787,8 +1866,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 							}
 						}
 
-						is.reset();
-						is.skipBytes(attrsOffset + legAttrIndex * 4);
+						buf.position(attrsOffset + legAttrIndex * 4);
 						String directionStr = null;
 						int lineClass = 0;
 						String lineCategory = null;
@@ -1796,94 +1874,89 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 						String routingType = null;
 						while (true)
 						{
-							final String key = strings.read(is);
+							final String key = strings.read(buf);
 							if (key == null)
 								break;
 							else if (key.equals("Direction"))
-								directionStr = strings.read(is);
+								directionStr = strings.read(buf);
 							else if (key.equals("Class"))
-								lineClass = Integer.parseInt(strings.read(is));
+								lineClass = Integer.parseInt(strings.read(buf));
 							else if (key.equals("Category"))
-								lineCategory = strings.read(is);
+								lineCategory = strings.read(buf);
 							else if (key.equals("Operator"))
-								lineOperator = strings.read(is);
+								lineOperator = strings.read(buf);
 							else if (key.equals("GisRoutingType"))
-								routingType = strings.read(is);
+								routingType = strings.read(buf);
 							else
-								is.skipBytes(2);
+								skip(buf, 2);
 						}
 
 						if (lineCategory == null && lineName != null)
 							lineCategory = categoryFromName(lineName);
 
-						is.reset();
-						is.skipBytes(tripDetailsPtr + tripDetailsOffset + tripDetailsLegOffset + iLegs * tripDetailsLegSize);
+						buf.position(tripDetailsPtr + tripDetailsOffset + tripDetailsLegOffset + iLegs * tripDetailsLegSize);
 
 						if (tripDetailsLegSize != 16)
 							throw new IllegalStateException("unhandled trip details leg size: " + tripDetailsLegSize);
 
-						final long predictedDepartureTime = time(is, resDate, tripDayOffset);
-						final long predictedArrivalTime = time(is, resDate, tripDayOffset);
-						final Position predictedDeparturePosition = normalizePosition(strings.read(is));
-						final Position predictedArrivalPosition = normalizePosition(strings.read(is));
+						final long predictedDepartureTime = times.read(buf, tripDayOffset);
+						final long predictedArrivalTime = times.read(buf, tripDayOffset);
+						final Position predictedDeparturePosition = normalizePosition(strings.read(buf));
+						final Position predictedArrivalPosition = normalizePosition(strings.read(buf));
 
-						final int bits = is.readShortReverse();
+						final int bits = readShort(buf);
 						final boolean arrivalCancelled = (bits & 0x10) != 0;
 						final boolean departureCancelled = (bits & 0x20) != 0;
 
-						is.readShort();
+						buf.getShort();
 
-						final int firstStopIndex = is.readShortReverse();
+						final int firstStopIndex = readShort(buf);
 
-						final int numStops = is.readShortReverse();
+						final int numStops = readShort(buf);
 
-						is.reset();
-						is.skipBytes(disruptionsPtr);
+						buf.position(disruptionsPtr);
 
 						String disruptionText = null;
 
-						if (is.readShortReverse() == 1)
+						if (readShort(buf) == 1)
 						{
-							is.reset();
-							is.skipBytes(disruptionsPtr + 2 + iTrip * 2);
+							buf.position(disruptionsPtr + 2 + iTrip * 2);
 
-							int disruptionsOffset = is.readShortReverse();
+							int disruptionsOffset = readShort(buf);
 							while (disruptionsOffset != 0)
 							{
-								is.reset();
-								is.skipBytes(disruptionsPtr + disruptionsOffset);
+								buf.position(disruptionsPtr + disruptionsOffset);
 
-								strings.read(is); // "0"
+								strings.read(buf); // "0"
 
-								final int disruptionLeg = is.readShortReverse();
+								final int disruptionLeg = readShort(buf);
 
-								is.skipBytes(2); // bitmaske
+								skip(buf, 2); // bitmaske
 
-								strings.read(is); // start of line
-								strings.read(is); // end of line
+								strings.read(buf); // start of line
+								strings.read(buf); // end of line
 
-								strings.read(is); // id
-								/* final String disruptionTitle = */strings.read(is);
-								final String disruptionShortText = ParserUtils.formatHtml(strings.read(is));
+								strings.read(buf); // id
+								/* final String disruptionTitle = */strings.read(buf);
+								final String disruptionShortText = ParserUtils.formatHtml(strings.read(buf));
 
-								disruptionsOffset = is.readShortReverse(); // next
+								disruptionsOffset = readShort(buf); // next
 
 								if (iLegs == disruptionLeg)
 								{
-									final int disruptionAttrsIndex = is.readShortReverse();
+									final int disruptionAttrsIndex = readShort(buf);
 
-									is.reset();
-									is.skipBytes(attrsOffset + disruptionAttrsIndex * 4);
+									buf.position(attrsOffset + disruptionAttrsIndex * 4);
 
 									while (true)
 									{
-										final String key = strings.read(is);
+										final String key = strings.read(buf);
 										if (key == null)
 											break;
 										else if (key.equals("Text"))
-											disruptionText = ParserUtils.resolveEntities(strings.read(is));
+											disruptionText = ParserUtils.resolveEntities(strings.read(buf));
 										else
-											is.skipBytes(2);
+											skip(buf, 2);
 									}
 
 									if (disruptionShortText != null)
@@ -1896,8 +1969,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 						if (numStops > 0)
 						{
-							is.reset();
-							is.skipBytes(tripDetailsPtr + stopsOffset + firstStopIndex * stopsSize);
+							buf.position(tripDetailsPtr + stopsOffset + firstStopIndex * stopsSize);
 
 							if (stopsSize != 26)
 								throw new IllegalStateException("unhandled stops size: " + stopsSize);
@@ -1906,29 +1978,29 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 							for (int iStop = 0; iStop < numStops; iStop++)
 							{
-								final long plannedStopDepartureTime = time(is, resDate, tripDayOffset);
+								final long plannedStopDepartureTime = times.read(buf, tripDayOffset);
 								final Date plannedStopDepartureDate = plannedStopDepartureTime != 0 ? new Date(plannedStopDepartureTime) : null;
-								final long plannedStopArrivalTime = time(is, resDate, tripDayOffset);
+								final long plannedStopArrivalTime = times.read(buf, tripDayOffset);
 								final Date plannedStopArrivalDate = plannedStopArrivalTime != 0 ? new Date(plannedStopArrivalTime) : null;
-								final Position plannedStopDeparturePosition = normalizePosition(strings.read(is));
-								final Position plannedStopArrivalPosition = normalizePosition(strings.read(is));
+								final Position plannedStopDeparturePosition = normalizePosition(strings.read(buf));
+								final Position plannedStopArrivalPosition = normalizePosition(strings.read(buf));
 
-								is.readInt();
+								buf.getInt();
 
-								final long predictedStopDepartureTime = time(is, resDate, tripDayOffset);
+								final long predictedStopDepartureTime = times.read(buf, tripDayOffset);
 								final Date predictedStopDepartureDate = predictedStopDepartureTime != 0 ? new Date(predictedStopDepartureTime) : null;
-								final long predictedStopArrivalTime = time(is, resDate, tripDayOffset);
+								final long predictedStopArrivalTime = times.read(buf, tripDayOffset);
 								final Date predictedStopArrivalDate = predictedStopArrivalTime != 0 ? new Date(predictedStopArrivalTime) : null;
-								final Position predictedStopDeparturePosition = normalizePosition(strings.read(is));
-								final Position predictedStopArrivalPosition = normalizePosition(strings.read(is));
+								final Position predictedStopDeparturePosition = normalizePosition(strings.read(buf));
+								final Position predictedStopArrivalPosition = normalizePosition(strings.read(buf));
 
-								final int stopBits = is.readShortReverse();
+								final int stopBits = readShort(buf);
 								final boolean stopArrivalCancelled = (stopBits & 0x10) != 0;
 								final boolean stopDepartureCancelled = (stopBits & 0x20) != 0;
 
-								is.readShort();
+								buf.getShort();
 
-								final Location stopLocation = stations.read(is);
+								final Location stopLocation = stations.read(buf);
 
 								final boolean validPredictedDate = !dominantPlanStopTime
 										|| (plannedStopArrivalDate != null && plannedStopDepartureDate != null);
@@ -2021,7 +2093,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 						|| !(trips.get(0).legs.get(0) instanceof Trip.Individual);
 
 				final QueryTripsResult result = new QueryTripsResult(header, uri, from, via, to, new QueryTripsBinaryContext(requestId, seqNr, ld,
-						bis.getCount(), canQueryMore), trips);
+						buf.limit(), canQueryMore, sessionKey), trips);
 
 				return result;
 			}
@@ -2080,13 +2152,13 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		}
 	}
 
-	private Location location(final LittleEndianDataInputStream is, final StringTable strings) throws IOException
+	private Location location(final ByteBuffer buf, final StringTable strings)
 	{
-		final String name = strings.read(is);
-		is.readShort();
-		final int type = is.readShortReverse();
-		final int lon = is.readIntReverse();
-		final int lat = is.readIntReverse();
+		final String name = strings.read(buf);
+		buf.getShort();
+		final int type = readShort(buf);
+		final int lon = buf.getInt();
+		final int lat = buf.getInt();
 
 		if (type == 1)
 		{
@@ -2108,85 +2180,212 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 		}
 	}
 
-	private long date(final LittleEndianDataInputStream is) throws IOException
+	/**
+	 * Converts service day relative times to epoch millis without going through {@link Calendar}. The UTC offset is looked up
+	 * once per service day, except for days close to a DST transition.
+	 */
+	static final class TimeTable
 	{
-		final int days = is.readShortReverse();
+		private static final long MINUTE_MS = 60 * 1000L;
+		private static final long HOUR_MS = 60 * MINUTE_MS;
+		private static final long DAY_MS = 24 * HOUR_MS;
+		private static final int EPOCH_DAY_1980 = 3652; // 1980-01-01
+		private static final int UNKNOWN = Integer.MAX_VALUE;
+		private static final int TRANSITION = Integer.MIN_VALUE;
 
-		final Calendar date = new GregorianCalendar(timeZone);
-		date.clear();
-		date.set(Calendar.YEAR, 1980);
-		date.set(Calendar.DAY_OF_YEAR, days);
+		private final TimeZone timeZone;
+		private final long resDateWall;
+		private int[] dayOffsets = new int[8];
 
-		return date.getTimeInMillis();
-	}
+		/**
+		 * @param days
+		 *            result date, as day of year 1980 (counting from 1, may exceed the year)
+		 */
+		public TimeTable(final TimeZone timeZone, final int days)
+		{
+			this.timeZone = timeZone;
+			this.resDateWall = (EPOCH_DAY_1980 + days - 1) * DAY_MS;
+			Arrays.fill(dayOffsets, UNKNOWN);
+		}
 
-	private long time(final LittleEndianDataInputStream is, final long baseDate, final int dayOffset) throws IOException
-	{
-		final int value = is.readShortReverse();
-		if (value == 0xffff)
-			return 0;
+		public long read(final ByteBuffer buf, final int dayOffset)
+		{
+			return time(readShort(buf), dayOffset);
+		}
 
-		final int hours = value / 100;
-		final int minutes = value % 100;
+		public long time(final int value, final int dayOffset)
+		{
+			if (value == 0xffff)
+				return 0;
 
-		if (minutes < 0 || minutes > 60)
-			throw new IllegalStateException("minutes out of range: " + minutes);
+			final int hours = value / 100;
+			final int minutes = value % 100;
 
-		final Calendar time = new GregorianCalendar(timeZone);
+			if (minutes < 0 || minutes > 60)
+				throw new IllegalStateException("minutes out of range: " + minutes);
 
-		time.setTimeInMillis(baseDate);
-		if (time.get(Calendar.HOUR) != 0 || time.get(Calendar.MINUTE) != 0)
-			throw new IllegalStateException("baseDate not on date boundary: " + baseDate);
+			// local wall clock time, expressed as if it was UTC
+			final long wall = resDateWall + dayOffset * DAY_MS + hours * HOUR_MS + minutes * MINUTE_MS;
 
-		time.add(Calendar.DAY_OF_YEAR, dayOffset);
+			if (hours < 48 && dayOffset >= 0)
+			{
+				final int offset = dayOffset(dayOffset);
+				if (offset != TRANSITION)
+					return wall - offset;
+			}
 
-		time.set(Calendar.HOUR, hours);
-		time.set(Calendar.MINUTE, minutes);
+			return wall - offsetByWall(wall);
+		}
 
-		return time.getTimeInMillis();
+		private int dayOffset(final int dayOffset)
+		{
+			if (dayOffset >= dayOffsets.length)
+			{
+				final int oldLength = dayOffsets.length;
+				dayOffsets = Arrays.copyOf(dayOffsets, Math.max(dayOffset + 1, oldLength * 2));
+				Arrays.fill(dayOffsets, oldLength, dayOffsets.length, UNKNOWN);
+			}
+
+			int offset = dayOffsets[dayOffset];
+			if (offset == UNKNOWN)
+			{
+				// the same offset a day before and two days after means there is no transition in between
+				final long dayWall = resDateWall + dayOffset * DAY_MS;
+				final int before = timeZone.getOffset(dayWall - DAY_MS);
+				final int after = timeZone.getOffset(dayWall + 3 * DAY_MS);
+				offset = before == after ? before : TRANSITION;
+				dayOffsets[dayOffset] = offset;
+			}
+			return offset;
+		}
+
+		/**
+		 * Resolves a wall clock time like a lenient {@link GregorianCalendar}: times skipped by a DST transition use the
+		 * offset before the transition, times occurring twice use the offset after it.
+		 */
+		private int offsetByWall(final long wall)
+		{
+			final int before = timeZone.getOffset(wall - DAY_MS);
+			final int after = timeZone.getOffset(wall + DAY_MS);
+			if (before == after)
+				return before;
+
+			return timeZone.getOffset(wall - after) == after ? after : before;
+		}
 	}
 
 	private static class StringTable
 	{
-		private Charset encoding = Charset.forName("ASCII");
+		private static final Charset ASCII = Charset.forName("ASCII");
+
+		private Charset encoding = ASCII;
 		private final byte[] table;
+		private final int offset;
+		private final int length;
 
-		public StringTable(final DataInputStream is, final int stringTablePtr, final int length) throws IOException
+		// open addressing cache of decoded strings, keyed by pointer (pointer 0 marks a free slot)
+		private int[] cachePointers = new int[256];
+		private String[] cacheStrings = new String[256];
+		private int cacheSize = 0;
+
+		public StringTable(final ByteBuffer buf, final int stringTablePtr, final int length)
 		{
-			is.reset();
-			is.skipBytes(stringTablePtr);
-			table = new byte[length];
-			is.readFully(table);
+			this.table = buf.array();
+			this.offset = buf.arrayOffset() + stringTablePtr;
+			this.length = length;
 		}
 
 		public void setEncoding(final Charset encoding)
 		{
 			this.encoding = encoding;
+
+			Arrays.fill(cachePointers, 0);
+			Arrays.fill(cacheStrings, null);
+			cacheSize = 0;
 		}
 
-		public String read(final LittleEndianDataInputStream is) throws IOException
+		public String read(final ByteBuffer buf)
+		{
+			return get(readShort(buf));
+		}
+
+		public String get(final int pointer)
 		{
-			final int pointer = is.readShortReverse();
 			if (pointer == 0)
 				return null;
-			if (pointer >= table.length)
-				throw new IllegalStateException("pointer " + pointer + " cannot exceed strings table size " + table.length);
+			if (pointer >= length)
+				throw new IllegalStateException("pointer " + pointer + " cannot exceed strings table size " + length);
 
-			final InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(table, pointer, table.length - pointer), encoding);
-
-			try
+			final int mask = cachePointers.length - 1;
+			int slot = (pointer * 0x9e3779b1) >>> 12 & mask;
+			while (cachePointers[slot] != 0)
 			{
-				final StringBuilder builder = new StringBuilder();
+				if (cachePointers[slot] == pointer)
+					return cacheStrings[slot];
+				slot = (slot + 1) & mask;
+			}
+
+			final String string = decode(pointer);
 
-				int c;
-				while ((c = reader.read()) != 0)
-					builder.append((char) c);
+			cachePointers[slot] = pointer;
+			cacheStrings[slot] = string;
+			if (++cacheSize * 2 > cachePointers.length)
+				growCache();
 
-				return builder.toString().trim();
+			return string;
+		}
+
+		private String decode(final int pointer)
+		{
+			final int start = offset + pointer;
+			final int limit = offset + length;
+
+			int end = start;
+			boolean ascii = true;
+			while (end < limit && table[end] != 0)
+			{
+				if (table[end] < 0)
+					ascii = false;
+				end++;
 			}
-			finally
+
+			final String string;
+			if (ascii || encoding.equals(ISO_8859_1))
 			{
-				reader.close();
+				// single byte fast path
+				final char[] chars = new char[end - start];
+				for (int i = 0; i < chars.length; i++)
+					chars[i] = (char) (table[start + i] & 0xff);
+				string = new String(chars);
+			}
+			else
+			{
+				string = new String(table, start, end - start, encoding);
+			}
+
+			return string.trim();
+		}
+
+		private void growCache()
+		{
+			final int[] oldPointers = cachePointers;
+			final String[] oldStrings = cacheStrings;
+
+			cachePointers = new int[oldPointers.length * 2];
+			cacheStrings = new String[oldStrings.length * 2];
+			final int mask = cachePointers.length - 1;
+
+			for (int i = 0; i < oldPointers.length; i++)
+			{
+				final int pointer = oldPointers[i];
+				if (pointer != 0)
+				{
+					int slot = (pointer * 0x9e3779b1) >>> 12 & mask;
+					while (cachePointers[slot] != 0)
+						slot = (slot + 1) & mask;
+					cachePointers[slot] = pointer;
+					cacheStrings[slot] = oldStrings[i];
+				}
 			}
 		}
 	}
@@ -2194,81 +2393,82 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 	private static class CommentTable
 	{
 		private final StringTable strings;
-		private final byte[] table;
+		private final ByteBuffer buf;
+		private final int commentTablePtr;
+		private final int length;
+		private String[][] decoded = null;
 
-		public CommentTable(final DataInputStream is, final int commentTablePtr, final int length, final StringTable strings) throws IOException
+		public CommentTable(final ByteBuffer buf, final int commentTablePtr, final int length, final StringTable strings)
 		{
-			is.reset();
-			is.skipBytes(commentTablePtr);
-			table = new byte[length];
-			is.readFully(table);
-
+			this.buf = buf;
+			this.commentTablePtr = commentTablePtr;
+			this.length = length;
 			this.strings = strings;
 		}
 
-		public String[] read(final LittleEndianDataInputStream is) throws IOException
+		public String[] read(final ByteBuffer buf)
 		{
-			final int pointer = is.readShortReverse();
-			if (pointer >= table.length)
-				throw new IllegalStateException("pointer " + pointer + " cannot exceed comments table size " + table.length);
+			final int pointer = readShort(buf);
+			if (pointer >= length)
+				throw new IllegalStateException("pointer " + pointer + " cannot exceed comments table size " + length);
 
-			final LittleEndianDataInputStream commentsInputStream = new LittleEndianDataInputStream(new ByteArrayInputStream(table, pointer,
-					table.length - pointer));
+			// decode each comment array only once, callers share the result
+			if (decoded == null)
+				decoded = new String[length][];
+			else if (decoded[pointer] != null)
+				return decoded[pointer];
 
-			try
-			{
-				final int numComments = commentsInputStream.readShortReverse();
-				final String[] comments = new String[numComments];
+			final int ptr = commentTablePtr + pointer;
+			final int numComments = this.buf.getShort(ptr) & 0xffff;
+			final String[] comments = new String[numComments];
 
-				for (int i = 0; i < numComments; i++)
-					comments[i] = strings.read(commentsInputStream);
+			for (int i = 0; i < numComments; i++)
+				comments[i] = strings.get(this.buf.getShort(ptr + 2 + i * 2) & 0xffff);
 
-				return comments;
-			}
-			finally
-			{
-				commentsInputStream.close();
-			}
+			decoded[pointer] = comments;
+			return comments;
 		}
 	}
 
 	private class StationTable
 	{
 		private final StringTable strings;
-		private final byte[] table;
+		private final ByteBuffer buf;
+		private final int stationTablePtr;
+		private final int length;
+		private final Location[] decoded;
 
-		public StationTable(final DataInputStream is, final int stationTablePtr, final int length, final StringTable strings) throws IOException
+		public StationTable(final ByteBuffer buf, final int stationTablePtr, final int length, final StringTable strings)
 		{
-			is.reset();
-			is.skipBytes(stationTablePtr);
-			table = new byte[length];
-			is.readFully(table);
-
+			this.buf = buf;
+			this.stationTablePtr = stationTablePtr;
+			this.length = length;
 			this.strings = strings;
+			this.decoded = new Location[(length + 13) / 14];
 		}
 
-		private Location read(final LittleEndianDataInputStream is) throws IOException
+		private Location read(final ByteBuffer buf)
 		{
-			final int index = is.readShortReverse();
+			final int index = readShort(buf);
 			final int ptr = index * 14;
-			if (ptr >= table.length)
-				throw new IllegalStateException("pointer " + ptr + " cannot exceed stations table size " + table.length);
+			if (ptr >= length)
+				throw new IllegalStateException("pointer " + ptr + " cannot exceed stations table size " + length);
 
-			final LittleEndianDataInputStream stationInputStream = new LittleEndianDataInputStream(new ByteArrayInputStream(table, ptr, 14));
+			// locations are immutable, so each station is decoded only once
+			final Location cached = decoded[index];
+			if (cached != null)
+				return cached;
 
-			try
-			{
-				final String[] placeAndName = splitStationName(strings.read(stationInputStream));
-				final int id = stationInputStream.readIntReverse();
-				final int lon = stationInputStream.readIntReverse();
-				final int lat = stationInputStream.readIntReverse();
+			final int stationPtr = stationTablePtr + ptr;
+			final String[] placeAndName = splitStationName(strings.get(this.buf.getShort(stationPtr) & 0xffff));
+			final int id = this.buf.getInt(stationPtr + 2);
+			final int lon = this.buf.getInt(stationPtr + 6);
+			final int lat = this.buf.getInt(stationPtr + 10);
 
-				return new Location(LocationType.STATION, id != 0 ? Integer.toString(id) : null, lat, lon, placeAndName[0], placeAndName[1]);
-			}
-			finally
-			{
-				stationInputStream.close();
-			}
+			final Location location = new Location(LocationType.STATION, id != 0 ? Integer.toString(id) : null, lat, lon, placeAndName[0],
+					placeAndName[1]);
+			decoded[index] = location;
+			return location;
 		}
 	}
 
@@ -2330,7 +2530,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 	protected final NearbyStationsResult xmlNearbyStations(final String uri) throws IOException
 	{
 		// scrape page
-		final CharSequence page = ParserUtils.scrape(uri);
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri);
 
 		final List<Location> stations = new ArrayList<Location>();
 
@@ -2397,7 +2597,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 	protected final NearbyStationsResult jsonNearbyStations(final String uri) throws IOException
 	{
-		final CharSequence page = ParserUtils.scrape(uri, null, jsonNearbyStationsEncoding);
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri, null, jsonNearbyStationsEncoding);
 
 		// System.out.println(uri);
 		// System.out.println(page);
@@ -2449,6 +2649,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 
 	protected void setHtmlNearbyStationsPattern(final Pattern htmlNearbyStationsPattern)
 	{
+		checkNotFrozen();
 		this.htmlNearbyStationsPattern = htmlNearbyStationsPattern;
 	}
 
@@ -2462,7 +2663,7 @@ public abstract class AbstractHafasProvider extends AbstractNetworkProvider
 	{
 		final List<Location> stations = new ArrayList<Location>();
 
-		final CharSequence page = ParserUtils.scrape(uri);
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri);
 		String oldZebra = null;
 
 		final Matcher mCoarse = htmlNearbyStationsPattern.matcher(page);
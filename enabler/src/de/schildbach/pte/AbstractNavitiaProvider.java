@@ -18,17 +18,30 @@
 package de.schildbach.pte;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -61,7 +74,11 @@ import de.schildbach.pte.dto.Trip.Leg;
 import de.schildbach.pte.dto.Trip.Public;
 import de.schildbach.pte.exception.NotFoundException;
 import de.schildbach.pte.exception.ParserException;
+import de.schildbach.pte.util.JsonPullReader;
+import de.schildbach.pte.util.LruCache;
 import de.schildbach.pte.util.ParserUtils;
+import de.schildbach.pte.util.QueryProbe;
+import de.schildbach.pte.util.Trace;
 import de.schildbach.pte.util.WordUtils;
 
 /**
@@ -74,6 +91,26 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 	protected final static String SERVER_VERSION = "v1";
 	protected static final String API_BASE = "http://api.navitia.io/" + SERVER_VERSION + "/";
 
+	// Members not used by any parser, skipped while reading responses.
+	private static final Set<String> SKIPPED_MEMBERS = new HashSet<String>(Arrays.asList("disruptions", "calendars", "fare", "tags",
+			"co2_emission", "durations", "distances", "equipments", "codes", "comments", "administrative_regions", "physical_modes",
+			"commercial_modes"));
+
+	private static final long MINUTE_MS = 60 * 1000;
+
+	// Nearby stations are checked for activity in parallel, shared by all Navitia providers.
+	private static final ExecutorService STATION_CHECK_EXECUTOR = AsyncNetworkProvider.newExecutor("navitia-station-check", 8, 256);
+	private static final long STATION_CHECK_TIMEOUT_MS = 5000;
+
+	// Products of lines by line id, per region. Shared by all providers of a region.
+	private static final ConcurrentMap<String, LruCache<String, Character>> LINE_PRODUCT_CACHES;
+	private static final int LINES_PAGE_SIZE = 200;
+
+	static
+	{
+		LINE_PRODUCT_CACHES = new ConcurrentHashMap<String, LruCache<String, Character>>();
+	}
+
 	private enum PlaceType
 	{
 		ADDRESS, ADMINISTRATIVE_REGION, POI, STOP_POINT, STOP_AREA
@@ -128,6 +165,33 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 
 	private final String authorization;
 
+	// Station metadata needed for departures and nearby stations, by stop point id. Stop areas and routes hardly ever
+	// change, whether a station is active is only kept for a short time.
+	private final LruCache<String, String> stopAreaIdCache = new LruCache<String, String>(24 * 60 * MINUTE_MS, 256 * 1024,
+			new LruCache.Weigher<String>()
+			{
+				public int weigh(final String stopAreaId)
+				{
+					return 64 + stopAreaId.length() * 4;
+				}
+			});
+	private final LruCache<String, List<LineDestination>> stationLinesCache = new LruCache<String, List<LineDestination>>(6 * 60 * MINUTE_MS,
+			2 * 1024 * 1024, new LruCache.Weigher<List<LineDestination>>()
+			{
+				public int weigh(final List<LineDestination> lines)
+				{
+					return 64 + lines.size() * 256;
+				}
+			});
+	private final LruCache<String, Boolean> stationActiveCache = new LruCache<String, Boolean>(5 * MINUTE_MS, 128 * 1024,
+			new LruCache.Weigher<Boolean>()
+			{
+				public int weigh(final Boolean active)
+				{
+					return 96;
+				}
+			});
+
 	public AbstractNavitiaProvider(final String authorization)
 	{
 		this.authorization = authorization;
@@ -156,6 +220,12 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		return API_BASE;
 	}
 
+	private JsonPullReader scrapeJson(final String uri) throws IOException
+	{
+		return new JsonPullReader(new InputStreamReader(ParserUtils.scrapeInputStream(httpTransport(), uri, null, null, null, null, authorization),
+				ISO_8859_1));
+	}
+
 	private Point parseCoord(final JSONObject coord) throws IOException
 	{
 		try
@@ -540,32 +610,25 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		}
 	}
 
-	private void parseQueryTripsResult(final JSONObject head, final Location from, final Location to, final QueryTripsResult result)
-			throws IOException
+	private Trip parseJourney(final JSONObject journey, final Location from, final Location to) throws IOException
 	{
 		try
 		{
-			// Fill trips.
-			final JSONArray journeys = head.getJSONArray("journeys");
-			for (int i = 0; i < journeys.length(); ++i)
-			{
-				final JSONObject journey = journeys.getJSONObject(i);
-				final int changeCount = journey.getInt("nb_transfers");
+			final int changeCount = journey.getInt("nb_transfers");
 
-				// Build leg list.
-				final List<Leg> legs = new LinkedList<Leg>();
-				final JSONArray sections = journey.getJSONArray("sections");
+			// Build leg list.
+			final List<Leg> legs = new LinkedList<Leg>();
+			final JSONArray sections = journey.getJSONArray("sections");
 
-				for (int j = 0; j < sections.length(); ++j)
-				{
-					final JSONObject section = sections.getJSONObject(j);
-					final Leg leg = parseLeg(section);
-					if (leg != null)
-						legs.add(leg);
-				}
-
-				result.trips.add(new Trip(null, from, to, legs, null, null, changeCount));
+			for (int j = 0; j < sections.length(); ++j)
+			{
+				final JSONObject section = sections.getJSONObject(j);
+				final Leg leg = parseLeg(section);
+				if (leg != null)
+					legs.add(leg);
 			}
+
+			return new Trip(null, from, to, legs, null, null, changeCount);
 		}
 		catch (final JSONException jsonExc)
 		{
@@ -573,6 +636,57 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		}
 	}
 
+	private QueryTripsResult parseQueryTripsResult(final JsonPullReader reader, final ResultHeader resultHeader, final String queryUri,
+			final Location from, final Location to) throws IOException, JSONException
+	{
+		JSONArray links = null;
+		final List<Trip> trips = new LinkedList<Trip>();
+
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+			if (name.equals("error"))
+			{
+				final JSONObject error = reader.nextObject();
+				final String id = error.getString("id");
+
+				if (id.equals("no_solution"))
+					return new QueryTripsResult(resultHeader, QueryTripsResult.Status.NO_TRIPS);
+				else
+					throw new IllegalArgumentException("Unhandled error id: " + id);
+			}
+			else if (name.equals("links"))
+			{
+				links = reader.nextArray();
+			}
+			else if (name.equals("journeys"))
+			{
+				// Fill trips.
+				reader.beginArray();
+				while (reader.hasNext())
+					trips.add(parseJourney(reader.nextObject(SKIPPED_MEMBERS), from, to));
+				reader.endArray();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (links == null)
+			throw new JSONException("links not found");
+
+		// Fill context.
+		final JSONObject prev = links.getJSONObject(0);
+		final String prevQueryUri = prev.getString("href");
+		final JSONObject next = links.getJSONObject(1);
+		final String nextQueryUri = next.getString("href");
+
+		return new QueryTripsResult(resultHeader, queryUri, from, null, to, new Context(from, to, prevQueryUri, nextQueryUri), trips);
+	}
+
 	private Line parseLine(final JSONObject jsonLine) throws IOException
 	{
 		try
@@ -591,7 +705,100 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		}
 	}
 
-	private Map<String, Character> lineProductCache = new WeakHashMap<String, Character>();
+	private LruCache<String, Character> lineProductCache()
+	{
+		final String region = region();
+		final LruCache<String, Character> cache = LINE_PRODUCT_CACHES.get(region);
+		if (cache != null)
+			return cache;
+
+		final LruCache<String, Character> newCache = new LruCache<String, Character>(24 * 60 * MINUTE_MS, 512 * 1024,
+				new LruCache.Weigher<Character>()
+				{
+					public int weigh(final Character product)
+					{
+						return 128;
+					}
+				});
+		final LruCache<String, Character> existingCache = LINE_PRODUCT_CACHES.putIfAbsent(region, newCache);
+		return existingCache != null ? existingCache : newCache;
+	}
+
+	/**
+	 * Fill the line product cache of this region from the lines listing, so that later queries don't have to resolve
+	 * products one by one.
+	 * 
+	 * @return number of lines cached
+	 */
+	public int prewarmLineProducts() throws IOException
+	{
+		final LruCache<String, Character> cache = lineProductCache();
+		int count = 0;
+		int total = Integer.MAX_VALUE;
+
+		for (int page = 0; page * LINES_PAGE_SIZE < total; page++)
+		{
+			final String uri = uri() + "lines?depth=0&count=" + LINES_PAGE_SIZE + "&start_page=" + page;
+			final JsonPullReader reader = scrapeJson(uri);
+
+			try
+			{
+				int numLines = 0;
+
+				reader.beginObject();
+				while (reader.hasNext())
+				{
+					final String name = reader.nextName();
+					if (name.equals("pagination"))
+					{
+						total = reader.nextObject().getInt("total_result");
+					}
+					else if (name.equals("lines"))
+					{
+						reader.beginArray();
+						while (reader.hasNext())
+						{
+							final JSONObject line = reader.nextObject(SKIPPED_MEMBERS);
+							numLines++;
+
+							final JSONObject mode = line.optJSONObject("commercial_mode");
+							if (mode == null)
+								continue;
+
+							try
+							{
+								cache.put(line.getString("id"), parseLineProductFromMode(mode.getString("id")));
+								count++;
+							}
+							catch (final IllegalArgumentException x)
+							{
+								// unknown commercial mode, leave it to parseLineProduct()
+							}
+						}
+						reader.endArray();
+					}
+					else
+					{
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+
+				if (numLines == 0)
+					break;
+			}
+			catch (final JSONException jsonExc)
+			{
+				throw new ParserException(jsonExc);
+			}
+			finally
+			{
+				reader.close();
+			}
+		}
+
+		return count;
+	}
 
 	private char parseLineProductFromMode(final String modeId)
 	{
@@ -626,6 +833,7 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		try
 		{
 			final String lineId = line.getString("id");
+			final LruCache<String, Character> lineProductCache = lineProductCache();
 			final Character cachedProduct = lineProductCache.get(lineId);
 			if (cachedProduct != null)
 				return cachedProduct;
@@ -666,56 +874,105 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 
 	private List<LineDestination> getStationLines(final String stopPointId) throws IOException
 	{
+		final List<LineDestination> cachedLineDestinations = stationLinesCache.get(stopPointId);
+		if (cachedLineDestinations != null)
+			return cachedLineDestinations;
+
 		final String uri = uri() + "stop_points/" + ParserUtils.urlEncode(stopPointId) + "/routes?depth=2";
-		final CharSequence page = ParserUtils.scrape(uri, authorization);
+		final JsonPullReader reader = scrapeJson(uri);
 
 		try
 		{
-			final JSONObject head = new JSONObject(page.toString());
-			final JSONArray routes = head.getJSONArray("routes");
-
 			final List<LineDestination> lineDestinations = new LinkedList<LineDestination>();
 
-			for (int i = 0; i < routes.length(); ++i)
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				final JSONObject route = routes.getJSONObject(i);
-				final LineDestination lineDestination = parseLineDestination(route);
-				lineDestinations.add(lineDestination);
+				if (reader.nextName().equals("routes"))
+				{
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						final JSONObject route = reader.nextObject(SKIPPED_MEMBERS);
+						final LineDestination lineDestination = parseLineDestination(route);
+						lineDestinations.add(lineDestination);
+					}
+					reader.endArray();
+				}
+				else
+				{
+					reader.skipValue();
+				}
 			}
+			reader.endObject();
 
+			stationLinesCache.put(stopPointId, Collections.unmodifiableList(lineDestinations));
 			return lineDestinations;
 		}
 		catch (final JSONException jsonExc)
 		{
 			throw new ParserException(jsonExc);
 		}
+		finally
+		{
+			reader.close();
+		}
 	}
 
 	private String getStopAreaId(final String stopPointId) throws IOException
 	{
+		final String cachedStopAreaId = stopAreaIdCache.get(stopPointId);
+		if (cachedStopAreaId != null)
+			return cachedStopAreaId;
+
 		final String uri = uri() + "stop_points/" + ParserUtils.urlEncode(stopPointId) + "?depth=1";
-		final CharSequence page = ParserUtils.scrape(uri, authorization);
+		final JsonPullReader reader = scrapeJson(uri);
 
 		try
 		{
-			final JSONObject head = new JSONObject(page.toString());
-			final JSONArray stopPoints = head.getJSONArray("stop_points");
-			final JSONObject stopPoint = stopPoints.getJSONObject(0);
-			final JSONObject stopArea = stopPoint.getJSONObject("stop_area");
-			return stopArea.getString("id");
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				if (reader.nextName().equals("stop_points"))
+				{
+					// Only the first stop point is of interest.
+					reader.beginArray();
+					if (!reader.hasNext())
+						throw new JSONException("no stop point");
+					final JSONObject stopPoint = reader.nextObject(SKIPPED_MEMBERS);
+					final JSONObject stopArea = stopPoint.getJSONObject("stop_area");
+					final String stopAreaId = stopArea.getString("id");
+					stopAreaIdCache.put(stopPointId, stopAreaId);
+					return stopAreaId;
+				}
+				else
+				{
+					reader.skipValue();
+				}
+			}
+
+			throw new JSONException("stop_points not found");
 		}
 		catch (final JSONException jsonExc)
 		{
 			throw new ParserException(jsonExc);
 		}
+		finally
+		{
+			reader.close();
+		}
 	}
 
 	private boolean isStationActive(final Location location) throws IOException
 	{
+		final String stationId = location.id;
+
+		final Boolean cachedActive = stationActiveCache.get(stationId);
+		if (cachedActive != null)
+			return cachedActive;
+
 		try
 		{
-			final String stationId = location.id;
-
 			final StringBuilder queryUri = new StringBuilder();
 			queryUri.append(uri());
 			queryUri.append("stop_points/" + stationId + "/");
@@ -726,15 +983,33 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 			// Look for at least one departure in less than an hour.
 			queryUri.append("departures?from_datetime=" + dateTime + "&count=" + 1 + "&duration=3600" + "&depth=0");
 
-			final CharSequence page = ParserUtils.scrape(queryUri.toString(), authorization);
+			final JsonPullReader reader = scrapeJson(queryUri.toString());
 
-			final JSONObject head = new JSONObject(page.toString());
+			try
+			{
+				// Only look whether the departures list is empty.
+				reader.beginObject();
+				while (reader.hasNext())
+				{
+					if (reader.nextName().equals("departures"))
+					{
+						reader.beginArray();
+						final boolean active = reader.hasNext();
+						stationActiveCache.put(stationId, active);
+						return active;
+					}
+					else
+					{
+						reader.skipValue();
+					}
+				}
 
-			final JSONArray departures = head.getJSONArray("departures");
-			if (departures.length() == 0)
-				return false;
-			else
-				return true;
+				throw new JSONException("departures not found");
+			}
+			finally
+			{
+				reader.close();
+			}
 		}
 		catch (final JSONException jsonExc)
 		{
@@ -784,47 +1059,161 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 
 		final String queryUri = uri() + queryUriType + "places_nearby?type[]=stop_point" + "&distance=" + maxDistance + "&count=" + maxStations
 				+ "&depth=0";
-		final CharSequence page = ParserUtils.scrape(queryUri, authorization);
 
-		// System.out.println(queryUri);
+		final List<Location> nearbyLocations = new ArrayList<Location>();
+		int nbResults = -1;
+		final Trace.Span span = Trace.start("navitia.places_nearby", id());
+		JsonPullReader reader = null;
 
 		try
 		{
-			final JSONObject head = new JSONObject(page.toString());
+			reader = scrapeJson(queryUri);
 
-			final JSONObject pagination = head.getJSONObject("pagination");
-			final int nbResults = pagination.getInt("total_result");
-			// If no result is available, location id must be
-			// faulty.
-			if (nbResults == 0)
+			// System.out.println(queryUri);
+
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				return new NearbyStationsResult(resultHeader, Status.INVALID_STATION);
+				final String name = reader.nextName();
+				if (name.equals("pagination"))
+				{
+					final JSONObject pagination = reader.nextObject();
+					nbResults = pagination.getInt("total_result");
+				}
+				else if (name.equals("places_nearby"))
+				{
+					reader.beginArray();
+					while (reader.hasNext())
+						nearbyLocations.add(parseLocation(reader.nextObject(SKIPPED_MEMBERS)));
+					reader.endArray();
+				}
+				else
+				{
+					reader.skipValue();
+				}
 			}
-			else
-			{
-				final List<Location> stations = new ArrayList<Location>();
+			reader.endObject();
+
+			if (nbResults == -1)
+				throw new JSONException("pagination not found");
 
-				final JSONArray places = head.getJSONArray("places_nearby");
+			span.items(nearbyLocations.size());
+		}
+		catch (final JSONException jsonExc)
+		{
+			throw new ParserException(jsonExc);
+		}
+		finally
+		{
+			span.end();
+			if (reader != null)
+				reader.close();
+		}
+
+		// If no result is available, location id must be
+		// faulty.
+		if (nbResults == 0)
+		{
+			return new NearbyStationsResult(resultHeader, Status.INVALID_STATION);
+		}
+		else
+		{
+			// Add location to station list only if
+			// station is active, i.e. at least one
+			// departure exists within one hour.
+			final List<Location> stations = filterActiveStations(nearbyLocations);
+
+			return new NearbyStationsResult(resultHeader, stations);
+		}
+	}
+
+	/**
+	 * Checks all stations in parallel. Stations that could not be confirmed as active in time are left out, the order of
+	 * the remaining stations is kept. If the executor is saturated, checks run on the calling thread as long as the
+	 * deadline has not passed, and are left out otherwise.
+	 */
+	private List<Location> filterActiveStations(final List<Location> locations) throws IOException
+	{
+		final long deadline = System.currentTimeMillis() + STATION_CHECK_TIMEOUT_MS;
+		final List<FutureTask<Boolean>> checks = new ArrayList<FutureTask<Boolean>>(locations.size());
+		int pooledChecks = 0;
 
-				// Cycle through nearby stations.
-				for (int i = 0; i < places.length(); ++i)
+		try
+		{
+			for (final Location location : locations)
+			{
+				final FutureTask<Boolean> check = new FutureTask<Boolean>(new Callable<Boolean>()
 				{
-					final JSONObject place = places.getJSONObject(i);
-
-					// Add location to station list only if
-					// station is active, i.e. at least one
-					// departure exists within one hour.
-					final Location nearbyLocation = parseLocation(place);
-					if (isStationActive(nearbyLocation))
-						stations.add(nearbyLocation);
+					public Boolean call() throws IOException
+					{
+						return isStationActive(location);
+					}
+				});
+				checks.add(check);
+
+				try
+				{
+					STATION_CHECK_EXECUTOR.execute(check);
+					pooledChecks++;
 				}
+				catch (final RejectedExecutionException x)
+				{
+					// executor is saturated, check on the calling thread, which records its own fetch time
+					if (System.currentTimeMillis() < deadline)
+						check.run();
+					else
+						check.cancel(false);
+				}
+			}
+
+			// caller-run checks are done by now, so the wait below only covers checks running on the executor
+			final long waitStart = System.nanoTime();
+			final List<Location> stations = new ArrayList<Location>(locations.size());
 
-				return new NearbyStationsResult(resultHeader, stations);
+			for (int i = 0; i < locations.size(); i++)
+			{
+				try
+				{
+					final long timeout = Math.max(deadline - System.currentTimeMillis(), 0);
+					if (checks.get(i).get(timeout, TimeUnit.MILLISECONDS))
+						stations.add(locations.get(i));
+				}
+				catch (final TimeoutException x)
+				{
+					// deadline has passed, only take checks that are already done
+				}
+				catch (final CancellationException x)
+				{
+					// deadline had passed before the check could run
+				}
+				catch (final ExecutionException x)
+				{
+					final Throwable cause = x.getCause();
+					if (cause instanceof IOException)
+						throw (IOException) cause;
+					else if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					else
+						throw new RuntimeException(cause);
+				}
+				catch (final InterruptedException x)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while checking nearby stations");
+				}
 			}
+
+			// pooled checks did their requests on other threads, so account for the wait as fetch time
+			final QueryProbe probe = QueryProbe.current();
+			if (probe != null && pooledChecks > 0)
+				probe.fetched(System.nanoTime() - waitStart);
+
+			return stations;
 		}
-		catch (final JSONException jsonExc)
+		finally
 		{
-			throw new ParserException(jsonExc);
+			for (final FutureTask<Boolean> check : checks)
+				check.cancel(true);
 		}
 	}
 
@@ -854,63 +1243,46 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 			}
 			queryUri.append("departures?from_datetime=" + dateTime + "&count=" + maxDepartures + "&duration=3600" + "&depth=0");
 
-			final CharSequence page = ParserUtils.scrape(queryUri.toString(), authorization);
-
-			// System.out.println(queryUri);
-
-			final JSONObject head = new JSONObject(page.toString());
-
-			final JSONArray departures = head.getJSONArray("departures");
+			final Trace.Span span = Trace.start("navitia.departures", id());
+			JsonPullReader reader = null;
 
-			// Fill departures in StationDepartures.
-			for (int i = 0; i < departures.length(); ++i)
+			try
 			{
-				final JSONObject jsonDeparture = departures.getJSONObject(i);
+				reader = scrapeJson(queryUri.toString());
 
-				final JSONObject stopPoint = jsonDeparture.getJSONObject("stop_point");
-				final Location location = parseStopPoint(stopPoint);
+				// System.out.println(queryUri);
 
-				// If stop point has already been added, retrieve it
-				// from result, otherwise add it and add station
-				// lines.
-				StationDepartures stationDepartures = result.findStationDepartures(location.id);
-				if (stationDepartures == null)
+				reader.beginObject();
+				while (reader.hasNext())
 				{
-					stationDepartures = new StationDepartures(location, new LinkedList<Departure>(), new LinkedList<LineDestination>());
-					result.stationDepartures.add(stationDepartures);
-
-					final List<LineDestination> lineDestinations = getStationLines(location.id);
-
-					for (LineDestination lineDestination : lineDestinations)
-						stationDepartures.lines.add(lineDestination);
+					if (reader.nextName().equals("departures"))
+					{
+						// Fill departures in StationDepartures.
+						reader.beginArray();
+						while (reader.hasNext())
+							parseDeparture(reader.nextObject(SKIPPED_MEMBERS), result);
+						reader.endArray();
+					}
+					else
+					{
+						reader.skipValue();
+					}
 				}
+				reader.endObject();
 
-				// Build departure date.
-				final JSONObject stopDateTime = jsonDeparture.getJSONObject("stop_date_time");
-				final String departureDateTime = stopDateTime.getString("departure_date_time");
-				final Date plannedTime = parseDate(departureDateTime);
-
-				// Build line.
-				final JSONObject route = jsonDeparture.getJSONObject("route");
-				final JSONObject jsonLine = route.getJSONObject("line");
-				final Line line = parseLine(jsonLine);
-				final Location destination = findLineDestination(stationDepartures.lines, line).destination;
-
-				// Add departure to list.
-				final Departure departure = new Departure(plannedTime, null, line, null, destination, null, null);
-				stationDepartures.departures.add(departure);
+				return traced(span, result);
+			}
+			finally
+			{
+				span.end();
+				if (reader != null)
+					reader.close();
 			}
-
-			return result;
 		}
 		catch (final JSONException jsonExc)
 		{
 			throw new ParserException(jsonExc);
 		}
-		catch (final ParseException parseExc)
-		{
-			throw new ParserException(parseExc);
-		}
 		catch (final NotFoundException fnfExc)
 		{
 			try
@@ -931,6 +1303,53 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		}
 	}
 
+	private void parseDeparture(final JSONObject jsonDeparture, final QueryDeparturesResult result) throws IOException
+	{
+		try
+		{
+			final JSONObject stopPoint = jsonDeparture.getJSONObject("stop_point");
+			final Location location = parseStopPoint(stopPoint);
+
+			// If stop point has already been added, retrieve it
+			// from result, otherwise add it and add station
+			// lines.
+			StationDepartures stationDepartures = result.findStationDepartures(location.id);
+			if (stationDepartures == null)
+			{
+				stationDepartures = new StationDepartures(location, new LinkedList<Departure>(), new LinkedList<LineDestination>());
+				result.stationDepartures.add(stationDepartures);
+
+				final List<LineDestination> lineDestinations = getStationLines(location.id);
+
+				for (LineDestination lineDestination : lineDestinations)
+					stationDepartures.lines.add(lineDestination);
+			}
+
+			// Build departure date.
+			final JSONObject stopDateTime = jsonDeparture.getJSONObject("stop_date_time");
+			final String departureDateTime = stopDateTime.getString("departure_date_time");
+			final Date plannedTime = parseDate(departureDateTime);
+
+			// Build line.
+			final JSONObject route = jsonDeparture.getJSONObject("route");
+			final JSONObject jsonLine = route.getJSONObject("line");
+			final Line line = parseLine(jsonLine);
+			final Location destination = findLineDestination(stationDepartures.lines, line).destination;
+
+			// Add departure to list.
+			final Departure departure = new Departure(plannedTime, null, line, null, destination, null, null);
+			stationDepartures.departures.add(departure);
+		}
+		catch (final JSONException jsonExc)
+		{
+			throw new ParserException(jsonExc);
+		}
+		catch (final ParseException parseExc)
+		{
+			throw new ParserException(parseExc);
+		}
+	}
+
 	private LineDestination findLineDestination(final List<LineDestination> lineDestinations, final Line line)
 	{
 		for (final LineDestination lineDestination : lineDestinations)
@@ -945,37 +1364,53 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		final String nameCstr = constraint.toString();
 
 		final String queryUri = uri() + "places?q=" + ParserUtils.urlEncode(nameCstr) + "&type[]=stop_area&type[]=address" + "&depth=1";
-		final CharSequence page = ParserUtils.scrape(queryUri, authorization);
-
-		// System.out.println(queryUri);
+		final Trace.Span span = Trace.start("navitia.places", id());
+		JsonPullReader reader = null;
 
 		try
 		{
-			final List<SuggestedLocation> locations = new ArrayList<SuggestedLocation>();
+			reader = scrapeJson(queryUri);
 
-			final JSONObject head = new JSONObject(page.toString());
+			// System.out.println(queryUri);
 
-			if (head.has("places"))
-			{
-				final JSONArray places = head.getJSONArray("places");
+			final List<SuggestedLocation> locations = new ArrayList<SuggestedLocation>();
 
-				for (int i = 0; i < places.length(); ++i)
+			reader.beginObject();
+			while (reader.hasNext())
+			{
+				if (reader.nextName().equals("places"))
 				{
-					final JSONObject place = places.getJSONObject(i);
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						final JSONObject place = reader.nextObject(SKIPPED_MEMBERS);
 
-					// Add location to station list.
-					final Location location = parseLocation(place);
-					locations.add(new SuggestedLocation(location));
+						// Add location to station list.
+						final Location location = parseLocation(place);
+						locations.add(new SuggestedLocation(location));
+					}
+					reader.endArray();
+				}
+				else
+				{
+					reader.skipValue();
 				}
 			}
+			reader.endObject();
 
 			final ResultHeader resultHeader = new ResultHeader(SERVER_PRODUCT, SERVER_VERSION, 0, null);
-			return new SuggestLocationsResult(resultHeader, locations);
+			return traced(span, new SuggestLocationsResult(resultHeader, locations));
 		}
 		catch (final JSONException jsonExc)
 		{
 			throw new ParserException(jsonExc);
 		}
+		finally
+		{
+			span.end();
+			if (reader != null)
+				reader.close();
+		}
 	}
 
 	public QueryTripsResult queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
@@ -1052,45 +1487,27 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 					}
 				}
 
-				final CharSequence page = ParserUtils.scrape(queryUri.toString(), authorization);
-
-				// System.out.println(queryUri);
+				final Trace.Span span = Trace.start("navitia.journeys", id());
+				JsonPullReader reader = null;
 
 				try
 				{
-					final JSONObject head = new JSONObject(page.toString());
+					reader = scrapeJson(queryUri.toString());
 
-					if (head.has("error"))
-					{
-						final JSONObject error = head.getJSONObject("error");
-						final String id = error.getString("id");
-
-						if (id.equals("no_solution"))
-							return new QueryTripsResult(resultHeader, QueryTripsResult.Status.NO_TRIPS);
-						else
-							throw new IllegalArgumentException("Unhandled error id: " + id);
-					}
-					else
-					{
-						// Fill context.
-						final JSONArray links = head.getJSONArray("links");
-						final JSONObject prev = links.getJSONObject(0);
-						final String prevQueryUri = prev.getString("href");
-						final JSONObject next = links.getJSONObject(1);
-						final String nextQueryUri = next.getString("href");
-
-						final QueryTripsResult result = new QueryTripsResult(resultHeader, queryUri.toString(), from, null, to, new Context(from, to,
-								prevQueryUri, nextQueryUri), new LinkedList<Trip>());
+					// System.out.println(queryUri);
 
-						parseQueryTripsResult(head, from, to, result);
-
-						return result;
-					}
+					return traced(span, parseQueryTripsResult(reader, resultHeader, queryUri.toString(), from, to));
 				}
 				catch (final JSONException jsonExc)
 				{
 					throw new ParserException(jsonExc);
 				}
+				finally
+				{
+					span.end();
+					if (reader != null)
+						reader.close();
+				}
 			}
 			else
 			{
@@ -1139,53 +1556,44 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		final Location from = context.from;
 		final Location to = context.to;
 		final String queryUri = later ? context.nextQueryUri : context.prevQueryUri;
-		final CharSequence page = ParserUtils.scrape(queryUri, authorization);
-
-		// System.out.println(queryUri);
+		final Trace.Span span = Trace.start("navitia.journeys", id());
+		JsonPullReader reader = null;
 
 		try
 		{
-			if (from.isIdentified() && to.isIdentified())
-			{
-				final JSONObject head = new JSONObject(page.toString());
-
-				// Fill context.
-				final JSONArray links = head.getJSONArray("links");
-				final JSONObject prev = links.getJSONObject(0);
-				final String prevQueryUri = prev.getString("href");
-				final JSONObject next = links.getJSONObject(1);
-				final String nextQueryUri = next.getString("href");
+			reader = scrapeJson(queryUri);
 
-				final QueryTripsResult result = new QueryTripsResult(resultHeader, queryUri, from, null, to, new Context(from, to, prevQueryUri,
-						nextQueryUri), new LinkedList<Trip>());
-
-				parseQueryTripsResult(head, from, to, result);
+			// System.out.println(queryUri);
 
-				return result;
-			}
+			if (from.isIdentified() && to.isIdentified())
+				return traced(span, parseQueryTripsResult(reader, resultHeader, queryUri, from, to));
 			else
-			{
 				return new QueryTripsResult(null, QueryTripsResult.Status.NO_TRIPS);
-			}
 		}
 		catch (final JSONException jsonExc)
 		{
 			throw new ParserException(jsonExc);
 		}
+		finally
+		{
+			span.end();
+			if (reader != null)
+				reader.close();
+		}
 	}
 
 	@Override
 	public Point[] getArea() throws IOException
 	{
 		final String queryUri = uri();
-		final CharSequence page = ParserUtils.scrape(queryUri, authorization);
+		final JsonPullReader reader = scrapeJson(queryUri);
 
 		// System.out.println(queryUri);
 
 		try
 		{
 			// Get shape string.
-			final JSONObject head = new JSONObject(page.toString());
+			final JSONObject head = reader.nextObject(SKIPPED_MEMBERS);
 			final JSONArray regions = head.getJSONArray("regions");
 			final JSONObject regionInfo = regions.getJSONObject(0);
 			final String shape = regionInfo.getString("shape");
@@ -1220,5 +1628,9 @@ public abstract class AbstractNavitiaProvider extends AbstractNetworkProvider
 		{
 			throw new ParserException(jsonExc);
 		}
+		finally
+		{
+			reader.close();
+		}
 	}
 }
@@ -28,6 +28,11 @@ import java.util.TimeZone;
 import de.schildbach.pte.dto.Point;
 import de.schildbach.pte.dto.Product;
 import de.schildbach.pte.dto.Style;
+import de.schildbach.pte.util.AdaptiveLimitHttpTransport;
+import de.schildbach.pte.util.HttpTransport;
+import de.schildbach.pte.util.ResilientHttpTransport;
+import de.schildbach.pte.util.SessionCookieJar;
+import de.schildbach.pte.util.Trace;
 
 /**
  * @author Andreas Schildbach
@@ -41,7 +46,9 @@ public abstract class AbstractNetworkProvider implements NetworkProvider
 	protected TimeZone timeZone = TimeZone.getTimeZone("CET");
 	protected int numTripsRequested = 6;
 	private Map<String, Style> styles = null;
-	protected String sessionCookieName = null;
+	private SessionCookieJar sessionCookies = null;
+	private HttpTransport httpTransport = ResilientHttpTransport.DEFAULT;
+	private volatile boolean frozen = false;
 
 	static
 	{
@@ -67,22 +74,94 @@ public abstract class AbstractNetworkProvider implements NetworkProvider
 
 	protected void setTimeZone(final String timeZoneId)
 	{
+		checkNotFrozen();
 		this.timeZone = TimeZone.getTimeZone(timeZoneId);
 	}
 
 	protected void setNumTripsRequested(final int numTripsRequested)
 	{
+		checkNotFrozen();
 		this.numTripsRequested = numTripsRequested;
 	}
 
 	protected void setStyles(final Map<String, Style> styles)
 	{
+		checkNotFrozen();
 		this.styles = styles;
 	}
 
 	protected void setSessionCookieName(final String sessionCookieName)
 	{
-		this.sessionCookieName = sessionCookieName;
+		checkNotFrozen();
+		this.sessionCookies = sessionCookieName != null ? new SessionCookieJar(sessionCookieName) : null;
+	}
+
+	/**
+	 * Start a new logical client session. Requests sharing a key also share the session cookie, while concurrent
+	 * sessions don't affect each other.
+	 */
+	protected final String newSessionKey()
+	{
+		return sessionCookies != null ? sessionCookies.newSessionKey() : null;
+	}
+
+	protected final SessionCookieJar.Session session(final String sessionKey)
+	{
+		if (sessionCookies == null || sessionKey == null)
+			return null;
+
+		return sessionCookies.session(sessionKey);
+	}
+
+	/**
+	 * Replace the transport used for all requests of this provider, for example to tune connection pooling or to route
+	 * requests through a recording or caching layer. Needs to be done before the first query.
+	 * 
+	 * <p>
+	 * By default, requests go through the shared {@link ResilientHttpTransport#DEFAULT}, which in turn limits concurrency
+	 * per host through the shared {@link AdaptiveLimitHttpTransport#DEFAULT}. To configure retries, circuit breaking or
+	 * concurrency limits for a provider of its own, chain these transports with custom policies.
+	 * </p>
+	 */
+	public void setHttpTransport(final HttpTransport httpTransport)
+	{
+		if (httpTransport == null)
+			throw new IllegalArgumentException("httpTransport must not be null");
+		checkNotFrozen();
+
+		this.httpTransport = httpTransport;
+	}
+
+	/**
+	 * Transport for all requests of this provider. Using it freezes the configuration of the provider, so that it is
+	 * never changed while queries are running concurrently.
+	 */
+	protected final HttpTransport httpTransport()
+	{
+		if (!frozen)
+			frozen = true;
+
+		return httpTransport;
+	}
+
+	/**
+	 * Configuration setters need to call this, as configuration is only allowed until the first request.
+	 */
+	protected final void checkNotFrozen()
+	{
+		if (frozen)
+			throw new IllegalStateException("configuration of " + getClass().getName() + " cannot be changed after first use");
+	}
+
+	/**
+	 * Record the number of items of a result on a trace span, and pass the result on.
+	 */
+	protected static <T> T traced(final Trace.Span span, final T result)
+	{
+		if (span.isRecording())
+			span.items(MetricsNetworkProvider.cardinality(result));
+
+		return result;
 	}
 
 	private static final char STYLES_SEP = '|';
@@ -18,6 +18,7 @@
 package de.schildbach.pte;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -52,7 +53,9 @@ import de.schildbach.pte.dto.SuggestLocationsResult;
 import de.schildbach.pte.dto.SuggestedLocation;
 import de.schildbach.pte.dto.Trip;
 import de.schildbach.pte.exception.ParserException;
+import de.schildbach.pte.util.JsonPullReader;
 import de.schildbach.pte.util.ParserUtils;
+import de.schildbach.pte.util.Trace;
 
 /**
  * @author Kjell Braden <afflux@pentabarf.de>
@@ -130,7 +133,7 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 
 	private static final ResultHeader HEADER = new ResultHeader("tsi");
 
-	private static Map<String, Character> TRANSPORT_MODE_SHORTS = new HashMap<String, Character>();
+	private static final Map<String, Character> TRANSPORT_MODE_SHORTS = new HashMap<String, Character>();
 	static
 	{
 		// HIGH_SPEED_TRAIN
@@ -205,34 +208,116 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(stopFinderEndpoint);
 		uri.append(parameters);
 
-		final CharSequence page = ParserUtils.scrape(uri.toString(), null, UTF_8);
+		final Trace.Span span = Trace.start("tsi.tripPoints", id());
+		JsonPullReader reader = null;
+
 		try
 		{
-			final List<SuggestedLocation> locations = new ArrayList<SuggestedLocation>();
-			final JSONObject head = new JSONObject(page.toString());
+			reader = scrapeJson(uri.toString());
 
-			int status = head.getInt("StatusCode");
+			final List<SuggestedLocation> locations = new ArrayList<SuggestedLocation>();
+			final int status = readStatusAndData(reader, new DataParser<SuggestedLocation>()
+			{
+				public SuggestedLocation parse(final JSONObject json) throws JSONException
+				{
+					final Location location = parseJsonTransportLocation(json);
+
+					if (location.isIdentified()) // make sure the location is really identified
+						// some addresses may not contain coordinates, we ignore them
+						return new SuggestedLocation(location);
+					else
+						return null;
+				}
+			}, locations);
 
 			if (status != 200)
 				return new SuggestLocationsResult(HEADER, SuggestLocationsResult.Status.SERVICE_DOWN);
 
-			JSONArray dataArray = head.getJSONArray("Data");
-			for (int i = 0; i < dataArray.length(); i++)
-			{
-				JSONObject data = dataArray.getJSONObject(i);
-				final Location location = parseJsonTransportLocation(data);
-
-				if (location.isIdentified()) // make sure the location is really identified
-					// some addresses may not contain coordinates, we ignore them
-					locations.add(new SuggestedLocation(location));
-			}
-
-			return new SuggestLocationsResult(HEADER, locations);
+			return traced(span, new SuggestLocationsResult(HEADER, locations));
 		}
 		catch (final JSONException x)
 		{
 			throw new ParserException(x);
 		}
+		finally
+		{
+			span.end();
+			if (reader != null)
+				reader.close();
+		}
+	}
+
+	private interface DataParser<T>
+	{
+		/**
+		 * @return parsed element, or {@code null} to leave it out
+		 */
+		T parse(JSONObject json) throws JSONException;
+	}
+
+	/**
+	 * Reads a response of the form {@code {"StatusCode": ..., "Data": [...]}}. The elements of {@code Data} need not be
+	 * locations if the status is not OK, so they are parsed while they arrive only if the status came first and is OK.
+	 * If the status comes after the data, the elements are kept until it is known.
+	 * 
+	 * @return status code, or {@code -1} if missing
+	 */
+	private <T> int readStatusAndData(final JsonPullReader reader, final DataParser<T> parser, final List<T> results) throws IOException,
+			JSONException
+	{
+		int status = -1;
+		List<JSONObject> pending = null;
+
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			final String name = reader.nextName();
+			if (name.equals("StatusCode"))
+			{
+				status = reader.nextInt();
+			}
+			else if (name.equals("Data") && reader.peek() == JsonPullReader.Token.BEGIN_ARRAY && (status == -1 || status == 200))
+			{
+				reader.beginArray();
+				while (reader.hasNext())
+				{
+					if (status == 200)
+					{
+						addParsed(parser, reader.nextObject(), results);
+					}
+					else
+					{
+						if (pending == null)
+							pending = new ArrayList<JSONObject>();
+						pending.add(reader.nextObject());
+					}
+				}
+				reader.endArray();
+			}
+			else
+			{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		if (status == 200 && pending != null)
+			for (final JSONObject json : pending)
+				addParsed(parser, json, results);
+
+		return status;
+	}
+
+	private static <T> void addParsed(final DataParser<T> parser, final JSONObject json, final List<T> results) throws JSONException
+	{
+		final T result = parser.parse(json);
+		if (result != null)
+			results.add(result);
+	}
+
+	private JsonPullReader scrapeJson(final String uri) throws IOException
+	{
+		return new JsonPullReader(new InputStreamReader(ParserUtils.scrapeInputStream(httpTransport(), uri, null, UTF_8, null, null), UTF_8));
 	}
 
 	private final StringBuilder buildCommonRequestParams(final String method, final String outputFormat)
@@ -295,14 +380,17 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(stopFinderEndpoint);
 		uri.append(parameters);
 
-		final CharSequence page = ParserUtils.scrape(uri.toString(), null, UTF_8);
+		final JsonPullReader reader = scrapeJson(uri.toString());
 		try
 		{
-
 			final List<Location> stations = new ArrayList<Location>();
-			final JSONObject head = new JSONObject(page.toString());
-
-			int status = head.getInt("StatusCode");
+			final int status = readStatusAndData(reader, new DataParser<Location>()
+			{
+				public Location parse(final JSONObject json) throws JSONException
+				{
+					return parseJsonTransportLocation(json);
+				}
+			}, stations);
 
 			if (status != 200)
 			{
@@ -310,19 +398,16 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 						: NearbyStationsResult.Status.SERVICE_DOWN);
 			}
 
-			JSONArray dataArray = head.getJSONArray("Data");
-			for (int i = 0; i < dataArray.length(); i++)
-			{
-				JSONObject data = dataArray.getJSONObject(i);
-				stations.add(parseJsonTransportLocation(data));
-			}
-
 			return new NearbyStationsResult(HEADER, stations);
 		}
 		catch (final JSONException x)
 		{
 			throw new ParserException(x);
 		}
+		finally
+		{
+			reader.close();
+		}
 	}
 
 	private String jsonOptString(final JSONObject json, final String key) throws JSONException
@@ -339,10 +424,10 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 		final StringBuilder uri = new StringBuilder(stopFinderEndpoint);
 		uri.append(parameters);
 
-		final CharSequence page = ParserUtils.scrape(uri.toString(), null, UTF_8);
+		final JsonPullReader reader = scrapeJson(uri.toString());
 		try
 		{
-			final JSONObject head = new JSONObject(page.toString());
+			final JSONObject head = reader.nextObject();
 
 			int status = head.getInt("StatusCode");
 
@@ -356,6 +441,10 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 		{
 			throw new ParserException(x);
 		}
+		finally
+		{
+			reader.close();
+		}
 	}
 
 	private Trip.Individual parseJsonJourneyplannerIndividualLeg(final JSONObject legInfo) throws JSONException
@@ -753,19 +842,63 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 
 		final StringBuilder uri = new StringBuilder(tripEndpoint);
 		uri.append(parameters);
-		final CharSequence page = ParserUtils.scrape(uri.toString(), null, UTF_8, null);
+		final Trace.Span span = Trace.start("tsi.trips", id());
+		JsonPullReader reader = null;
+
 		try
 		{
-			final JSONObject head = new JSONObject(page.toString());
+			reader = scrapeJson(uri.toString());
 
-			final JSONObject statusObj = head.optJSONObject("Status");
+			String statusStr = null;
+			List<Trip> trips = null;
+			List<JSONObject> pendingTripObjs = null;
 
-			if (statusObj == null)
+			reader.beginObject();
+			while (reader.hasNext())
 			{
-				return new QueryTripsResult(HEADER, QueryTripsResult.Status.SERVICE_DOWN);
+				final String name = reader.nextName();
+				if (name.equals("Status") && reader.peek() == JsonPullReader.Token.BEGIN_OBJECT)
+				{
+					statusStr = reader.nextObject().optString("Code");
+				}
+				else if (name.equals("trips") && reader.peek() == JsonPullReader.Token.BEGIN_OBJECT)
+				{
+					reader.beginObject();
+					while (reader.hasNext())
+					{
+						if (reader.nextName().equals("Trip"))
+						{
+							// parsed while arriving if the status is known to be OK, otherwise kept until it is known
+							trips = new ArrayList<Trip>();
+							pendingTripObjs = "OK".equals(statusStr) ? null : new ArrayList<JSONObject>();
+							reader.beginArray();
+							while (reader.hasNext())
+							{
+								if (pendingTripObjs == null)
+									trips.add(parseJsonJourneyplannerTrip(reader.nextObject()));
+								else
+									pendingTripObjs.add(reader.nextObject());
+							}
+							reader.endArray();
+						}
+						else
+						{
+							reader.skipValue();
+						}
+					}
+					reader.endObject();
+				}
+				else
+				{
+					reader.skipValue();
+				}
 			}
+			reader.endObject();
 
-			final String statusStr = statusObj.optString("Code");
+			if (statusStr == null)
+			{
+				return new QueryTripsResult(HEADER, QueryTripsResult.Status.SERVICE_DOWN);
+			}
 
 			if ("NO_SOLUTION_FOR_REQUEST".equals(statusStr))
 			{
@@ -777,14 +910,12 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 				return new QueryTripsResult(HEADER, QueryTripsResult.Status.SERVICE_DOWN);
 			}
 
-			final JSONArray tripArray = head.getJSONObject("trips").getJSONArray("Trip");
-			final List<Trip> trips = new ArrayList<Trip>(tripArray.length());
+			if (trips == null)
+				throw new JSONException("trips not found");
 
-			for (int i = 0; i < tripArray.length(); i++)
-			{
-				final JSONObject tripObject = tripArray.getJSONObject(i);
-				trips.add(parseJsonJourneyplannerTrip(tripObject));
-			}
+			if (pendingTripObjs != null)
+				for (final JSONObject tripObj : pendingTripObjs)
+					trips.add(parseJsonJourneyplannerTrip(tripObj));
 
 			if (trips.size() > 0)
 			{
@@ -792,12 +923,18 @@ public abstract class AbstractTsiProvider extends AbstractNetworkProvider
 				context.updateLatestDeparture(trips.get(trips.size() - 1).getFirstDepartureTime());
 			}
 
-			return new QueryTripsResult(HEADER, uri.toString(), context.from, context.via, context.to, context, trips);
+			return traced(span, new QueryTripsResult(HEADER, uri.toString(), context.from, context.via, context.to, context, trips));
 		}
 		catch (final JSONException x)
 		{
 			throw new ParserException(x);
 		}
+		finally
+		{
+			span.end();
+			if (reader != null)
+				reader.close();
+		}
 	}
 
 	protected TimeZone timeZone()
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.schildbach.pte.NetworkProvider.Accessibility;
+import de.schildbach.pte.NetworkProvider.Option;
+import de.schildbach.pte.NetworkProvider.WalkSpeed;
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.Product;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsContext;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Asynchronous front for a {@link NetworkProvider}. Each query is run on the given executor and returns immediately with
+ * a {@link Future}. Optionally, a {@link Callback} is notified once the result is available, so callers do not need to
+ * block on {@link Future#get()} at all.
+ * 
+ * <p>
+ * The underlying providers still do blocking I/O, so the size of the executor bounds the number of upstream requests in
+ * flight. If the executor rejects a query, {@link java.util.concurrent.RejectedExecutionException} is thrown right away.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class AsyncNetworkProvider
+{
+	public interface Callback<T>
+	{
+		void onResult(T result);
+
+		/**
+		 * @param x
+		 *            exception thrown by the query, or a {@link CancellationException} if the query was cancelled via
+		 *            its {@link Future}
+		 */
+		void onError(Throwable x);
+	}
+
+	private final NetworkProvider provider;
+	private final ExecutorService executor;
+
+	public AsyncNetworkProvider(final NetworkProvider provider, final ExecutorService executor)
+	{
+		this.provider = provider;
+		this.executor = executor;
+	}
+
+	public NetworkProvider provider()
+	{
+		return provider;
+	}
+
+	public Future<NearbyStationsResult> queryNearbyStations(final Location location, final int maxDistance, final int maxStations,
+			final Callback<NearbyStationsResult> callback)
+	{
+		return submit(new Callable<NearbyStationsResult>()
+		{
+			public NearbyStationsResult call() throws IOException
+			{
+				return provider.queryNearbyStations(location, maxDistance, maxStations);
+			}
+		}, callback);
+	}
+
+	public Future<QueryDeparturesResult> queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs,
+			final Callback<QueryDeparturesResult> callback)
+	{
+		return submit(new Callable<QueryDeparturesResult>()
+		{
+			public QueryDeparturesResult call() throws IOException
+			{
+				return provider.queryDepartures(stationId, time, maxDepartures, equivs);
+			}
+		}, callback);
+	}
+
+	public Future<SuggestLocationsResult> suggestLocations(final CharSequence constraint, final Callback<SuggestLocationsResult> callback)
+	{
+		return submit(new Callable<SuggestLocationsResult>()
+		{
+			public SuggestLocationsResult call() throws IOException
+			{
+				return provider.suggestLocations(constraint);
+			}
+		}, callback);
+	}
+
+	public Future<QueryTripsResult> queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
+			final Collection<Product> products, final WalkSpeed walkSpeed, final Accessibility accessibility, final Set<Option> options,
+			final Callback<QueryTripsResult> callback)
+	{
+		return submit(new Callable<QueryTripsResult>()
+		{
+			public QueryTripsResult call() throws IOException
+			{
+				return provider.queryTrips(from, via, to, date, dep, products, walkSpeed, accessibility, options);
+			}
+		}, callback);
+	}
+
+	public Future<QueryTripsResult> queryMoreTrips(final QueryTripsContext context, final boolean later, final Callback<QueryTripsResult> callback)
+	{
+		return submit(new Callable<QueryTripsResult>()
+		{
+			public QueryTripsResult call() throws IOException
+			{
+				return provider.queryMoreTrips(context, later);
+			}
+		}, callback);
+	}
+
+	public Future<Point[]> getArea(final Callback<Point[]> callback)
+	{
+		return submit(new Callable<Point[]>()
+		{
+			public Point[] call() throws IOException
+			{
+				return provider.getArea();
+			}
+		}, callback);
+	}
+
+	private <T> Future<T> submit(final Callable<T> call, final Callback<T> callback)
+	{
+		final FutureTask<T> task = new FutureTask<T>(call)
+		{
+			@Override
+			protected void done()
+			{
+				if (callback == null)
+					return;
+
+				if (isCancelled())
+				{
+					callback.onError(new CancellationException());
+					return;
+				}
+
+				final T result;
+				try
+				{
+					result = get();
+				}
+				catch (final InterruptedException x)
+				{
+					// cannot happen, the task is already done
+					Thread.currentThread().interrupt();
+					return;
+				}
+				catch (final ExecutionException x)
+				{
+					callback.onError(x.getCause());
+					return;
+				}
+
+				callback.onResult(result);
+			}
+		};
+
+		executor.execute(task);
+
+		return task;
+	}
+
+	/**
+	 * Create an executor suitable for provider calls: a fixed number of daemon threads and a bounded queue, so that an
+	 * overload is rejected rather than piling up.
+	 */
+	public static ExecutorService newExecutor(final String name, final int numThreads, final int queueSize)
+	{
+		final ThreadFactory threadFactory = new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(final Runnable runnable)
+			{
+				final Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+
+		return new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueSize), threadFactory);
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.Product;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsContext;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.exception.BulkheadFullException;
+import de.schildbach.pte.util.QueryProbe;
+
+/**
+ * Limits the number of concurrent queries of a {@link NetworkProvider}, so that a slow network can only tie up a bounded
+ * share of the caller's threads. Queries beyond the limit wait in a bounded queue for a limited time. If the queue is
+ * full or the wait times out, a {@link BulkheadFullException} is thrown right away.
+ * 
+ * <p>
+ * Wrap one instance around each provider, inside of a {@link MetricsNetworkProvider} so that rejections show up as
+ * outcomes.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class BulkheadNetworkProvider extends ForwardingNetworkProvider
+{
+	public static final int DEFAULT_MAX_CONCURRENT = 8;
+	public static final int DEFAULT_MAX_QUEUED = 8;
+	public static final long DEFAULT_MAX_WAIT_MS = 1000;
+
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final long maxWaitMs;
+	private final Semaphore permits;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	public BulkheadNetworkProvider(final NetworkProvider delegate)
+	{
+		this(delegate, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_QUEUED, DEFAULT_MAX_WAIT_MS);
+	}
+
+	/**
+	 * @param maxConcurrent
+	 *            maximum number of queries running at the same time
+	 * @param maxQueued
+	 *            maximum number of queries waiting for one of the running queries to finish, or {@code 0}
+	 * @param maxWaitMs
+	 *            maximum time a query waits
+	 */
+	public BulkheadNetworkProvider(final NetworkProvider delegate, final int maxConcurrent, final int maxQueued, final long maxWaitMs)
+	{
+		super(delegate);
+
+		if (maxConcurrent <= 0)
+			throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueued = maxQueued;
+		this.maxWaitMs = maxWaitMs;
+		this.permits = new Semaphore(maxConcurrent, true);
+	}
+
+	@Override
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.queryNearbyStations(location, maxDistance, maxStations);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	@Override
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.queryDepartures(stationId, time, maxDepartures, equivs);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	@Override
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.suggestLocations(constraint);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	@Override
+	public QueryTripsResult queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
+			final Collection<Product> products, final WalkSpeed walkSpeed, final Accessibility accessibility, final Set<Option> options)
+			throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.queryTrips(from, via, to, date, dep, products, walkSpeed, accessibility, options);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	@Override
+	public QueryTripsResult queryMoreTrips(final QueryTripsContext context, final boolean later) throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.queryMoreTrips(context, later);
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	@Override
+	public Point[] getArea() throws IOException
+	{
+		acquire();
+		try
+		{
+			return delegate.getArea();
+		}
+		finally
+		{
+			permits.release();
+		}
+	}
+
+	private void acquire() throws IOException
+	{
+		if (permits.tryAcquire())
+			return;
+
+		if (queued.incrementAndGet() > maxQueued)
+		{
+			queued.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			throw new BulkheadFullException(id(), maxConcurrent + " queries running, " + maxQueued + " waiting");
+		}
+
+		final long waitStart = System.nanoTime();
+
+		try
+		{
+			if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS))
+			{
+				rejectedCount.incrementAndGet();
+				throw new BulkheadFullException(id(), "no query finished within " + maxWaitMs + " ms");
+			}
+		}
+		catch (final InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for a running query of " + id());
+		}
+		finally
+		{
+			queued.decrementAndGet();
+
+			// keep the wait apart from fetch and parse time of an enclosing MetricsNetworkProvider
+			final QueryProbe probe = QueryProbe.current();
+			if (probe != null)
+				probe.waited(System.nanoTime() - waitStart);
+		}
+	}
+
+	public int inFlight()
+	{
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	public int queued()
+	{
+		return queued.get();
+	}
+
+	public long rejectedCount()
+	{
+		return rejectedCount.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "bulkhead[" + id() + " inFlight=" + inFlight() + "/" + maxConcurrent + " queued=" + queued() + "/" + maxQueued + " rejected="
+				+ rejectedCount() + "]";
+	}
+}
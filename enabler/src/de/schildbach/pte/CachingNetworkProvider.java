@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.StationDepartures;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.util.LruCache;
+
+/**
+ * Caches the results of a {@link NetworkProvider}, with a separate cache and {@link Policy} per operation. The area is
+ * kept for long, location suggestions and nearby stations for a few minutes, and departures only briefly and per time
+ * bucket. Results with status {@code SERVICE_DOWN} are never cached. Line styles are not cached, as looking them up is
+ * cheaper than a cache lookup.
+ * 
+ * <p>
+ * Cached results are shared between callers, so they must not be modified. To also deduplicate concurrent misses, wrap
+ * a {@link CoalescingNetworkProvider}.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class CachingNetworkProvider extends ForwardingNetworkProvider
+{
+	public enum Operation
+	{
+		AREA, SUGGEST_LOCATIONS, NEARBY_STATIONS, DEPARTURES
+	}
+
+	public static final class Policy
+	{
+		public final long ttlMs;
+		public final long maxWeight;
+
+		/**
+		 * @param ttlMs
+		 *            time to live of cached results in milliseconds
+		 * @param maxWeight
+		 *            maximum estimated size of the cache in bytes
+		 */
+		public Policy(final long ttlMs, final long maxWeight)
+		{
+			this.ttlMs = ttlMs;
+			this.maxWeight = maxWeight;
+		}
+	}
+
+	private static final long MINUTE_MS = 60 * 1000;
+	private static final int LOCATION_WEIGHT = 192;
+	private static final Map<Operation, Policy> DEFAULT_POLICIES = new EnumMap<Operation, Policy>(Operation.class);
+
+	static
+	{
+		DEFAULT_POLICIES.put(Operation.AREA, new Policy(24 * 60 * MINUTE_MS, 64 * 1024));
+		DEFAULT_POLICIES.put(Operation.SUGGEST_LOCATIONS, new Policy(10 * MINUTE_MS, 4 * 1024 * 1024));
+		DEFAULT_POLICIES.put(Operation.NEARBY_STATIONS, new Policy(10 * MINUTE_MS, 4 * 1024 * 1024));
+		DEFAULT_POLICIES.put(Operation.DEPARTURES, new Policy(MINUTE_MS / 2, 8 * 1024 * 1024));
+	}
+
+	private final LruCache<String, Point[]> areaCache;
+	private final LruCache<String, SuggestLocationsResult> suggestLocationsCache;
+	private final LruCache<String, NearbyStationsResult> nearbyStationsCache;
+	private final LruCache<String, QueryDeparturesResult> departuresCache;
+	private final long departuresTimeBucketMs;
+
+	public CachingNetworkProvider(final NetworkProvider delegate)
+	{
+		this(delegate, Collections.<Operation, Policy> emptyMap());
+	}
+
+	/**
+	 * @param policies
+	 *            policies overriding the defaults, per operation
+	 */
+	public CachingNetworkProvider(final NetworkProvider delegate, final Map<Operation, Policy> policies)
+	{
+		super(delegate);
+
+		final Map<Operation, Policy> p = new EnumMap<Operation, Policy>(DEFAULT_POLICIES);
+		p.putAll(policies);
+
+		areaCache = newCache(p.get(Operation.AREA), new LruCache.Weigher<Point[]>()
+		{
+			public int weigh(final Point[] area)
+			{
+				return 64 + area.length * 24;
+			}
+		});
+		suggestLocationsCache = newCache(p.get(Operation.SUGGEST_LOCATIONS), new LruCache.Weigher<SuggestLocationsResult>()
+		{
+			public int weigh(final SuggestLocationsResult result)
+			{
+				return 256 + (result.status == SuggestLocationsResult.Status.OK ? result.getLocations().size() * LOCATION_WEIGHT : 0);
+			}
+		});
+		nearbyStationsCache = newCache(p.get(Operation.NEARBY_STATIONS), new LruCache.Weigher<NearbyStationsResult>()
+		{
+			public int weigh(final NearbyStationsResult result)
+			{
+				return 256 + (result.stations != null ? result.stations.size() * LOCATION_WEIGHT : 0);
+			}
+		});
+		departuresCache = newCache(p.get(Operation.DEPARTURES), new LruCache.Weigher<QueryDeparturesResult>()
+		{
+			public int weigh(final QueryDeparturesResult result)
+			{
+				int weight = 256;
+				for (final StationDepartures stationDepartures : result.stationDepartures)
+				{
+					weight += LOCATION_WEIGHT;
+					if (stationDepartures.departures != null)
+						weight += stationDepartures.departures.size() * 320;
+					if (stationDepartures.lines != null)
+						weight += stationDepartures.lines.size() * 128;
+				}
+				return weight;
+			}
+		});
+		departuresTimeBucketMs = p.get(Operation.DEPARTURES).ttlMs;
+	}
+
+	private static <V> LruCache<String, V> newCache(final Policy policy, final LruCache.Weigher<V> weigher)
+	{
+		return new LruCache<String, V>(policy.ttlMs, policy.maxWeight, weigher);
+	}
+
+	@Override
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		final String key = QueryKeys.nearbyStations(id(), location, maxDistance, maxStations);
+		final NearbyStationsResult cached = nearbyStationsCache.get(key);
+		if (cached != null)
+			return cached;
+
+		final NearbyStationsResult result = delegate.queryNearbyStations(location, maxDistance, maxStations);
+		if (result != null && result.status != NearbyStationsResult.Status.SERVICE_DOWN)
+			nearbyStationsCache.put(key, result);
+		return result;
+	}
+
+	@Override
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		final String key = QueryKeys.departures(id(), stationId, time, maxDepartures, equivs, departuresTimeBucketMs);
+		final QueryDeparturesResult cached = departuresCache.get(key);
+		if (cached != null)
+			return cached;
+
+		final QueryDeparturesResult result = delegate.queryDepartures(stationId, time, maxDepartures, equivs);
+		if (result != null && result.status != QueryDeparturesResult.Status.SERVICE_DOWN)
+			departuresCache.put(key, result);
+		return result;
+	}
+
+	@Override
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		final String key = QueryKeys.suggestLocations(id(), constraint);
+		final SuggestLocationsResult cached = suggestLocationsCache.get(key);
+		if (cached != null)
+			return cached;
+
+		final SuggestLocationsResult result = delegate.suggestLocations(constraint);
+		if (result != null && result.status != SuggestLocationsResult.Status.SERVICE_DOWN)
+			suggestLocationsCache.put(key, result);
+		return result;
+	}
+
+	@Override
+	public Point[] getArea() throws IOException
+	{
+		final String key = id().name();
+		final Point[] cached = areaCache.get(key);
+		if (cached != null)
+			return cached.clone();
+
+		final Point[] area = delegate.getArea();
+		if (area != null)
+			areaCache.put(key, area.clone());
+		return area;
+	}
+
+	public LruCache<String, ?> cache(final Operation operation)
+	{
+		switch (operation)
+		{
+			case AREA:
+				return areaCache;
+			case SUGGEST_LOCATIONS:
+				return suggestLocationsCache;
+			case NEARBY_STATIONS:
+				return nearbyStationsCache;
+			case DEPARTURES:
+				return departuresCache;
+			default:
+				throw new IllegalArgumentException(operation.name());
+		}
+	}
+
+	public void clear()
+	{
+		for (final Operation operation : Operation.values())
+			cache(operation).clear();
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Lets concurrent identical queries share a single upstream request. The first caller does the query on its own
+ * thread, and callers arriving while it is in flight wait for its result (or exception). Nothing is kept once the query
+ * has finished; see {@link CachingNetworkProvider} for that.
+ * 
+ * <p>
+ * Departures, location suggestions and nearby stations are coalesced. Departure times are rounded to a time bucket, so
+ * callers asking for nearly the same time also share a request.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class CoalescingNetworkProvider extends ForwardingNetworkProvider
+{
+	public static final long DEFAULT_TIME_BUCKET_MS = 60 * 1000;
+
+	private final long timeBucketMs;
+	private final ConcurrentMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<String, FutureTask<?>>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	public CoalescingNetworkProvider(final NetworkProvider delegate)
+	{
+		this(delegate, DEFAULT_TIME_BUCKET_MS);
+	}
+
+	public CoalescingNetworkProvider(final NetworkProvider delegate, final long timeBucketMs)
+	{
+		super(delegate);
+
+		this.timeBucketMs = timeBucketMs;
+	}
+
+	@Override
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		return coalesce(QueryKeys.nearbyStations(id(), location, maxDistance, maxStations), new Callable<NearbyStationsResult>()
+		{
+			public NearbyStationsResult call() throws IOException
+			{
+				return delegate.queryNearbyStations(location, maxDistance, maxStations);
+			}
+		});
+	}
+
+	@Override
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		return coalesce(QueryKeys.departures(id(), stationId, time, maxDepartures, equivs, timeBucketMs), new Callable<QueryDeparturesResult>()
+		{
+			public QueryDeparturesResult call() throws IOException
+			{
+				return delegate.queryDepartures(stationId, time, maxDepartures, equivs);
+			}
+		});
+	}
+
+	@Override
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		return coalesce(QueryKeys.suggestLocations(id(), constraint), new Callable<SuggestLocationsResult>()
+		{
+			public SuggestLocationsResult call() throws IOException
+			{
+				return delegate.suggestLocations(constraint);
+			}
+		});
+	}
+
+	/**
+	 * @return number of coalescable queries received
+	 */
+	public long requestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * @return number of queries that were answered by joining a request already in flight
+	 */
+	public long coalescedCount()
+	{
+		return coalescedCount.get();
+	}
+
+	/**
+	 * @return number of distinct requests currently in flight
+	 */
+	public int inFlightCount()
+	{
+		return inFlight.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T coalesce(final String key, final Callable<T> query) throws IOException
+	{
+		requestCount.incrementAndGet();
+
+		final FutureTask<T> task = new FutureTask<T>(query);
+		final FutureTask<T> existing = (FutureTask<T>) inFlight.putIfAbsent(key, task);
+
+		if (existing != null)
+		{
+			coalescedCount.incrementAndGet();
+			return await(existing);
+		}
+
+		try
+		{
+			task.run();
+		}
+		finally
+		{
+			inFlight.remove(key, task);
+		}
+
+		return await(task);
+	}
+
+	private static <T> T await(final FutureTask<T> task) throws IOException
+	{
+		try
+		{
+			return task.get();
+		}
+		catch (final InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			final InterruptedIOException iox = new InterruptedIOException("interrupted while waiting for coalesced query");
+			iox.initCause(x);
+			throw iox;
+		}
+		catch (final ExecutionException x)
+		{
+			final Throwable cause = x.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.Product;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsContext;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.Style;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Base class for decorators of a {@link NetworkProvider}. Every call is passed on to the wrapped provider unless
+ * overridden.
+ * 
+ * @author Andreas Schildbach
+ */
+public abstract class ForwardingNetworkProvider implements NetworkProvider
+{
+	protected final NetworkProvider delegate;
+
+	protected ForwardingNetworkProvider(final NetworkProvider delegate)
+	{
+		if (delegate == null)
+			throw new IllegalArgumentException("delegate must not be null");
+
+		this.delegate = delegate;
+	}
+
+	public NetworkProvider delegate()
+	{
+		return delegate;
+	}
+
+	public NetworkId id()
+	{
+		return delegate.id();
+	}
+
+	public boolean hasCapabilities(final Capability... capabilities)
+	{
+		return delegate.hasCapabilities(capabilities);
+	}
+
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		return delegate.queryNearbyStations(location, maxDistance, maxStations);
+	}
+
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		return delegate.queryDepartures(stationId, time, maxDepartures, equivs);
+	}
+
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		return delegate.suggestLocations(constraint);
+	}
+
+	public Collection<Product> defaultProducts()
+	{
+		return delegate.defaultProducts();
+	}
+
+	public QueryTripsResult queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
+			final Collection<Product> products, final WalkSpeed walkSpeed, final Accessibility accessibility, final Set<Option> options)
+			throws IOException
+	{
+		return delegate.queryTrips(from, via, to, date, dep, products, walkSpeed, accessibility, options);
+	}
+
+	public QueryTripsResult queryMoreTrips(final QueryTripsContext context, final boolean later) throws IOException
+	{
+		return delegate.queryMoreTrips(context, later);
+	}
+
+	public Style lineStyle(final String network, final String line)
+	{
+		return delegate.lineStyle(network, line);
+	}
+
+	public Point[] getArea() throws IOException
+	{
+		return delegate.getArea();
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + delegate + "]";
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Product;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsContext;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.StationDepartures;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.util.QueryProbe;
+
+/**
+ * Measures every query of a {@link NetworkProvider} and hands the measurements to a {@link Recorder}, per network and
+ * {@link Operation}. A {@link QueryProbe} is active while the query runs, so that the total time can be split into time
+ * spent fetching from upstream, time spent waiting in a wrapped {@link BulkheadNetworkProvider} and the remainder,
+ * which is mostly parsing.
+ * 
+ * <p>
+ * Wrap the provider itself rather than a {@link CachingNetworkProvider} or {@link CoalescingNetworkProvider}, unless
+ * the cache hits should be measured as well.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class MetricsNetworkProvider extends ForwardingNetworkProvider
+{
+	public enum Operation
+	{
+		QUERY_TRIPS, QUERY_MORE_TRIPS, QUERY_DEPARTURES, SUGGEST_LOCATIONS, QUERY_NEARBY_STATIONS
+	}
+
+	/**
+	 * Receives the measurements of all queries. Implementations need to be thread-safe and fast, as they are called on
+	 * the querying thread.
+	 */
+	public interface Recorder
+	{
+		/**
+		 * @param probe
+		 *            stopped probe of the query
+		 * @param cardinality
+		 *            number of trips, departures, locations or stations returned
+		 * @param outcome
+		 *            status of the result, or simple class name of the exception thrown
+		 */
+		void record(NetworkId network, Operation operation, QueryProbe probe, int cardinality, String outcome);
+	}
+
+	private final Recorder recorder;
+
+	public MetricsNetworkProvider(final NetworkProvider delegate, final Recorder recorder)
+	{
+		super(delegate);
+
+		if (recorder == null)
+			throw new IllegalArgumentException("recorder must not be null");
+
+		this.recorder = recorder;
+	}
+
+	@Override
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		return measure(Operation.QUERY_NEARBY_STATIONS, new Query<NearbyStationsResult>()
+		{
+			public NearbyStationsResult call() throws IOException
+			{
+				return delegate.queryNearbyStations(location, maxDistance, maxStations);
+			}
+		});
+	}
+
+	@Override
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		return measure(Operation.QUERY_DEPARTURES, new Query<QueryDeparturesResult>()
+		{
+			public QueryDeparturesResult call() throws IOException
+			{
+				return delegate.queryDepartures(stationId, time, maxDepartures, equivs);
+			}
+		});
+	}
+
+	@Override
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		return measure(Operation.SUGGEST_LOCATIONS, new Query<SuggestLocationsResult>()
+		{
+			public SuggestLocationsResult call() throws IOException
+			{
+				return delegate.suggestLocations(constraint);
+			}
+		});
+	}
+
+	@Override
+	public QueryTripsResult queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
+			final Collection<Product> products, final WalkSpeed walkSpeed, final Accessibility accessibility, final Set<Option> options)
+			throws IOException
+	{
+		return measure(Operation.QUERY_TRIPS, new Query<QueryTripsResult>()
+		{
+			public QueryTripsResult call() throws IOException
+			{
+				return delegate.queryTrips(from, via, to, date, dep, products, walkSpeed, accessibility, options);
+			}
+		});
+	}
+
+	@Override
+	public QueryTripsResult queryMoreTrips(final QueryTripsContext context, final boolean later) throws IOException
+	{
+		return measure(Operation.QUERY_MORE_TRIPS, new Query<QueryTripsResult>()
+		{
+			public QueryTripsResult call() throws IOException
+			{
+				return delegate.queryMoreTrips(context, later);
+			}
+		});
+	}
+
+	private interface Query<T>
+	{
+		T call() throws IOException;
+	}
+
+	private <T> T measure(final Operation operation, final Query<T> query) throws IOException
+	{
+		final QueryProbe probe = QueryProbe.start();
+		T result = null;
+		Exception failure = null;
+
+		try
+		{
+			result = query.call();
+		}
+		catch (final IOException x)
+		{
+			failure = x;
+		}
+		catch (final RuntimeException x)
+		{
+			failure = x;
+		}
+		finally
+		{
+			probe.stop();
+		}
+
+		if (failure != null)
+		{
+			recorder.record(id(), operation, probe, 0, failure.getClass().getSimpleName());
+			if (failure instanceof IOException)
+				throw (IOException) failure;
+			else
+				throw (RuntimeException) failure;
+		}
+
+		recorder.record(id(), operation, probe, cardinality(result), outcome(result));
+		return result;
+	}
+
+	static int cardinality(final Object result)
+	{
+		if (result instanceof QueryTripsResult)
+		{
+			final QueryTripsResult tripsResult = (QueryTripsResult) result;
+			return tripsResult.trips != null ? tripsResult.trips.size() : 0;
+		}
+		else if (result instanceof QueryDeparturesResult)
+		{
+			int count = 0;
+			for (final StationDepartures stationDepartures : ((QueryDeparturesResult) result).stationDepartures)
+				if (stationDepartures.departures != null)
+					count += stationDepartures.departures.size();
+			return count;
+		}
+		else if (result instanceof SuggestLocationsResult)
+		{
+			final SuggestLocationsResult suggestResult = (SuggestLocationsResult) result;
+			return suggestResult.status == SuggestLocationsResult.Status.OK ? suggestResult.getLocations().size() : 0;
+		}
+		else if (result instanceof NearbyStationsResult)
+		{
+			final NearbyStationsResult nearbyResult = (NearbyStationsResult) result;
+			return nearbyResult.stations != null ? nearbyResult.stations.size() : 0;
+		}
+		else
+		{
+			return 0;
+		}
+	}
+
+	private static String outcome(final Object result)
+	{
+		if (result instanceof QueryTripsResult)
+			return ((QueryTripsResult) result).status.name();
+		else if (result instanceof QueryDeparturesResult)
+			return ((QueryDeparturesResult) result).status.name();
+		else if (result instanceof SuggestLocationsResult)
+			return ((SuggestLocationsResult) result).status.name();
+		else if (result instanceof NearbyStationsResult)
+			return ((NearbyStationsResult) result).status.name();
+		else
+			return "NO_RESULT";
+	}
+}
@@ -24,7 +24,7 @@ import de.schildbach.pte.dto.Location;
 import de.schildbach.pte.dto.LocationType;
 import de.schildbach.pte.dto.NearbyStationsResult;
 import de.schildbach.pte.dto.Product;
-import de.schildbach.pte.util.StringReplaceReader;
+import de.schildbach.pte.util.MultiStringReplaceReader;
 
 /**
  * @author Andreas Schildbach
@@ -150,7 +150,7 @@ public class NasaProvider extends AbstractHafasProvider
 	}
 
 	@Override
-	protected void addCustomReplaces(final StringReplaceReader reader)
+	protected void addCustomReplaces(final MultiStringReplaceReader reader)
 	{
 		reader.replace("\"Florian Geyer\"", "Florian Geyer");
 	}
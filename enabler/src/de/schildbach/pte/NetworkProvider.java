@@ -35,6 +35,12 @@ import de.schildbach.pte.dto.SuggestLocationsResult;
 /**
  * Interface to be implemented by providers of transportation networks.
  * 
+ * <p>
+ * Implementations are thread-safe: a single instance can serve any number of concurrent queries. Their configuration
+ * is fixed once the first query has been made, so instances should be configured completely before they are shared,
+ * and shared via a final field or another safe publication.
+ * </p>
+ * 
  * @author Andreas Schildbach
  */
 public interface NetworkProvider
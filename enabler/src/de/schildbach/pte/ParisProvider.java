@@ -26,7 +26,7 @@ import de.schildbach.pte.dto.Style.Shape;
 public class ParisProvider extends AbstractNavitiaProvider
 {
 	public static final NetworkId NETWORK_ID = NetworkId.PARIS;
-	private static String API_REGION = "fr-idf";
+	private static final String API_REGION = "fr-idf";
 
 	public ParisProvider(final String authorization)
 	{
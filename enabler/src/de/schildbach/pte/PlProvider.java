@@ -20,7 +20,7 @@ package de.schildbach.pte;
 import java.util.Collection;
 
 import de.schildbach.pte.dto.Product;
-import de.schildbach.pte.util.StringReplaceReader;
+import de.schildbach.pte.util.MultiStringReplaceReader;
 
 /**
  * @author Andreas Schildbach
@@ -115,7 +115,7 @@ public class PlProvider extends AbstractHafasProvider
 	}
 
 	@Override
-	protected void addCustomReplaces(final StringReplaceReader reader)
+	protected void addCustomReplaces(final MultiStringReplaceReader reader)
 	{
 		reader.replace("dir=\"Sp ", " "); // Poland
 		reader.replace("dir=\"B ", " "); // Poland
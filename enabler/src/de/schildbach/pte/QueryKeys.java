@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.util.Date;
+
+import de.schildbach.pte.dto.Location;
+
+/**
+ * Normalized keys identifying provider queries, for deduplicating and caching them.
+ * 
+ * @author Andreas Schildbach
+ */
+final class QueryKeys
+{
+	private QueryKeys()
+	{
+	}
+
+	public static String nearbyStations(final NetworkId network, final Location location, final int maxDistance, final int maxStations)
+	{
+		final StringBuilder key = new StringBuilder(network.name()).append("|nearby|");
+		appendLocation(key, location);
+		key.append('|').append(maxDistance).append('|').append(maxStations);
+		return key.toString();
+	}
+
+	/**
+	 * Departure times are rounded down to the given bucket. Queries for the current time ({@code time == null}) are
+	 * bucketed by the wall clock, but are never mixed with queries for an explicit time.
+	 */
+	public static String departures(final NetworkId network, final String stationId, final Date time, final int maxDepartures,
+			final boolean equivs, final long timeBucketMs)
+	{
+		final StringBuilder key = new StringBuilder(network.name()).append("|departures|");
+		key.append(stationId).append('|');
+		if (time == null)
+			key.append("now@").append(bucket(System.currentTimeMillis(), timeBucketMs));
+		else
+			key.append(bucket(time.getTime(), timeBucketMs));
+		key.append('|').append(maxDepartures).append('|').append(equivs);
+		return key.toString();
+	}
+
+	public static String suggestLocations(final NetworkId network, final CharSequence constraint)
+	{
+		return network.name() + "|suggest|" + constraint.toString().trim();
+	}
+
+	private static long bucket(final long timeMs, final long timeBucketMs)
+	{
+		return timeBucketMs > 0 ? timeMs / timeBucketMs : timeMs;
+	}
+
+	private static void appendLocation(final StringBuilder key, final Location location)
+	{
+		key.append(location.type).append(':').append(location.id).append(':').append(location.lat).append(':').append(location.lon).append(':')
+				.append(location.place).append(':').append(location.name);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.schildbach.pte.MetricsNetworkProvider.Operation;
+import de.schildbach.pte.util.Histogram;
+import de.schildbach.pte.util.QueryProbe;
+
+/**
+ * Keeps histograms of the measurements of a {@link MetricsNetworkProvider}, per network and operation. Times are
+ * recorded in microseconds. Connection timings and transferred bytes are only recorded for queries that made at least
+ * one request, so that cache hits within a provider don't drag them down.
+ * 
+ * @author Andreas Schildbach
+ */
+public class QueryMetrics implements MetricsNetworkProvider.Recorder
+{
+	public static final class Stats
+	{
+		public final Histogram totalMicros = new Histogram();
+		public final Histogram fetchMicros = new Histogram();
+		public final Histogram waitMicros = new Histogram();
+		public final Histogram parseMicros = new Histogram();
+		public final Histogram connectMicros = new Histogram();
+		public final Histogram firstByteMicros = new Histogram();
+		public final Histogram compressedBytes = new Histogram();
+		public final Histogram uncompressedBytes = new Histogram();
+		public final Histogram cardinality = new Histogram();
+		private final ConcurrentMap<String, AtomicLong> outcomes = new ConcurrentHashMap<String, AtomicLong>();
+
+		private void count(final String outcome)
+		{
+			AtomicLong count = outcomes.get(outcome);
+			if (count == null)
+			{
+				final AtomicLong newCount = new AtomicLong();
+				count = outcomes.putIfAbsent(outcome, newCount);
+				if (count == null)
+					count = newCount;
+			}
+			count.incrementAndGet();
+		}
+
+		public Map<String, Long> outcomes()
+		{
+			final Map<String, Long> outcomes = new TreeMap<String, Long>();
+			for (final Map.Entry<String, AtomicLong> entry : this.outcomes.entrySet())
+				outcomes.put(entry.getKey(), entry.getValue().get());
+			return outcomes;
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder builder = new StringBuilder();
+			builder.append("  outcomes: ").append(outcomes()).append('\n');
+			builder.append("  total us: ").append(totalMicros).append('\n');
+			builder.append("  fetch us: ").append(fetchMicros).append('\n');
+			builder.append("  wait us: ").append(waitMicros).append('\n');
+			builder.append("  parse us: ").append(parseMicros).append('\n');
+			builder.append("  connect us: ").append(connectMicros).append('\n');
+			builder.append("  first byte us: ").append(firstByteMicros).append('\n');
+			builder.append("  compressed bytes: ").append(compressedBytes).append('\n');
+			builder.append("  uncompressed bytes: ").append(uncompressedBytes).append('\n');
+			builder.append("  cardinality: ").append(cardinality).append('\n');
+			return builder.toString();
+		}
+	}
+
+	private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+	public void record(final NetworkId network, final Operation operation, final QueryProbe probe, final int cardinality, final String outcome)
+	{
+		final String key = key(network, operation);
+		Stats stats = this.stats.get(key);
+		if (stats == null)
+		{
+			final Stats newStats = new Stats();
+			stats = this.stats.putIfAbsent(key, newStats);
+			if (stats == null)
+				stats = newStats;
+		}
+
+		stats.count(outcome);
+		stats.totalMicros.record(probe.elapsedNanos() / 1000);
+		stats.fetchMicros.record(probe.fetchNanos() / 1000);
+		stats.waitMicros.record(probe.waitNanos() / 1000);
+		stats.parseMicros.record(probe.parseNanos() / 1000);
+		stats.cardinality.record(cardinality);
+
+		if (probe.requests() > 0)
+		{
+			stats.connectMicros.record(probe.connectNanos() / 1000);
+			stats.firstByteMicros.record(probe.firstByteNanos() / 1000);
+			stats.compressedBytes.record(probe.compressedBytes());
+			stats.uncompressedBytes.record(probe.uncompressedBytes());
+		}
+	}
+
+	/**
+	 * @return statistics of the given network and operation, or {@code null} if nothing has been recorded yet
+	 */
+	public Stats stats(final NetworkId network, final Operation operation)
+	{
+		return stats.get(key(network, operation));
+	}
+
+	private static String key(final NetworkId network, final Operation operation)
+	{
+		return network.name() + ' ' + operation.name();
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		for (final Map.Entry<String, Stats> entry : new TreeMap<String, Stats>(stats).entrySet())
+			builder.append(entry.getKey()).append('\n').append(entry.getValue());
+		return builder.toString();
+	}
+}
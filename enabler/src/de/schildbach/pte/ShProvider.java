@@ -208,7 +208,7 @@ public class ShProvider extends AbstractHafasProvider
 		// scrape page
 		final StringBuilder uri = new StringBuilder(stationBoardEndpoint);
 		appendXmlStationBoardParameters(uri, time, stationId, maxDepartures, false, null);
-		final CharSequence page = ParserUtils.scrape(uri.toString());
+		final CharSequence page = ParserUtils.scrape(httpTransport(), uri.toString());
 
 		// System.out.println(uri);
 		// System.out.println(page);
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.exception;
+
+import java.io.IOException;
+
+import de.schildbach.pte.NetworkId;
+
+/**
+ * Thrown instead of running a query while too many queries of its network are already running or waiting.
+ * 
+ * @author Andreas Schildbach
+ */
+public class BulkheadFullException extends IOException
+{
+	private final NetworkId network;
+
+	public BulkheadFullException(final NetworkId network, final String reason)
+	{
+		super(network + ": " + reason);
+		this.network = network;
+	}
+
+	public NetworkId getNetwork()
+	{
+		return network;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.exception;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown instead of making a request while the circuit breaker of its endpoint is open.
+ * 
+ * @author Andreas Schildbach
+ */
+public class CircuitOpenException extends IOException
+{
+	private final URL url;
+	private final long retryAfterMs;
+
+	public CircuitOpenException(final URL url, final long retryAfterMs)
+	{
+		super("circuit open for " + url.getProtocol() + "://" + url.getAuthority() + ", retry after " + retryAfterMs + " ms");
+		this.url = url;
+		this.retryAfterMs = retryAfterMs;
+	}
+
+	public URL getUrl()
+	{
+		return url;
+	}
+
+	public long getRetryAfterMs()
+	{
+		return retryAfterMs;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.exception;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Thrown instead of making a request if no request to its endpoint finished in time to make room under the endpoint's
+ * concurrency limit.
+ * 
+ * @author Andreas Schildbach
+ */
+public class LimitExceededException extends IOException
+{
+	private final URL url;
+	private final int limit;
+
+	public LimitExceededException(final URL url, final int limit)
+	{
+		super("concurrency limit of " + limit + " exceeded for " + url.getProtocol() + "://" + url.getAuthority());
+		this.url = url;
+		this.limit = limit;
+	}
+
+	public URL getUrl()
+	{
+		return url;
+	}
+
+	public int getLimit()
+	{
+		return limit;
+	}
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.schildbach.pte.exception.LimitExceededException;
+
+/**
+ * Decorates an {@link HttpTransport} with a concurrency limit per endpoint (protocol, host and port) that adapts to the
+ * latency of the endpoint, instead of a fixed number of connections that would have to be tuned for each backend.
+ * 
+ * <p>
+ * For every request, the time from handing it to the transport until the response headers have been received is
+ * measured, the same span {@link QueryProbe#requested(long)} records. A short-term average of these round trip times
+ * is compared with a long-term average. As long as the short-term average stays within {@link Policy#tolerance} times
+ * the long-term one, the limit grows gradually in steps of a fraction of its square root, but only while at least half
+ * of it is used. Beyond that, the limit shrinks in proportion, so that queueing moves from the backend to this side.
+ * Responses that indicate rate limiting or overload ({@code 403}, {@code 429}, {@code 503}) as well as timeouts and
+ * failed connects cut the limit by {@link Policy#backoffRatio} right away.
+ * </p>
+ * 
+ * <p>
+ * Requests beyond the limit wait for a running request to finish, up to {@link Policy#maxWaitMs}, and fail with a
+ * {@link LimitExceededException} after that. A request counts as running until its response body has been closed.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class AdaptiveLimitHttpTransport implements HttpTransport
+{
+	public static final class Policy
+	{
+		public final int initialLimit;
+		public final int minLimit;
+		public final int maxLimit;
+		public final long maxWaitMs;
+		public final double tolerance;
+		public final double backoffRatio;
+
+		/**
+		 * @param initialLimit
+		 *            limit of an endpoint that has not been measured yet
+		 * @param minLimit
+		 *            lower bound of the limit
+		 * @param maxLimit
+		 *            upper bound of the limit
+		 * @param maxWaitMs
+		 *            maximum time a request waits for the limit
+		 * @param tolerance
+		 *            factor by which recent round trip times may exceed the long-term average before the limit shrinks
+		 * @param backoffRatio
+		 *            factor the limit is multiplied with on rate limiting, overload or timeouts
+		 */
+		public Policy(final int initialLimit, final int minLimit, final int maxLimit, final long maxWaitMs, final double tolerance,
+				final double backoffRatio)
+		{
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			this.maxWaitMs = maxWaitMs;
+			this.tolerance = tolerance;
+			this.backoffRatio = backoffRatio;
+		}
+	}
+
+	public static final Policy DEFAULT_POLICY = new Policy(UrlConnectionTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST, 1, 64, 10000, 2, 0.75);
+
+	/** shared instance, so that all providers talking to the same host share its limit */
+	public static final AdaptiveLimitHttpTransport DEFAULT = new AdaptiveLimitHttpTransport(new UrlConnectionTransport(
+			UrlConnectionTransport.DEFAULT_CONNECT_TIMEOUT, UrlConnectionTransport.DEFAULT_READ_TIMEOUT, 0), DEFAULT_POLICY);
+
+	private static final double SHORT_SMOOTHING = 0.1;
+	private static final double LONG_SMOOTHING = 0.01;
+	private static final double LIMIT_SMOOTHING = 0.2;
+
+	private final HttpTransport delegate;
+	private final Policy policy;
+	private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+
+	public AdaptiveLimitHttpTransport(final HttpTransport delegate, final Policy policy)
+	{
+		if (delegate == null)
+			throw new IllegalArgumentException("delegate must not be null");
+		if (policy == null)
+			throw new IllegalArgumentException("policy must not be null");
+		if (policy.minLimit <= 0 || policy.minLimit > policy.initialLimit || policy.initialLimit > policy.maxLimit)
+			throw new IllegalArgumentException("limits must satisfy 0 < min <= initial <= max");
+
+		this.delegate = delegate;
+		this.policy = policy;
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final Limit limit = endpoint(request.url);
+		final int inFlight = limit.acquire(request.url);
+		boolean success = false;
+
+		try
+		{
+			final long start = System.nanoTime();
+			final Response response;
+
+			try
+			{
+				response = delegate.execute(request);
+			}
+			catch (final SocketTimeoutException x)
+			{
+				limit.drop();
+				throw x;
+			}
+			catch (final ConnectException x)
+			{
+				limit.drop();
+				throw x;
+			}
+
+			if (isOverload(response.code))
+				limit.drop();
+			else
+				limit.sample(System.nanoTime() - start, inFlight);
+
+			if (response.body == null)
+				return response;
+
+			final Response releasingResponse = new Response(response.url, response.code, response.message, response.headers,
+					new ReleasingInputStream(response.body, limit));
+			success = true;
+			return releasingResponse;
+		}
+		finally
+		{
+			if (!success)
+				limit.release();
+		}
+	}
+
+	/**
+	 * Current limit of the endpoint of the given URL.
+	 */
+	public int limit(final URL url)
+	{
+		return endpoint(url).limit();
+	}
+
+	private static boolean isOverload(final int code)
+	{
+		return code == 403 || code == 429 || code == 503;
+	}
+
+	private Limit endpoint(final URL url)
+	{
+		final String key = url.getProtocol() + "://" + url.getAuthority();
+
+		final Limit limit = limits.get(key);
+		if (limit != null)
+			return limit;
+
+		final Limit newLimit = new Limit(policy);
+		final Limit existingLimit = limits.putIfAbsent(key, newLimit);
+		return existingLimit != null ? existingLimit : newLimit;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder builder = new StringBuilder();
+		for (final Map.Entry<String, Limit> entry : limits.entrySet())
+			builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		return builder.toString();
+	}
+
+	private static final class Limit
+	{
+		private final Policy policy;
+		private double limit;
+		private int inFlight = 0;
+		private double shortRttNanos = 0;
+		private double longRttNanos = 0;
+
+		public Limit(final Policy policy)
+		{
+			this.policy = policy;
+			this.limit = policy.initialLimit;
+		}
+
+		public synchronized int limit()
+		{
+			return (int) limit;
+		}
+
+		/**
+		 * @return number of requests in flight, including this one
+		 */
+		public synchronized int acquire(final URL url) throws IOException
+		{
+			final long deadline = System.currentTimeMillis() + policy.maxWaitMs;
+
+			while (inFlight >= (int) limit)
+			{
+				final long remainingMs = deadline - System.currentTimeMillis();
+				if (remainingMs <= 0)
+					throw new LimitExceededException(url, (int) limit);
+
+				try
+				{
+					wait(remainingMs);
+				}
+				catch (final InterruptedException x)
+				{
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while waiting for " + url.getHost());
+				}
+			}
+
+			return ++inFlight;
+		}
+
+		public synchronized void release()
+		{
+			inFlight--;
+			notifyAll();
+		}
+
+		public synchronized void sample(final long rttNanos, final int inFlight)
+		{
+			if (shortRttNanos == 0)
+			{
+				shortRttNanos = rttNanos;
+				longRttNanos = rttNanos;
+			}
+			else
+			{
+				shortRttNanos += (rttNanos - shortRttNanos) * SHORT_SMOOTHING;
+				longRttNanos += (rttNanos - longRttNanos) * LONG_SMOOTHING;
+			}
+
+			// once the backend has recovered, let the long-term average follow quickly rather than over hundreds of
+			// requests
+			if (longRttNanos > shortRttNanos * 2)
+				longRttNanos *= 0.95;
+
+			final double gradient = Math.max(0.5, Math.min(1, policy.tolerance * longRttNanos / shortRttNanos));
+			if (gradient == 1 && inFlight < limit / 2)
+				return; // don't grow a limit that is not being used, it would say nothing about the backend
+			final double newLimit = gradient == 1 ? limit + Math.sqrt(limit) : limit * gradient;
+
+			final int oldLimit = (int) limit;
+			limit = Math.max(policy.minLimit, Math.min(policy.maxLimit, limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING));
+
+			if ((int) limit > oldLimit)
+				notifyAll();
+		}
+
+		public synchronized void drop()
+		{
+			limit = Math.max(policy.minLimit, limit * policy.backoffRatio);
+		}
+
+		@Override
+		public synchronized String toString()
+		{
+			return "limit=" + (int) limit + " inFlight=" + inFlight + " rtt short=" + (long) (shortRttNanos / 1000000) + "ms long="
+					+ (long) (longRttNanos / 1000000) + "ms";
+		}
+	}
+
+	private static final class ReleasingInputStream extends FilterInputStream
+	{
+		private final Limit limit;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		public ReleasingInputStream(final InputStream in, final Limit limit)
+		{
+			super(in);
+			this.limit = limit;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				super.close();
+			}
+			finally
+			{
+				if (released.compareAndSet(false, true))
+					limit.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with a fixed relative precision, in the style of HdrHistogram. Each power of two is
+ * split into {@value #SUB_BUCKETS} linear buckets, so a reported percentile is never off by more than about 3%, while
+ * the whole range up to {@link #MAX_VALUE} fits into about a thousand counters. Larger values are counted as
+ * {@link #MAX_VALUE}.
+ * 
+ * <p>
+ * Recording is lock-free and can be done from any number of threads.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class Histogram
+{
+	public static final long MAX_VALUE = (1L << 40) - 1;
+	public static final int SUB_BUCKETS = 32;
+
+	private static final int SUB_BUCKET_BITS = 6;
+	private static final int SUB_BUCKET_COUNT = SUB_BUCKETS * 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value)
+	{
+		if (value < 0)
+			value = 0;
+		else if (value > MAX_VALUE)
+			value = MAX_VALUE;
+
+		counts.incrementAndGet(bucketIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+
+		while (true)
+		{
+			final long currentMax = max.get();
+			if (value <= currentMax || max.compareAndSet(currentMax, value))
+				break;
+		}
+	}
+
+	public long count()
+	{
+		return count.get();
+	}
+
+	public long sum()
+	{
+		return sum.get();
+	}
+
+	public long max()
+	{
+		return max.get();
+	}
+
+	public long mean()
+	{
+		final long count = count();
+		return count > 0 ? sum() / count : 0;
+	}
+
+	/**
+	 * @param percentile
+	 *            percentile between {@code 0} and {@code 100}
+	 * @return highest value that is equivalent to the value at the given percentile, or {@code 0} if nothing was
+	 *         recorded
+	 */
+	public long valueAtPercentile(final double percentile)
+	{
+		final long count = count();
+		if (count == 0)
+			return 0;
+
+		final long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+		long seen = 0;
+
+		for (int i = 0; i < counts.length(); i++)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(highestEquivalentValue(i), max());
+		}
+
+		return max();
+	}
+
+	private static int bucketIndex(final long value)
+	{
+		if (value < SUB_BUCKET_COUNT)
+			return (int) value;
+
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	private static long highestEquivalentValue(final int index)
+	{
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+
+		final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKETS + 1;
+		final long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "count=" + count() + " mean=" + mean() + " p50=" + valueAtPercentile(50) + " p90=" + valueAtPercentile(90) + " p99="
+				+ valueAtPercentile(99) + " max=" + max();
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk archive of HTTP request/response pairs, as written by {@link RecordingTransport} and served by
+ * {@link ReplayTransport}.
+ * 
+ * <p>
+ * Each exchange is appended as a gzip member of its own, so an archive can be extended across runs and a truncated
+ * last entry does not spoil the ones before it. Response bodies are stored exactly as received, i.e. still in their
+ * content encoding.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+final class HttpArchive
+{
+	private static final int VERSION = 1;
+
+	static final class Exchange
+	{
+		public final HttpTransport.Request request;
+		public final URL responseUrl;
+		public final int code;
+		public final String message;
+		public final Map<String, List<String>> responseHeaders;
+		public final byte[] responseBody;
+
+		public Exchange(final HttpTransport.Request request, final URL responseUrl, final int code, final String message,
+				final Map<String, List<String>> responseHeaders, final byte[] responseBody)
+		{
+			this.request = request;
+			this.responseUrl = responseUrl;
+			this.code = code;
+			this.message = message;
+			this.responseHeaders = responseHeaders;
+			this.responseBody = responseBody;
+		}
+
+		public HttpTransport.Response response()
+		{
+			return new HttpTransport.Response(responseUrl, code, message, responseHeaders, responseBody != null ? new ByteArrayInputStream(
+					responseBody) : null);
+		}
+	}
+
+	private HttpArchive()
+	{
+	}
+
+	/** Synchronized, so that several transports can record into the same archive. */
+	public static synchronized void append(final File archive, final Exchange exchange) throws IOException
+	{
+		final OutputStream os = new FileOutputStream(archive, true);
+
+		try
+		{
+			final GZIPOutputStream gzip = new GZIPOutputStream(os);
+			final DataOutputStream out = new DataOutputStream(gzip);
+
+			out.writeByte(VERSION);
+
+			final HttpTransport.Request request = exchange.request;
+			out.writeUTF(request.url.toString());
+			out.writeInt(request.headers.size());
+			for (final Map.Entry<String, String> header : request.headers.entrySet())
+			{
+				out.writeUTF(header.getKey());
+				writeString(out, header.getValue());
+			}
+			writeBytes(out, request.postBody);
+
+			out.writeUTF(exchange.responseUrl.toString());
+			out.writeShort(exchange.code);
+			writeString(out, exchange.message);
+			out.writeInt(exchange.responseHeaders.size());
+			for (final Map.Entry<String, List<String>> header : exchange.responseHeaders.entrySet())
+			{
+				// the status line is reported under the null key
+				writeString(out, header.getKey());
+				final List<String> values = header.getValue();
+				out.writeInt(values.size());
+				for (final String value : values)
+					writeString(out, value);
+			}
+			writeBytes(out, exchange.responseBody);
+
+			out.flush();
+			gzip.finish();
+		}
+		finally
+		{
+			os.close();
+		}
+	}
+
+	public static List<Exchange> read(final File archive) throws IOException
+	{
+		final List<Exchange> exchanges = new ArrayList<Exchange>();
+
+		if (archive.length() == 0)
+			return exchanges;
+
+		final InputStream is = new FileInputStream(archive);
+
+		try
+		{
+			// reads across gzip member boundaries
+			final DataInputStream in = new DataInputStream(new GZIPInputStream(is, 8192));
+
+			while (true)
+			{
+				final int version = in.read();
+				if (version == -1)
+					break;
+				if (version != VERSION)
+					throw new IOException("unsupported archive version " + version + ": " + archive);
+
+				try
+				{
+					exchanges.add(readExchange(in));
+				}
+				catch (final EOFException x)
+				{
+					// truncated last entry, e.g. by killing the recording process
+					break;
+				}
+			}
+		}
+		finally
+		{
+			is.close();
+		}
+
+		return exchanges;
+	}
+
+	private static Exchange readExchange(final DataInputStream in) throws IOException
+	{
+		final URL url = new URL(in.readUTF());
+		final int numRequestHeaders = in.readInt();
+		final Map<String, String> requestHeaders = new LinkedHashMap<String, String>(numRequestHeaders);
+		for (int i = 0; i < numRequestHeaders; i++)
+			requestHeaders.put(in.readUTF(), readString(in));
+		final byte[] postBody = readBytes(in);
+
+		final URL responseUrl = new URL(in.readUTF());
+		final int code = in.readUnsignedShort();
+		final String message = readString(in);
+		final int numResponseHeaders = in.readInt();
+		final Map<String, List<String>> responseHeaders = new LinkedHashMap<String, List<String>>(numResponseHeaders);
+		for (int i = 0; i < numResponseHeaders; i++)
+		{
+			final String name = readString(in);
+			final int numValues = in.readInt();
+			final List<String> values = new ArrayList<String>(numValues);
+			for (int j = 0; j < numValues; j++)
+				values.add(readString(in));
+			responseHeaders.put(name, Collections.unmodifiableList(values));
+		}
+		final byte[] responseBody = readBytes(in);
+
+		return new Exchange(new HttpTransport.Request(url, Collections.unmodifiableMap(requestHeaders), postBody), responseUrl, code, message,
+				Collections.unmodifiableMap(responseHeaders), responseBody);
+	}
+
+	private static void writeString(final DataOutputStream out, final String str) throws IOException
+	{
+		out.writeBoolean(str != null);
+		if (str != null)
+			out.writeUTF(str);
+	}
+
+	private static String readString(final DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException
+	{
+		out.writeInt(bytes != null ? bytes.length : -1);
+		if (bytes != null)
+			out.write(bytes);
+	}
+
+	private static byte[] readBytes(final DataInputStream in) throws IOException
+	{
+		final int length = in.readInt();
+		if (length == -1)
+			return null;
+
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
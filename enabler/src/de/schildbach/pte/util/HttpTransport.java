@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends HTTP requests on behalf of {@link ParserUtils}. All interpretation of the response (status codes, compression,
+ * redirects, session cookies) stays in {@link ParserUtils}, so implementations are free to pool connections, limit
+ * concurrency or swap the HTTP stack altogether.
+ * 
+ * @author Andreas Schildbach
+ */
+public interface HttpTransport
+{
+	/**
+	 * Execute a request. The caller is responsible for closing the body of the returned response, even if it is not
+	 * interested in its content.
+	 */
+	Response execute(Request request) throws IOException;
+
+	public static final class Request
+	{
+		public final URL url;
+		public final Map<String, String> headers;
+		public final byte[] postBody;
+
+		public Request(final URL url, final Map<String, String> headers, final byte[] postBody)
+		{
+			this.url = url;
+			this.headers = headers;
+			this.postBody = postBody;
+		}
+
+		public boolean isPost()
+		{
+			return postBody != null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return (isPost() ? "POST " : "GET ") + url;
+		}
+	}
+
+	public static final class Response
+	{
+		public final URL url;
+		public final int code;
+		public final String message;
+		public final Map<String, List<String>> headers;
+		public final InputStream body;
+
+		/**
+		 * @param url
+		 *            URL the response was finally served from, after following redirects
+		 * @param body
+		 *            response body, or error body for unsuccessful responses; may be {@code null}
+		 */
+		public Response(final URL url, final int code, final String message, final Map<String, List<String>> headers, final InputStream body)
+		{
+			this.url = url;
+			this.code = code;
+			this.message = message;
+			this.headers = headers;
+			this.body = body;
+		}
+
+		public String header(final String name)
+		{
+			for (final Map.Entry<String, List<String>> entry : headers.entrySet())
+			{
+				if (name.equalsIgnoreCase(entry.getKey()))
+				{
+					final List<String> values = entry.getValue();
+					return values != null && !values.isEmpty() ? values.get(values.size() - 1) : null;
+				}
+			}
+
+			return null;
+		}
+
+		public String contentType()
+		{
+			return header("Content-Type");
+		}
+
+		public String contentEncoding()
+		{
+			return header("Content-Encoding");
+		}
+
+		public void close() throws IOException
+		{
+			if (body != null)
+				body.close();
+		}
+
+		@Override
+		public String toString()
+		{
+			return code + " " + message + " " + url;
+		}
+	}
+}
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Pull parser for JSON, reading tokens directly from a {@link Reader}.
+ * 
+ * <p>
+ * Parts of a document can be materialized as {@link JSONObject} or {@link JSONArray} with {@link #nextObject()} and
+ * {@link #nextArray()}, so that parsers working on org.json trees can be fed one list element at a time instead of the
+ * whole document. Values that are not needed are skipped with {@link #skipValue()} without being allocated.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class JsonPullReader implements Closeable
+{
+	public enum Token
+	{
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_ARRAY = 2;
+	private static final int NONEMPTY_ARRAY = 3;
+	private static final int EMPTY_OBJECT = 4;
+	private static final int DANGLING_NAME = 5;
+	private static final int NONEMPTY_OBJECT = 6;
+
+	private final Reader in;
+	private final char[] buf = new char[2048];
+	private int pos = 0;
+	private int limit = 0;
+	private long consumed = 0;
+
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+	private Token peeked = null;
+
+	private final StringBuilder builder = new StringBuilder();
+
+	public JsonPullReader(final Reader in)
+	{
+		this.in = in;
+		push(EMPTY_DOCUMENT);
+	}
+
+	public Token peek() throws IOException, JSONException
+	{
+		if (peeked != null)
+			return peeked;
+
+		final int scope = stack[stackSize - 1];
+
+		if (scope == EMPTY_ARRAY || scope == NONEMPTY_ARRAY)
+		{
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+			final int c = nextNonWhitespace();
+			if (c == ']')
+				return peeked = Token.END_ARRAY;
+			if (scope == NONEMPTY_ARRAY)
+			{
+				if (c != ',')
+					throw syntaxError("expected ',' or ']'");
+			}
+			else
+			{
+				pos--;
+			}
+		}
+		else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT)
+		{
+			stack[stackSize - 1] = DANGLING_NAME;
+			int c = nextNonWhitespace();
+			if (c == '}')
+				return peeked = Token.END_OBJECT;
+			if (scope == NONEMPTY_OBJECT)
+			{
+				if (c != ',')
+					throw syntaxError("expected ',' or '}'");
+				c = nextNonWhitespace();
+			}
+			if (c != '"')
+				throw syntaxError("expected name");
+			return peeked = Token.NAME;
+		}
+		else if (scope == DANGLING_NAME)
+		{
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+			if (nextNonWhitespace() != ':')
+				throw syntaxError("expected ':'");
+		}
+		else if (scope == EMPTY_DOCUMENT)
+		{
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+		}
+		else if (scope == NONEMPTY_DOCUMENT)
+		{
+			while (pos < limit || fillTo(1))
+			{
+				final char c = buf[pos];
+				if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+					throw syntaxError("expected end of document");
+				pos++;
+			}
+			return peeked = Token.END_DOCUMENT;
+		}
+
+		final int c = nextNonWhitespace();
+		switch (c)
+		{
+			case '{':
+				return peeked = Token.BEGIN_OBJECT;
+			case '[':
+				return peeked = Token.BEGIN_ARRAY;
+			case '"':
+				return peeked = Token.STRING;
+			case 't':
+			case 'f':
+				pos--;
+				return peeked = Token.BOOLEAN;
+			case 'n':
+				pos--;
+				return peeked = Token.NULL;
+			default:
+				if (c != '-' && (c < '0' || c > '9'))
+					throw syntaxError("unexpected character '" + (char) c + "'");
+				pos--;
+				return peeked = Token.NUMBER;
+		}
+	}
+
+	public boolean hasNext() throws IOException, JSONException
+	{
+		final Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException, JSONException
+	{
+		expect(Token.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException, JSONException
+	{
+		expect(Token.END_OBJECT);
+		stackSize--;
+	}
+
+	public void beginArray() throws IOException, JSONException
+	{
+		expect(Token.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException, JSONException
+	{
+		expect(Token.END_ARRAY);
+		stackSize--;
+	}
+
+	public String nextName() throws IOException, JSONException
+	{
+		expect(Token.NAME);
+		return readString();
+	}
+
+	/**
+	 * Consumes a string, or the literal of a number.
+	 */
+	public String nextString() throws IOException, JSONException
+	{
+		final Token token = peek();
+		if (token == Token.STRING)
+		{
+			peeked = null;
+			return readString();
+		}
+		else if (token == Token.NUMBER)
+		{
+			peeked = null;
+			return readLiteral();
+		}
+		else
+		{
+			throw syntaxError("expected string but was " + token);
+		}
+	}
+
+	public boolean nextBoolean() throws IOException, JSONException
+	{
+		expect(Token.BOOLEAN);
+		final String literal = readLiteral();
+		if ("true".equals(literal))
+			return true;
+		else if ("false".equals(literal))
+			return false;
+		else
+			throw syntaxError("expected boolean but was " + literal);
+	}
+
+	public void nextNull() throws IOException, JSONException
+	{
+		expect(Token.NULL);
+		final String literal = readLiteral();
+		if (!"null".equals(literal))
+			throw syntaxError("expected null but was " + literal);
+	}
+
+	public int nextInt() throws IOException, JSONException
+	{
+		final String str = nextString();
+		try
+		{
+			return Integer.parseInt(str);
+		}
+		catch (final NumberFormatException x)
+		{
+			throw syntaxError("expected int but was " + str);
+		}
+	}
+
+	/**
+	 * Skips the next value, including all of its children, without allocating it.
+	 */
+	public void skipValue() throws IOException, JSONException
+	{
+		int depth = 0;
+		do
+		{
+			final Token token = peek();
+			switch (token)
+			{
+				case BEGIN_OBJECT:
+					beginObject();
+					depth++;
+					break;
+				case BEGIN_ARRAY:
+					beginArray();
+					depth++;
+					break;
+				case END_OBJECT:
+					endObject();
+					depth--;
+					break;
+				case END_ARRAY:
+					endArray();
+					depth--;
+					break;
+				case NAME:
+				case STRING:
+					peeked = null;
+					skipString();
+					break;
+				case NUMBER:
+				case BOOLEAN:
+				case NULL:
+					peeked = null;
+					skipLiteral();
+					break;
+				case END_DOCUMENT:
+					throw syntaxError("unexpected end of document");
+			}
+		}
+		while (depth > 0);
+	}
+
+	public JSONObject nextObject() throws IOException, JSONException
+	{
+		return nextObject(Collections.<String> emptySet());
+	}
+
+	/**
+	 * Materializes the next object. Members having one of the given names are skipped, at any depth.
+	 */
+	public JSONObject nextObject(final Set<String> skippedNames) throws IOException, JSONException
+	{
+		final JSONObject object = new JSONObject();
+		beginObject();
+		while (hasNext())
+		{
+			final String name = nextName();
+			if (skippedNames.contains(name))
+				skipValue();
+			else
+				object.put(name, nextValue(skippedNames));
+		}
+		endObject();
+		return object;
+	}
+
+	public JSONArray nextArray() throws IOException, JSONException
+	{
+		return nextArray(Collections.<String> emptySet());
+	}
+
+	public JSONArray nextArray(final Set<String> skippedNames) throws IOException, JSONException
+	{
+		final JSONArray array = new JSONArray();
+		beginArray();
+		while (hasNext())
+			array.put(nextValue(skippedNames));
+		endArray();
+		return array;
+	}
+
+	private Object nextValue(final Set<String> skippedNames) throws IOException, JSONException
+	{
+		final Token token = peek();
+		switch (token)
+		{
+			case BEGIN_OBJECT:
+				return nextObject(skippedNames);
+			case BEGIN_ARRAY:
+				return nextArray(skippedNames);
+			case STRING:
+				return nextString();
+			case NUMBER:
+				return parseNumber(nextString());
+			case BOOLEAN:
+				return nextBoolean();
+			case NULL:
+				nextNull();
+				return JSONObject.NULL;
+			default:
+				throw syntaxError("expected value but was " + token);
+		}
+	}
+
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	private Object parseNumber(final String literal) throws JSONException
+	{
+		try
+		{
+			if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1 && literal.indexOf('E') == -1)
+			{
+				final long l = Long.parseLong(literal);
+				if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE)
+					return (int) l;
+				else
+					return l;
+			}
+
+			return Double.valueOf(literal);
+		}
+		catch (final NumberFormatException x)
+		{
+			throw syntaxError("malformed number " + literal);
+		}
+	}
+
+	private void expect(final Token expected) throws IOException, JSONException
+	{
+		final Token token = peek();
+		if (token != expected)
+			throw syntaxError("expected " + expected + " but was " + token);
+		peeked = null;
+	}
+
+	private void push(final int scope)
+	{
+		if (stackSize == stack.length)
+		{
+			final int[] newStack = new int[stackSize * 2];
+			System.arraycopy(stack, 0, newStack, 0, stackSize);
+			stack = newStack;
+		}
+		stack[stackSize++] = scope;
+	}
+
+	private int nextNonWhitespace() throws IOException, JSONException
+	{
+		while (pos < limit || fillTo(1))
+		{
+			final char c = buf[pos++];
+			if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+				return c;
+		}
+
+		throw syntaxError("unexpected end of input");
+	}
+
+	private String readString() throws IOException, JSONException
+	{
+		final StringBuilder builder = this.builder;
+		builder.setLength(0);
+
+		while (true)
+		{
+			int start = pos;
+			while (pos < limit)
+			{
+				final char c = buf[pos++];
+				if (c == '"')
+				{
+					builder.append(buf, start, pos - 1 - start);
+					return builder.toString();
+				}
+				else if (c == '\\')
+				{
+					builder.append(buf, start, pos - 1 - start);
+					builder.append(readEscape());
+					start = pos;
+				}
+			}
+			builder.append(buf, start, pos - start);
+
+			if (!fillTo(1))
+				throw syntaxError("unterminated string");
+		}
+	}
+
+	private void skipString() throws IOException, JSONException
+	{
+		while (pos < limit || fillTo(1))
+		{
+			final char c = buf[pos++];
+			if (c == '"')
+				return;
+			else if (c == '\\')
+				readEscape();
+		}
+
+		throw syntaxError("unterminated string");
+	}
+
+	private char readEscape() throws IOException, JSONException
+	{
+		if (!fillTo(1))
+			throw syntaxError("unterminated escape sequence");
+
+		final char escaped = buf[pos++];
+		switch (escaped)
+		{
+			case 'u':
+				if (!fillTo(4))
+					throw syntaxError("unterminated escape sequence");
+				int result = 0;
+				for (int i = 0; i < 4; i++)
+				{
+					final int digit = Character.digit(buf[pos++], 16);
+					if (digit == -1)
+						throw syntaxError("malformed unicode escape");
+					result = (result << 4) + digit;
+				}
+				return (char) result;
+			case 'b':
+				return '\b';
+			case 'f':
+				return '\f';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 't':
+				return '\t';
+			default:
+				return escaped;
+		}
+	}
+
+	private String readLiteral() throws IOException
+	{
+		final StringBuilder builder = this.builder;
+		builder.setLength(0);
+
+		while (pos < limit || fillTo(1))
+		{
+			final char c = buf[pos];
+			if (isLiteralEnd(c))
+				break;
+			builder.append(c);
+			pos++;
+		}
+
+		return builder.toString();
+	}
+
+	private void skipLiteral() throws IOException
+	{
+		while (pos < limit || fillTo(1))
+		{
+			if (isLiteralEnd(buf[pos]))
+				break;
+			pos++;
+		}
+	}
+
+	private static boolean isLiteralEnd(final char c)
+	{
+		return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * Makes sure at least the given number of chars are buffered, unless the input ends before.
+	 */
+	private boolean fillTo(final int minimum) throws IOException
+	{
+		if (limit - pos >= minimum)
+			return true;
+
+		consumed += pos;
+		System.arraycopy(buf, pos, buf, 0, limit - pos);
+		limit -= pos;
+		pos = 0;
+
+		while (limit < minimum)
+		{
+			final int read = in.read(buf, limit, buf.length - limit);
+			if (read == -1)
+				return false;
+			limit += read;
+		}
+
+		return true;
+	}
+
+	private JSONException syntaxError(final String message)
+	{
+		return new JSONException(message + " at character " + (consumed + pos));
+	}
+}
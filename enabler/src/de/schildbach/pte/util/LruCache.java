@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe least-recently-used cache whose entries expire after a fixed time to live. The size of the cache is bounded
+ * by the sum of the estimated weights of its values.
+ * 
+ * @author Andreas Schildbach
+ */
+public final class LruCache<K, V>
+{
+	public interface Weigher<V>
+	{
+		/**
+		 * @return estimated weight of the value, usually its approximate size in bytes
+		 */
+		int weigh(V value);
+	}
+
+	private static final class Entry<V>
+	{
+		final V value;
+		final int weight;
+		final long expiresAt;
+
+		Entry(final V value, final int weight, final long expiresAt)
+		{
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final long ttlMs;
+	private final long maxWeight;
+	private final Weigher<? super V> weigher;
+	private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+
+	private long weight = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+	private long expirationCount = 0;
+
+	public LruCache(final long ttlMs, final long maxWeight, final Weigher<? super V> weigher)
+	{
+		if (ttlMs <= 0)
+			throw new IllegalArgumentException("ttlMs must be positive: " + ttlMs);
+		if (maxWeight <= 0)
+			throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+
+		this.ttlMs = ttlMs;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	public synchronized V get(final K key)
+	{
+		final Entry<V> entry = map.get(key);
+		if (entry == null)
+		{
+			missCount++;
+			return null;
+		}
+
+		if (System.currentTimeMillis() >= entry.expiresAt)
+		{
+			map.remove(key);
+			weight -= entry.weight;
+			expirationCount++;
+			missCount++;
+			return null;
+		}
+
+		hitCount++;
+		return entry.value;
+	}
+
+	public synchronized void put(final K key, final V value)
+	{
+		if (value == null)
+			throw new IllegalArgumentException("value must not be null");
+
+		final int valueWeight = Math.max(1, weigher.weigh(value));
+
+		final Entry<V> previous = map.remove(key);
+		if (previous != null)
+			weight -= previous.weight;
+
+		// values that would flush the whole cache are not worth keeping
+		if (valueWeight > maxWeight)
+			return;
+
+		map.put(key, new Entry<V>(value, valueWeight, System.currentTimeMillis() + ttlMs));
+		weight += valueWeight;
+
+		if (weight > maxWeight)
+		{
+			final long now = System.currentTimeMillis();
+
+			// drop expired entries first, then the least recently used ones
+			for (final Iterator<Entry<V>> i = map.values().iterator(); i.hasNext();)
+			{
+				final Entry<V> entry = i.next();
+				if (now >= entry.expiresAt)
+				{
+					i.remove();
+					weight -= entry.weight;
+					expirationCount++;
+				}
+			}
+
+			for (final Iterator<Map.Entry<K, Entry<V>>> i = map.entrySet().iterator(); weight > maxWeight && i.hasNext();)
+			{
+				final Entry<V> entry = i.next().getValue();
+				i.remove();
+				weight -= entry.weight;
+				evictionCount++;
+			}
+		}
+	}
+
+	public synchronized void remove(final K key)
+	{
+		final Entry<V> entry = map.remove(key);
+		if (entry != null)
+			weight -= entry.weight;
+	}
+
+	public synchronized void clear()
+	{
+		map.clear();
+		weight = 0;
+	}
+
+	public synchronized int size()
+	{
+		return map.size();
+	}
+
+	public synchronized long weight()
+	{
+		return weight;
+	}
+
+	public synchronized long hitCount()
+	{
+		return hitCount;
+	}
+
+	public synchronized long missCount()
+	{
+		return missCount;
+	}
+
+	public synchronized long evictionCount()
+	{
+		return evictionCount;
+	}
+
+	public synchronized long expirationCount()
+	{
+		return expirationCount;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return getClass().getSimpleName() + "[size=" + map.size() + ",weight=" + weight + "/" + maxWeight + ",hits=" + hitCount + ",misses="
+				+ missCount + ",evictions=" + evictionCount + ",expirations=" + expirationCount + "]";
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader that replaces any number of patterns in a single pass over the underlying reader.
+ * 
+ * <p>
+ * Patterns are kept in a trie. Input that cannot start a pattern is copied through in bulk; at all other positions the
+ * longest pattern starting there is replaced. Unlike {@link StringReplaceReader}, all patterns are matched against the
+ * original input, so a replacement is never matched again by another pattern. If two patterns start at the same
+ * position, the longer one wins. Patterns that need to match the output of other replacements go into a reader of
+ * their own, chained to the first one.
+ * </p>
+ * 
+ * <p>
+ * All patterns need to be added before the first read.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class MultiStringReplaceReader extends Reader
+{
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final class Node
+	{
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private char[] replacement;
+		private int depth;
+
+		private Node child(final char c)
+		{
+			final char[] keys = this.keys;
+			for (int i = 0; i < keys.length; i++)
+				if (keys[i] == c)
+					return children[i];
+			return null;
+		}
+
+		private Node addChild(final char c)
+		{
+			final Node existing = child(c);
+			if (existing != null)
+				return existing;
+
+			final Node child = new Node();
+			child.depth = depth + 1;
+			final int length = keys.length;
+			final char[] newKeys = new char[length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, length);
+			newKeys[length] = c;
+			final Node[] newChildren = new Node[length + 1];
+			System.arraycopy(children, 0, newChildren, 0, length);
+			newChildren[length] = child;
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+	}
+
+	private final Reader in;
+	private final Node root = new Node();
+	private final List<String> patterns = new ArrayList<String>();
+	private final boolean[] latin1Starts = new boolean[256];
+	private boolean otherStarts = false;
+	private int maxPatternLength = 0;
+
+	private char[] buf;
+	private int pos = 0;
+	private int limit = 0;
+	private boolean eof = false;
+
+	private char[] pending;
+	private final char[] single = new char[1];
+	private int pendingPos;
+
+	public MultiStringReplaceReader(final Reader in)
+	{
+		super(in);
+		this.in = in;
+	}
+
+	/**
+	 * Replace all occurrences of pattern with replacement.
+	 */
+	public void replace(final String pattern, final String replacement)
+	{
+		if (buf != null)
+			throw new IllegalStateException("cannot add patterns after reading has started");
+		if (pattern.length() == 0)
+			throw new IllegalArgumentException("empty pattern");
+
+		Node node = root;
+		for (int i = 0; i < pattern.length(); i++)
+			node = node.addChild(pattern.charAt(i));
+		node.replacement = replacement.toCharArray();
+
+		final char first = pattern.charAt(0);
+		if (first < 256)
+			latin1Starts[first] = true;
+		else
+			otherStarts = true;
+
+		maxPatternLength = Math.max(maxPatternLength, pattern.length());
+		patterns.add(pattern);
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+
+		if (buf == null)
+			buf = new char[Math.max(BUFFER_SIZE, maxPatternLength * 2)];
+
+		int written = 0;
+
+		while (written < len)
+		{
+			if (pending != null)
+			{
+				final int n = Math.min(pending.length - pendingPos, len - written);
+				System.arraycopy(pending, pendingPos, cbuf, off + written, n);
+				written += n;
+				pendingPos += n;
+				if (pendingPos == pending.length)
+					pending = null;
+				continue;
+			}
+
+			// make sure the longest pattern fits into the buffer, so that a match is decided in one go
+			if ((pos == limit || limit - pos < maxPatternLength) && !eof)
+			{
+				// don't block for more input if there is already something to return
+				if (written > 0 && !in.ready())
+					break;
+				fill();
+			}
+
+			if (pos == limit)
+				break;
+
+			final char c = buf[pos];
+			if (!isStart(c))
+			{
+				// copy run of chars that cannot start a pattern
+				final int max = Math.min(limit, pos + len - written);
+				int end = pos + 1;
+				while (end < max && !isStart(buf[end]))
+					end++;
+				final int n = end - pos;
+				System.arraycopy(buf, pos, cbuf, off + written, n);
+				written += n;
+				pos = end;
+				continue;
+			}
+
+			final Node match = longestMatch();
+			if (match != null)
+			{
+				pos += match.depth;
+				pending = match.replacement;
+				pendingPos = 0;
+				if (pending.length == 0)
+					pending = null;
+			}
+			else
+			{
+				cbuf[off + written++] = c;
+				pos++;
+			}
+		}
+
+		return written > 0 ? written : -1;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		return read(single, 0, 1) == -1 ? -1 : single[0];
+	}
+
+	@Override
+	public boolean ready() throws IOException
+	{
+		return pending != null || pos < limit || in.ready();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + patterns;
+	}
+
+	private boolean isStart(final char c)
+	{
+		return c < 256 ? latin1Starts[c] : otherStarts && root.child(c) != null;
+	}
+
+	private Node longestMatch()
+	{
+		Node longest = null;
+		Node node = root;
+		for (int i = pos; i < limit; i++)
+		{
+			node = node.child(buf[i]);
+			if (node == null)
+				break;
+			if (node.replacement != null)
+				longest = node;
+		}
+		return longest;
+	}
+
+	private void fill() throws IOException
+	{
+		if (pos > 0)
+		{
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+
+		while (limit < buf.length)
+		{
+			final int read = in.read(buf, limit, buf.length - limit);
+			if (read == -1)
+			{
+				eof = true;
+				break;
+			}
+			limit += read;
+			if (limit - pos >= maxPatternLength)
+				break;
+		}
+	}
+}
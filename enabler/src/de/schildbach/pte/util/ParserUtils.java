@@ -21,8 +21,8 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpCookie;
 import java.net.HttpURLConnection;
@@ -34,6 +34,7 @@ import java.nio.charset.Charset;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -56,41 +57,38 @@ public final class ParserUtils
 	public static final int SCRAPE_INITIAL_CAPACITY = 4096;
 	private static final int SCRAPE_COPY_SIZE = 2048;
 	private static final int SCRAPE_PEEK_SIZE = 4096;
-	private static final int SCRAPE_CONNECT_TIMEOUT = 5000;
-	private static final int SCRAPE_READ_TIMEOUT = 15000;
 	private static final Charset SCRAPE_DEFAULT_ENCODING = Charset.forName("ISO-8859-1");
 
-	private static HttpCookie sessionCookie;
-
-	public static final CharSequence scrape(final String url) throws IOException
+	public static final CharSequence scrape(final HttpTransport transport, final String url) throws IOException
 	{
-		return scrape(url, null);
+		return scrape(transport, url, null);
 	}
 
-	public static final CharSequence scrape(final String url, final String authorization) throws IOException
+	public static final CharSequence scrape(final HttpTransport transport, final String url, final String authorization) throws IOException
 	{
-		return scrape(url, null, null, null, authorization);
+		return scrape(transport, url, null, null, null, authorization);
 	}
 
-	public static final CharSequence scrape(final String url, final String postRequest, final Charset encoding) throws IOException
+	public static final CharSequence scrape(final HttpTransport transport, final String url, final String postRequest, final Charset encoding)
+			throws IOException
 	{
-		return scrape(url, postRequest, encoding, null);
+		return scrape(transport, url, postRequest, encoding, null);
 	}
 
-	public static final CharSequence scrape(final String urlStr, final String postRequest, final Charset requestEncoding,
-			final String sessionCookieName) throws IOException
+	public static final CharSequence scrape(final HttpTransport transport, final String urlStr, final String postRequest,
+			final Charset requestEncoding, final SessionCookieJar.Session session) throws IOException
 	{
-		return scrape(urlStr, postRequest, requestEncoding, sessionCookieName, null);
+		return scrape(transport, urlStr, postRequest, requestEncoding, session, null);
 	}
 
-	private static final CharSequence scrape(final String urlStr, final String postRequest, Charset requestEncoding, final String sessionCookieName,
-			final String authorization) throws IOException
+	private static final CharSequence scrape(final HttpTransport transport, final String urlStr, final String postRequest, Charset requestEncoding,
+			final SessionCookieJar.Session session, final String authorization) throws IOException
 	{
 		if (requestEncoding == null)
 			requestEncoding = SCRAPE_DEFAULT_ENCODING;
 
 		final StringBuilder buffer = new StringBuilder(SCRAPE_INITIAL_CAPACITY);
-		final InputStream is = scrapeInputStream(urlStr, postRequest, requestEncoding, null, sessionCookieName, authorization);
+		final InputStream is = scrapeInputStream(transport, urlStr, postRequest, requestEncoding, null, session, authorization);
 		final Reader pageReader = new InputStreamReader(is, requestEncoding);
 		copy(pageReader, buffer);
 		pageReader.close();
@@ -110,81 +108,104 @@ public final class ParserUtils
 		return count;
 	}
 
-	public static final InputStream scrapeInputStream(final String url) throws IOException
+	public static final InputStream scrapeInputStream(final HttpTransport transport, final String url) throws IOException
 	{
-		return scrapeInputStream(url, null);
+		return scrapeInputStream(transport, url, null);
 	}
 
-	public static final InputStream scrapeInputStream(final String url, final String sessionCookieName) throws IOException
+	public static final InputStream scrapeInputStream(final HttpTransport transport, final String url, final SessionCookieJar.Session session)
+			throws IOException
 	{
-		return scrapeInputStream(url, null, null, null, sessionCookieName);
+		return scrapeInputStream(transport, url, null, null, null, session);
 	}
 
-	public static final InputStream scrapeInputStream(final String urlStr, final String postRequest, final Charset requestEncoding,
-			final String referer, final String sessionCookieName) throws IOException
+	public static final InputStream scrapeInputStream(final HttpTransport transport, final String urlStr, final String postRequest,
+			final Charset requestEncoding, final String referer, final SessionCookieJar.Session session) throws IOException
 	{
-		return scrapeInputStream(urlStr, postRequest, requestEncoding, referer, sessionCookieName, null);
+		return scrapeInputStream(transport, urlStr, postRequest, requestEncoding, referer, session, null);
 	}
 
-	public static final InputStream scrapeInputStream(final String urlStr, final String postRequest, Charset requestEncoding, final String referer,
-			final String sessionCookieName, final String authorization) throws IOException
+	public static final InputStream scrapeInputStream(final HttpTransport transport, final String urlStr, final String postRequest,
+			Charset requestEncoding, final String referer, final SessionCookieJar.Session session, final String authorization) throws IOException
 	{
 		if (requestEncoding == null)
 			requestEncoding = SCRAPE_DEFAULT_ENCODING;
 
-		int tries = 3;
+		final QueryProbe probe = QueryProbe.current();
 
-		while (true)
+		final URL url = new URL(urlStr);
+
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("User-Agent", SCRAPE_USER_AGENT);
+		headers.put("Accept", SCRAPE_ACCEPT);
+		headers.put("Accept-Encoding", "gzip");
+		// workaround to disable Vodafone compression
+		headers.put("Cache-Control", "no-cache");
+
+		if (referer != null)
+			headers.put("Referer", referer);
+
+		if (session != null)
 		{
-			final URL url = new URL(urlStr);
-			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-			connection.setDoInput(true);
-			connection.setDoOutput(postRequest != null);
-			connection.setConnectTimeout(SCRAPE_CONNECT_TIMEOUT);
-			connection.setReadTimeout(SCRAPE_READ_TIMEOUT);
-			connection.addRequestProperty("User-Agent", SCRAPE_USER_AGENT);
-			connection.addRequestProperty("Accept", SCRAPE_ACCEPT);
-			connection.addRequestProperty("Accept-Encoding", "gzip");
-			// workaround to disable Vodafone compression
-			connection.addRequestProperty("Cache-Control", "no-cache");
-
-			if (referer != null)
-				connection.addRequestProperty("Referer", referer);
-
-			if (sessionCookie != null && sessionCookie.getName().equals(sessionCookieName))
-				connection.addRequestProperty("Cookie", sessionCookie.toString());
-
-			// Set authorization.
-			if (authorization != null)
-				connection.addRequestProperty("Authorization", authorization);
-
-			if (postRequest != null)
-			{
-				final byte[] postRequestBytes = postRequest.getBytes(requestEncoding.name());
+			final HttpCookie sessionCookie = session.get();
+			if (sessionCookie != null)
+				headers.put("Cookie", sessionCookie.toString());
+		}
 
-				connection.setRequestMethod("POST");
-				connection.addRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-				connection.addRequestProperty("Content-Length", Integer.toString(postRequestBytes.length));
+		// Set authorization.
+		if (authorization != null)
+			headers.put("Authorization", authorization);
 
-				final OutputStream os = connection.getOutputStream();
-				os.write(postRequestBytes);
-				os.close();
-			}
+		final byte[] postRequestBytes;
+		if (postRequest != null)
+		{
+			postRequestBytes = postRequest.getBytes(requestEncoding.name());
 
-			final int responseCode = connection.getResponseCode();
-			if (responseCode == HttpURLConnection.HTTP_OK)
-			{
-				final String contentType = connection.getContentType();
-				final String contentEncoding = connection.getContentEncoding();
+			headers.put("Content-Type", "application/x-www-form-urlencoded");
+			headers.put("Content-Length", Integer.toString(postRequestBytes.length));
+		}
+		else
+		{
+			postRequestBytes = null;
+		}
+
+		final Trace.Span span = Trace.startRequest(urlStr);
+		final long requestStart = System.nanoTime();
+		HttpTransport.Response response = null;
+		try
+		{
+			response = transport.execute(new HttpTransport.Request(url, headers, postRequestBytes));
+		}
+		finally
+		{
+			if (probe != null)
+				probe.requested(System.nanoTime() - requestStart);
+			if (response == null)
+				span.end();
+		}
 
-				InputStream is = new BufferedInputStream(connection.getInputStream());
+		final int responseCode = response.code;
+		span.status(responseCode);
 
+		if (responseCode == HttpURLConnection.HTTP_OK)
+		{
+			final String contentType = response.contentType();
+			final String contentEncoding = response.contentEncoding();
+
+			// the span ends as soon as the body is closed
+			InputStream is = new BufferedInputStream(span.countBytes(probe != null ? probe.countCompressed(response.body) : response.body));
+			boolean success = false;
+
+			try
+			{
 				if ("gzip".equalsIgnoreCase(contentEncoding) || "application/octet-stream".equalsIgnoreCase(contentType))
 					is = wrapGzip(is);
 
-				if (!url.getHost().equals(connection.getURL().getHost()))
-					throw new UnexpectedRedirectException(url, connection.getURL());
+				if (probe != null)
+					is = new BufferedInputStream(probe.countUncompressed(is));
+
+				if (!url.getHost().equals(response.url.getHost()))
+					throw new UnexpectedRedirectException(url, response.url);
 
 				final String firstChars = peekFirstChars(is);
 
@@ -193,15 +214,19 @@ public final class ParserUtils
 					throw new UnexpectedRedirectException(url, redirectUrl);
 
 				if (testExpired(firstChars))
+				{
+					if (session != null)
+						session.clear();
 					throw new SessionExpiredException();
+				}
 
 				if (testInternalError(firstChars))
-					throw new InternalErrorException(url, new InputStreamReader(is, requestEncoding));
+					throw new InternalErrorException(url, bufferedReader(is, requestEncoding));
 
 				// save cookie
-				if (sessionCookieName != null)
+				if (session != null)
 				{
-					c: for (final Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet())
+					c: for (final Map.Entry<String, List<String>> entry : response.headers.entrySet())
 					{
 						if ("set-cookie".equalsIgnoreCase(entry.getKey()) || "set-cookie2".equalsIgnoreCase(entry.getKey()))
 						{
@@ -209,9 +234,9 @@ public final class ParserUtils
 							{
 								for (final HttpCookie cookie : HttpCookie.parse(value))
 								{
-									if (cookie.getName().equals(sessionCookieName))
+									if (cookie.getName().equals(session.cookieName()))
 									{
-										sessionCookie = cookie;
+										session.set(cookie);
 										break c;
 									}
 								}
@@ -220,35 +245,67 @@ public final class ParserUtils
 					}
 				}
 
+				success = true;
 				return is;
 			}
-			else if (responseCode == HttpURLConnection.HTTP_BAD_REQUEST || responseCode == HttpURLConnection.HTTP_UNAUTHORIZED
-					|| responseCode == HttpURLConnection.HTTP_FORBIDDEN || responseCode == HttpURLConnection.HTTP_NOT_ACCEPTABLE
-					|| responseCode == HttpURLConnection.HTTP_UNAVAILABLE)
-			{
-				throw new BlockedException(url, new InputStreamReader(connection.getErrorStream(), requestEncoding));
-			}
-			else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND)
-			{
-				throw new NotFoundException(url, new InputStreamReader(connection.getErrorStream(), requestEncoding));
-			}
-			else if (responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == HttpURLConnection.HTTP_MOVED_TEMP)
+			finally
 			{
-				throw new UnexpectedRedirectException(url, connection.getURL());
-			}
-			else if (responseCode == HttpURLConnection.HTTP_INTERNAL_ERROR)
-			{
-				throw new InternalErrorException(url, new InputStreamReader(connection.getErrorStream(), requestEncoding));
-			}
-			else
-			{
-				final String message = "got response: " + responseCode + " " + connection.getResponseMessage();
-				if (tries-- > 0)
-					System.out.println(message + ", retrying...");
-				else
-					throw new IOException(message + ": " + url);
+				if (!success)
+					is.close();
 			}
 		}
+
+		span.end();
+
+		if (responseCode == HttpURLConnection.HTTP_BAD_REQUEST || responseCode == HttpURLConnection.HTTP_UNAUTHORIZED
+				|| responseCode == HttpURLConnection.HTTP_FORBIDDEN || responseCode == HttpURLConnection.HTTP_NOT_ACCEPTABLE
+				|| responseCode == HttpURLConnection.HTTP_UNAVAILABLE)
+		{
+			throw new BlockedException(url, bufferedReader(response.body, requestEncoding));
+		}
+		else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND)
+		{
+			throw new NotFoundException(url, bufferedReader(response.body, requestEncoding));
+		}
+		else if (responseCode == HttpURLConnection.HTTP_MOVED_PERM || responseCode == HttpURLConnection.HTTP_MOVED_TEMP)
+		{
+			response.close();
+			throw new UnexpectedRedirectException(url, response.url);
+		}
+		else if (responseCode == HttpURLConnection.HTTP_INTERNAL_ERROR)
+		{
+			throw new InternalErrorException(url, bufferedReader(response.body, requestEncoding));
+		}
+		else
+		{
+			response.close();
+
+			throw new IOException("got response: " + responseCode + " " + response.message + ": " + url);
+		}
+	}
+
+	/**
+	 * Reads the remainder of a stream into memory and closes it, so that the underlying connection can be reused even if
+	 * nobody ever looks at the returned reader.
+	 */
+	private static Reader bufferedReader(final InputStream is, final Charset encoding) throws IOException
+	{
+		if (is == null)
+			return new StringReader("");
+
+		final StringBuilder buffer = new StringBuilder(SCRAPE_INITIAL_CAPACITY);
+		final Reader reader = new InputStreamReader(is, encoding);
+
+		try
+		{
+			copy(reader, buffer);
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		return new StringReader(buffer.toString());
 	}
 
 	private static InputStream wrapGzip(final InputStream is) throws IOException
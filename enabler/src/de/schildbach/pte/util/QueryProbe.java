@@ -0,0 +1,240 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Collects what the HTTP layer observes while a query is running on the current thread: number of requests, time spent
+ * fetching (waiting for the transport and reading response bodies), connect time, time to first byte and bytes
+ * received before and after decompression. Nothing is measured while no probe is active.
+ * 
+ * <p>
+ * A probe is confined to the thread that started it. Requests made from other threads on behalf of the query are not
+ * attributed, so code waiting for such requests should add the time spent waiting via {@link #fetched(long)}. Time
+ * spent waiting for a turn to run at all, e.g. in a {@link de.schildbach.pte.BulkheadNetworkProvider}, is added via
+ * {@link #waited(long)}.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class QueryProbe
+{
+	private static final ThreadLocal<QueryProbe> CURRENT = new ThreadLocal<QueryProbe>();
+
+	private final QueryProbe outer;
+	private final long startNanos = System.nanoTime();
+	private long stopNanos = 0;
+	private int requests = 0;
+	private long fetchNanos = 0;
+	private long waitNanos = 0;
+	private long connectNanos = 0;
+	private long firstByteNanos = 0;
+	private long compressedBytes = 0;
+	private long uncompressedBytes = 0;
+
+	private QueryProbe(final QueryProbe outer)
+	{
+		this.outer = outer;
+	}
+
+	/**
+	 * Start a probe on the current thread. Must be followed by {@link #stop()}, usually in a finally block.
+	 */
+	public static QueryProbe start()
+	{
+		final QueryProbe probe = new QueryProbe(CURRENT.get());
+		CURRENT.set(probe);
+		return probe;
+	}
+
+	/**
+	 * @return probe active on the current thread, or {@code null}
+	 */
+	public static QueryProbe current()
+	{
+		return CURRENT.get();
+	}
+
+	public void stop()
+	{
+		if (stopNanos != 0)
+			return;
+
+		stopNanos = System.nanoTime();
+
+		if (CURRENT.get() == this)
+		{
+			if (outer != null)
+				CURRENT.set(outer);
+			else
+				CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Record a request that has been handed to a transport, whether it was answered or failed.
+	 * 
+	 * @param nanos
+	 *            time from handing the request to the transport until the response headers have been received or the
+	 *            transport has given up
+	 */
+	public void requested(final long nanos)
+	{
+		requests++;
+		fetchNanos += nanos;
+	}
+
+	/**
+	 * Record connection timings, as far as the transport can tell them apart.
+	 * 
+	 * @param connectNanos
+	 *            time to establish the connection, close to zero if a kept-alive connection was reused
+	 * @param firstByteNanos
+	 *            time from starting to connect until the response headers have been received
+	 */
+	public void connected(final long connectNanos, final long firstByteNanos)
+	{
+		this.connectNanos += connectNanos;
+		this.firstByteNanos += firstByteNanos;
+	}
+
+	/**
+	 * Record time spent waiting for upstream data outside of the transport.
+	 */
+	public void fetched(final long nanos)
+	{
+		fetchNanos += nanos;
+	}
+
+	/**
+	 * Record time spent waiting for permission to run the query, before any request has been made.
+	 */
+	public void waited(final long nanos)
+	{
+		waitNanos += nanos;
+	}
+
+	/**
+	 * Count the bytes received through a response body as it comes off the wire, and the time spent reading them.
+	 */
+	public InputStream countCompressed(final InputStream is)
+	{
+		return new FilterInputStream(is)
+		{
+			@Override
+			public int read() throws IOException
+			{
+				final long start = System.nanoTime();
+				final int b = super.read();
+				fetchNanos += System.nanoTime() - start;
+				if (b != -1)
+					compressedBytes++;
+				return b;
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int length) throws IOException
+			{
+				final long start = System.nanoTime();
+				final int count = super.read(buffer, offset, length);
+				fetchNanos += System.nanoTime() - start;
+				if (count > 0)
+					compressedBytes += count;
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * Count the bytes of a response body as they are handed to the parser.
+	 */
+	public InputStream countUncompressed(final InputStream is)
+	{
+		return new FilterInputStream(is)
+		{
+			@Override
+			public int read() throws IOException
+			{
+				final int b = super.read();
+				if (b != -1)
+					uncompressedBytes++;
+				return b;
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int length) throws IOException
+			{
+				final int count = super.read(buffer, offset, length);
+				if (count > 0)
+					uncompressedBytes += count;
+				return count;
+			}
+		};
+	}
+
+	public long elapsedNanos()
+	{
+		return (stopNanos != 0 ? stopNanos : System.nanoTime()) - startNanos;
+	}
+
+	public int requests()
+	{
+		return requests;
+	}
+
+	public long fetchNanos()
+	{
+		return fetchNanos;
+	}
+
+	public long waitNanos()
+	{
+		return waitNanos;
+	}
+
+	/**
+	 * @return time neither spent fetching nor waiting, which is mostly parsing
+	 */
+	public long parseNanos()
+	{
+		return Math.max(elapsedNanos() - fetchNanos - waitNanos, 0);
+	}
+
+	public long connectNanos()
+	{
+		return connectNanos;
+	}
+
+	public long firstByteNanos()
+	{
+		return firstByteNanos;
+	}
+
+	public long compressedBytes()
+	{
+		return compressedBytes;
+	}
+
+	public long uncompressedBytes()
+	{
+		return uncompressedBytes;
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link HttpTransport} that passes requests on to another transport and appends each exchange, including headers and
+ * the undecoded response body, to an archive on disk. The archive can be served later by a {@link ReplayTransport}.
+ * 
+ * <p>
+ * Response bodies are read completely before they are handed to {@link ParserUtils}, so this transport is meant for
+ * capturing traffic rather than for production use.
+ * </p>
+ * 
+ * <p>
+ * Request headers carrying credentials ({@code Authorization}, {@code Proxy-Authorization} and {@code Cookie}) are
+ * left out of the archive, and the values of URL parameters carrying keys are replaced, so that archives can be shared.
+ * Pass the names of the redacted parameters to {@link ReplayTransport} as ignored parameters, so that the recorded
+ * requests still match.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class RecordingTransport implements HttpTransport
+{
+	/** URL parameters providers pass their keys in */
+	public static final String[] DEFAULT_REDACTED_PARAMETERS = { "Key" };
+
+	private static final Set<String> CREDENTIAL_HEADERS = new HashSet<String>(Arrays.asList("authorization", "proxy-authorization", "cookie"));
+	private static final String REDACTED = "REDACTED";
+
+	private final HttpTransport delegate;
+	private final File archive;
+	private final Set<String> redactedParameters;
+
+	public RecordingTransport(final HttpTransport delegate, final File archive)
+	{
+		this(delegate, archive, DEFAULT_REDACTED_PARAMETERS);
+	}
+
+	public RecordingTransport(final HttpTransport delegate, final File archive, final String... redactedParameters)
+	{
+		this.delegate = delegate;
+		this.archive = archive;
+		this.redactedParameters = new HashSet<String>(Arrays.asList(redactedParameters));
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final Response response = delegate.execute(request);
+
+		final byte[] body;
+		try
+		{
+			body = response.body != null ? readFully(response.body) : null;
+		}
+		finally
+		{
+			response.close();
+		}
+
+		final Map<String, List<String>> headers = Collections.unmodifiableMap(new LinkedHashMap<String, List<String>>(response.headers));
+		final HttpArchive.Exchange exchange = new HttpArchive.Exchange(withoutCredentials(request), redact(response.url), response.code,
+				response.message, headers, body);
+
+		HttpArchive.append(archive, exchange);
+
+		// the caller gets to see the unredacted URL
+		return new Response(response.url, response.code, response.message, headers, body != null ? new ByteArrayInputStream(body) : null);
+	}
+
+	private Request withoutCredentials(final Request request) throws MalformedURLException
+	{
+		final Map<String, String> headers = new LinkedHashMap<String, String>(request.headers.size());
+		for (final Map.Entry<String, String> header : request.headers.entrySet())
+			if (!CREDENTIAL_HEADERS.contains(header.getKey().toLowerCase(Locale.ENGLISH)))
+				headers.put(header.getKey(), header.getValue());
+
+		return new Request(redact(request.url), Collections.unmodifiableMap(headers), request.postBody);
+	}
+
+	private URL redact(final URL url) throws MalformedURLException
+	{
+		final String query = url.getQuery();
+		if (query == null || redactedParameters.isEmpty())
+			return url;
+
+		final StringBuilder redactedQuery = new StringBuilder(query.length());
+		for (final String parameter : query.split("&"))
+		{
+			if (redactedQuery.length() > 0)
+				redactedQuery.append('&');
+
+			final int equalsIndex = parameter.indexOf('=');
+			if (equalsIndex != -1 && redactedParameters.contains(parameter.substring(0, equalsIndex)))
+				redactedQuery.append(parameter, 0, equalsIndex + 1).append(REDACTED);
+			else
+				redactedQuery.append(parameter);
+		}
+
+		final String spec = url.toString();
+		final int queryIndex = spec.indexOf('?');
+		final int fragmentIndex = spec.indexOf('#', queryIndex);
+		return new URL(spec.substring(0, queryIndex + 1) + redactedQuery + (fragmentIndex != -1 ? spec.substring(fragmentIndex) : ""));
+	}
+
+	private static byte[] readFully(final InputStream is) throws IOException
+	{
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		final byte[] buf = new byte[4096];
+		int read;
+		while ((read = is.read(buf)) != -1)
+			os.write(buf, 0, read);
+		return os.toByteArray();
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpTransport} that serves the responses of an archive written by {@link RecordingTransport}, without touching
+ * the network.
+ * 
+ * <p>
+ * Requests are matched by method, URL and POST body; headers, and thus credentials, play no part. Query parameters
+ * that change from run to run, like the requested time, can be excluded from matching. If the same request has been
+ * recorded several times, its responses are served in turn. Requests that have not been recorded fail with an
+ * {@link IOException}.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class ReplayTransport implements HttpTransport
+{
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	private final Set<String> ignoredParameters;
+	private final Map<String, List<HttpArchive.Exchange>> exchanges = new HashMap<String, List<HttpArchive.Exchange>>();
+	private final Map<String, AtomicInteger> cursors = new HashMap<String, AtomicInteger>();
+
+	public ReplayTransport(final File archive, final String... ignoredParameters) throws IOException
+	{
+		this.ignoredParameters = new HashSet<String>(Arrays.asList(ignoredParameters));
+
+		for (final HttpArchive.Exchange exchange : HttpArchive.read(archive))
+		{
+			final String key = key(exchange.request);
+			List<HttpArchive.Exchange> list = exchanges.get(key);
+			if (list == null)
+			{
+				list = new ArrayList<HttpArchive.Exchange>(1);
+				exchanges.put(key, list);
+				cursors.put(key, new AtomicInteger());
+			}
+			list.add(exchange);
+		}
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final String key = key(request);
+		final List<HttpArchive.Exchange> list = exchanges.get(key);
+		if (list == null)
+			throw new IOException("not recorded: " + request);
+
+		final int index = (cursors.get(key).getAndIncrement() & Integer.MAX_VALUE) % list.size();
+		return list.get(index).response();
+	}
+
+	private String key(final Request request)
+	{
+		final StringBuilder key = new StringBuilder();
+		key.append(request.isPost() ? "POST " : "GET ");
+
+		final String url = request.url.toString();
+		final int queryIndex = url.indexOf('?');
+		if (queryIndex == -1)
+		{
+			key.append(url);
+		}
+		else
+		{
+			key.append(url, 0, queryIndex + 1);
+			appendParameters(key, url.substring(queryIndex + 1));
+		}
+
+		if (request.isPost())
+		{
+			key.append('\n');
+			// form encoded bodies are ASCII, anything else will at least round-trip
+			appendParameters(key, new String(request.postBody, ISO_8859_1));
+		}
+
+		return key.toString();
+	}
+
+	private void appendParameters(final StringBuilder key, final String parameters)
+	{
+		if (ignoredParameters.isEmpty())
+		{
+			key.append(parameters);
+			return;
+		}
+
+		boolean first = true;
+		for (final String parameter : parameters.split("&"))
+		{
+			final int equalsIndex = parameter.indexOf('=');
+			final String name = equalsIndex != -1 ? parameter.substring(0, equalsIndex) : parameter;
+			if (!ignoredParameters.contains(name))
+			{
+				if (!first)
+					key.append('&');
+				key.append(parameter);
+				first = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.schildbach.pte.exception.CircuitOpenException;
+import de.schildbach.pte.exception.LimitExceededException;
+
+/**
+ * Decorates an {@link HttpTransport} with a circuit breaker per endpoint (protocol, host and port), and retries with
+ * jittered exponential backoff.
+ * 
+ * <p>
+ * Transport exceptions and responses with status {@code 429}, {@code 502}, {@code 503} or {@code 504} count as
+ * failures. After {@link Policy#failureThreshold} consecutive failures the breaker opens, and requests fail fast with a
+ * {@link CircuitOpenException} for {@link Policy#openMs}. Then a single probe request is let through. If it succeeds
+ * the breaker closes again, otherwise it stays open for twice as long as before, up to {@link Policy#maxOpenMs}.
+ * </p>
+ * 
+ * <p>
+ * Failed connects and the above status codes are retried, timeouts are not, as they have tied up the thread for long
+ * enough already. Retries draw from a budget per endpoint that grows by {@link Policy#retryRatio} with each request, so
+ * that retries can't multiply the load on a struggling backend. If retrying is not possible, the last failed response
+ * is returned as is, for {@link ParserUtils} to interpret.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class ResilientHttpTransport implements HttpTransport
+{
+	public enum State
+	{
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	public static final class Policy
+	{
+		public final int maxRetries;
+		public final long minBackoffMs;
+		public final long maxBackoffMs;
+		public final double retryRatio;
+		public final int failureThreshold;
+		public final long openMs;
+		public final long maxOpenMs;
+
+		/**
+		 * @param maxRetries
+		 *            maximum number of retries per request
+		 * @param minBackoffMs
+		 *            backoff before the first retry, doubled for every further retry
+		 * @param maxBackoffMs
+		 *            upper limit of the backoff
+		 * @param retryRatio
+		 *            retries earned per request, e.g. {@code 0.2} for at most one retry per five requests in the long
+		 *            run
+		 * @param failureThreshold
+		 *            number of consecutive failures that open the breaker
+		 * @param openMs
+		 *            time the breaker stays open before letting a probe request through
+		 * @param maxOpenMs
+		 *            upper limit of the open time after failed probes
+		 */
+		public Policy(final int maxRetries, final long minBackoffMs, final long maxBackoffMs, final double retryRatio,
+				final int failureThreshold, final long openMs, final long maxOpenMs)
+		{
+			this.maxRetries = maxRetries;
+			this.minBackoffMs = minBackoffMs;
+			this.maxBackoffMs = maxBackoffMs;
+			this.retryRatio = retryRatio;
+			this.failureThreshold = failureThreshold;
+			this.openMs = openMs;
+			this.maxOpenMs = maxOpenMs;
+		}
+	}
+
+	public static final Policy DEFAULT_POLICY = new Policy(2, 250, 2000, 0.2, 5, 5000, 60000);
+
+	/** shared instance, so that all providers talking to the same host share its breaker */
+	public static final ResilientHttpTransport DEFAULT = new ResilientHttpTransport(AdaptiveLimitHttpTransport.DEFAULT, DEFAULT_POLICY);
+
+	private static final double MAX_RETRY_TOKENS = 10;
+
+	private final HttpTransport delegate;
+	private final Policy policy;
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+
+	public ResilientHttpTransport(final HttpTransport delegate, final Policy policy)
+	{
+		if (delegate == null)
+			throw new IllegalArgumentException("delegate must not be null");
+		if (policy == null)
+			throw new IllegalArgumentException("policy must not be null");
+
+		this.delegate = delegate;
+		this.policy = policy;
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final Endpoint endpoint = endpoint(request.url);
+		endpoint.earnRetry();
+
+		for (int retry = 0;; retry++)
+		{
+			if (!endpoint.tryAcquire())
+				throw new CircuitOpenException(request.url, endpoint.remainingOpenMs());
+
+			final Response response;
+
+			try
+			{
+				response = delegate.execute(request);
+			}
+			catch (final IOException x)
+			{
+				if ((x instanceof InterruptedIOException && !(x instanceof SocketTimeoutException)) || x instanceof LimitExceededException)
+				{
+					// interrupted or held back locally, says nothing about the endpoint
+					endpoint.release();
+					throw x;
+				}
+
+				endpoint.failure();
+
+				if (!(x instanceof ConnectException || x instanceof NoRouteToHostException) || !mayRetry(endpoint, retry))
+					throw x;
+
+				backoff(retry);
+				continue;
+			}
+			catch (final RuntimeException x)
+			{
+				endpoint.release();
+				throw x;
+			}
+
+			if (!isFailure(response.code))
+			{
+				endpoint.success();
+				return response;
+			}
+
+			endpoint.failure();
+
+			if (!mayRetry(endpoint, retry))
+				return response;
+
+			response.close();
+			backoff(retry);
+		}
+	}
+
+	public State state(final URL url)
+	{
+		return endpoint(url).state();
+	}
+
+	private static boolean isFailure(final int code)
+	{
+		return code == 429 || code == 502 || code == 503 || code == 504;
+	}
+
+	private boolean mayRetry(final Endpoint endpoint, final int retry)
+	{
+		// a retry must not trip over a breaker that this very request has opened
+		return retry < policy.maxRetries && endpoint.state() == State.CLOSED && endpoint.spendRetry();
+	}
+
+	private void backoff(final int retry) throws InterruptedIOException
+	{
+		final long backoffMs = Math.min(policy.minBackoffMs << Math.min(retry, 20), policy.maxBackoffMs);
+
+		// equal jitter, so that retries of concurrent requests spread out but still back off
+		final long sleepMs = backoffMs / 2 + (long) (Math.random() * (backoffMs / 2 + 1));
+
+		try
+		{
+			Thread.sleep(sleepMs);
+		}
+		catch (final InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while backing off");
+		}
+	}
+
+	private Endpoint endpoint(final URL url)
+	{
+		final String key = url.getProtocol() + "://" + url.getAuthority();
+
+		final Endpoint endpoint = endpoints.get(key);
+		if (endpoint != null)
+			return endpoint;
+
+		final Endpoint newEndpoint = new Endpoint(policy);
+		final Endpoint existingEndpoint = endpoints.putIfAbsent(key, newEndpoint);
+		return existingEndpoint != null ? existingEndpoint : newEndpoint;
+	}
+
+	private static final class Endpoint
+	{
+		private final Policy policy;
+		private State state = State.CLOSED;
+		private int consecutiveFailures = 0;
+		private long openMs;
+		private long openUntil = 0;
+		private boolean probing = false;
+		private double retryTokens = MAX_RETRY_TOKENS;
+
+		public Endpoint(final Policy policy)
+		{
+			this.policy = policy;
+			this.openMs = policy.openMs;
+		}
+
+		public synchronized State state()
+		{
+			return state;
+		}
+
+		public synchronized boolean tryAcquire()
+		{
+			if (state == State.CLOSED)
+				return true;
+
+			if (state == State.OPEN && System.currentTimeMillis() >= openUntil)
+				state = State.HALF_OPEN;
+
+			if (state == State.HALF_OPEN && !probing)
+			{
+				probing = true;
+				return true;
+			}
+
+			return false;
+		}
+
+		public synchronized void release()
+		{
+			probing = false;
+		}
+
+		public synchronized void success()
+		{
+			state = State.CLOSED;
+			consecutiveFailures = 0;
+			openMs = policy.openMs;
+			probing = false;
+		}
+
+		public synchronized void failure()
+		{
+			if (state == State.HALF_OPEN)
+			{
+				openMs = Math.min(openMs * 2, policy.maxOpenMs);
+				open();
+			}
+			else if (state == State.CLOSED && ++consecutiveFailures >= policy.failureThreshold)
+			{
+				open();
+			}
+
+			probing = false;
+		}
+
+		private void open()
+		{
+			state = State.OPEN;
+			openUntil = System.currentTimeMillis() + openMs;
+			consecutiveFailures = 0;
+		}
+
+		public synchronized long remainingOpenMs()
+		{
+			return Math.max(openUntil - System.currentTimeMillis(), 0);
+		}
+
+		public synchronized void earnRetry()
+		{
+			retryTokens = Math.min(retryTokens + policy.retryRatio, MAX_RETRY_TOKENS);
+		}
+
+		public synchronized boolean spendRetry()
+		{
+			if (retryTokens < 1)
+				return false;
+
+			retryTokens--;
+			return true;
+		}
+	}
+}
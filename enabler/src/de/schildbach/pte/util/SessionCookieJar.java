@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.net.HttpCookie;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the session cookie of one provider instance, separately for each logical client session. Reads are lock-free.
+ * The number of sessions is bounded by evicting the least recently used ones on put. Eviction is approximate while
+ * sessions are used concurrently, as accesses that race with it are not taken into account.
+ * 
+ * @author Andreas Schildbach
+ */
+public final class SessionCookieJar
+{
+	public static final int DEFAULT_MAX_SESSIONS = 256;
+
+	private final String cookieName;
+	private final int maxSessions;
+	private final ConcurrentMap<String, Entry> cookies = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong accessClock = new AtomicLong();
+	private final AtomicLong sessionCounter = new AtomicLong();
+
+	private static final class Entry
+	{
+		final HttpCookie cookie;
+		volatile long lastAccess;
+
+		Entry(final HttpCookie cookie, final long lastAccess)
+		{
+			this.cookie = cookie;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	public SessionCookieJar(final String cookieName)
+	{
+		this(cookieName, DEFAULT_MAX_SESSIONS);
+	}
+
+	public SessionCookieJar(final String cookieName, final int maxSessions)
+	{
+		if (cookieName == null)
+			throw new IllegalArgumentException("cookieName must not be null");
+		if (maxSessions <= 0)
+			throw new IllegalArgumentException("maxSessions must be positive: " + maxSessions);
+
+		this.cookieName = cookieName;
+		this.maxSessions = maxSessions;
+	}
+
+	public String cookieName()
+	{
+		return cookieName;
+	}
+
+	public String newSessionKey()
+	{
+		return Long.toString(sessionCounter.incrementAndGet(), Character.MAX_RADIX);
+	}
+
+	public HttpCookie get(final String sessionKey)
+	{
+		final Entry entry = cookies.get(sessionKey);
+		if (entry == null)
+			return null;
+
+		if (entry.cookie.hasExpired())
+		{
+			cookies.remove(sessionKey, entry);
+			return null;
+		}
+
+		entry.lastAccess = accessClock.incrementAndGet();
+		return entry.cookie;
+	}
+
+	public void put(final String sessionKey, final HttpCookie cookie)
+	{
+		if (!cookieName.equals(cookie.getName()))
+			throw new IllegalArgumentException("expected cookie " + cookieName + ": " + cookie);
+
+		cookies.put(sessionKey, new Entry(cookie, accessClock.incrementAndGet()));
+
+		if (cookies.size() > maxSessions)
+			evict();
+	}
+
+	private synchronized void evict()
+	{
+		while (cookies.size() > maxSessions)
+		{
+			Map.Entry<String, Entry> eldest = null;
+			for (final Map.Entry<String, Entry> entry : cookies.entrySet())
+				if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess)
+					eldest = entry;
+
+			if (eldest == null)
+				return;
+			cookies.remove(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	public void remove(final String sessionKey)
+	{
+		cookies.remove(sessionKey);
+	}
+
+	public int size()
+	{
+		return cookies.size();
+	}
+
+	public Session session(final String sessionKey)
+	{
+		return new Session(sessionKey);
+	}
+
+	/**
+	 * View on the cookie of one logical session, as handed to {@link ParserUtils}.
+	 */
+	public final class Session
+	{
+		private final String sessionKey;
+
+		private Session(final String sessionKey)
+		{
+			if (sessionKey == null)
+				throw new IllegalArgumentException("sessionKey must not be null");
+
+			this.sessionKey = sessionKey;
+		}
+
+		public String cookieName()
+		{
+			return cookieName;
+		}
+
+		public HttpCookie get()
+		{
+			return SessionCookieJar.this.get(sessionKey);
+		}
+
+		public void set(final HttpCookie cookie)
+		{
+			put(sessionKey, cookie);
+		}
+
+		public void clear()
+		{
+			remove(sessionKey);
+		}
+
+		@Override
+		public String toString()
+		{
+			return getClass().getSimpleName() + "[" + cookieName + "," + sessionKey + "]";
+		}
+	}
+}
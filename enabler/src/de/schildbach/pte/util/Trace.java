@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.schildbach.pte.NetworkId;
+
+/**
+ * Lightweight tracing of provider stages and the HTTP requests they make, meant to be always on. Spans are handed to a
+ * {@link Tracer}, which can forward them to whatever the platform offers, e.g. JDK Flight Recorder events on a server
+ * JVM. As long as no tracer is set, spans are not even allocated.
+ * 
+ * <p>
+ * Stage spans are scoped: they are started and ended on the same thread, usually with the end in a finally block, and
+ * request spans started in between become their children. Request spans end when the response body is closed, so they
+ * cover the download and carry the number of bytes received. URLs are reduced to templates, with all query values
+ * left out, so that keys passed as query parameters never reach the tracer.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class Trace
+{
+	public interface Tracer
+	{
+		void started(Span span);
+
+		/**
+		 * Called exactly once per span, possibly on a different thread than {@link #started(Span)} for request spans.
+		 */
+		void finished(Span span);
+	}
+
+	public static final class Span
+	{
+		public final String name;
+		public final String network;
+		public final Span parent;
+		public final long startNanos;
+		private final Tracer tracer;
+		private String url = null;
+		private int status = -1;
+		private long bytes = -1;
+		private int items = -1;
+		private long endNanos = 0;
+
+		/** free for use by the tracer, e.g. for the platform event that represents this span */
+		public volatile Object attachment;
+
+		private Span(final Tracer tracer, final String name, final String network, final Span parent)
+		{
+			this.tracer = tracer;
+			this.name = name;
+			this.network = network;
+			this.parent = parent;
+			this.startNanos = System.nanoTime();
+		}
+
+		/**
+		 * @return {@code true} if this span is handed to a tracer, {@code false} if tracing is off
+		 */
+		public boolean isRecording()
+		{
+			return tracer != null;
+		}
+
+		public Span url(final String url)
+		{
+			if (tracer != null)
+				this.url = urlTemplate(url);
+			return this;
+		}
+
+		public Span status(final int status)
+		{
+			if (tracer != null)
+				this.status = status;
+			return this;
+		}
+
+		public Span items(final int items)
+		{
+			if (tracer != null)
+				this.items = items;
+			return this;
+		}
+
+		/**
+		 * Count the bytes read from the given stream, and end the span once the stream is closed.
+		 */
+		public InputStream countBytes(final InputStream is)
+		{
+			if (tracer == null)
+				return is;
+
+			bytes = 0;
+
+			return new FilterInputStream(is)
+			{
+				@Override
+				public int read() throws IOException
+				{
+					final int b = super.read();
+					if (b != -1)
+						bytes++;
+					return b;
+				}
+
+				@Override
+				public int read(final byte[] buffer, final int offset, final int length) throws IOException
+				{
+					final int count = super.read(buffer, offset, length);
+					if (count > 0)
+						bytes += count;
+					return count;
+				}
+
+				@Override
+				public void close() throws IOException
+				{
+					try
+					{
+						super.close();
+					}
+					finally
+					{
+						end();
+					}
+				}
+			};
+		}
+
+		/**
+		 * End the span. Ending it more than once has no effect.
+		 */
+		public void end()
+		{
+			if (tracer == null || endNanos != 0)
+				return;
+
+			endNanos = System.nanoTime();
+
+			if (CURRENT.get() == this)
+			{
+				if (parent != null)
+					CURRENT.set(parent);
+				else
+					CURRENT.remove();
+			}
+
+			tracer.finished(this);
+		}
+
+		/**
+		 * @return URL template of a request span, or {@code null}
+		 */
+		public String url()
+		{
+			return url;
+		}
+
+		/**
+		 * @return HTTP status code of a request span, or {@code -1} if none has been received
+		 */
+		public int status()
+		{
+			return status;
+		}
+
+		/**
+		 * @return number of bytes received by a request span, or {@code -1}
+		 */
+		public long bytes()
+		{
+			return bytes;
+		}
+
+		/**
+		 * @return number of trips, departures, locations or stations produced by a stage span, or {@code -1} if the stage
+		 *         did not complete
+		 */
+		public int items()
+		{
+			return items;
+		}
+
+		public long durationNanos()
+		{
+			return endNanos != 0 ? endNanos - startNanos : -1;
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder builder = new StringBuilder(name);
+			builder.append('[').append(network);
+			if (url != null)
+				builder.append(' ').append(url);
+			if (status != -1)
+				builder.append(" status=").append(status);
+			if (bytes != -1)
+				builder.append(" bytes=").append(bytes);
+			if (items != -1)
+				builder.append(" items=").append(items);
+			if (endNanos != 0)
+				builder.append(' ').append(durationNanos() / 1000).append("us");
+			builder.append(']');
+			return builder.toString();
+		}
+	}
+
+	private static final Span NOOP = new Span(null, "noop", null, null);
+	private static final ThreadLocal<Span> CURRENT = new ThreadLocal<Span>();
+	private static volatile Tracer tracer = null;
+
+	private Trace()
+	{
+	}
+
+	/**
+	 * @param tracer
+	 *            tracer receiving all spans from now on, or {@code null} to turn tracing off
+	 */
+	public static void setTracer(final Tracer tracer)
+	{
+		Trace.tracer = tracer;
+	}
+
+	/**
+	 * Start a stage span on the current thread. It needs to be ended on the same thread.
+	 */
+	public static Span start(final String name, final NetworkId network)
+	{
+		final Tracer tracer = Trace.tracer;
+		if (tracer == null)
+			return NOOP;
+
+		final Span span = new Span(tracer, name, network != null ? network.name() : null, CURRENT.get());
+		CURRENT.set(span);
+		tracer.started(span);
+		return span;
+	}
+
+	/**
+	 * Start a request span as child of the current stage span, if any. It can be ended on any thread.
+	 */
+	public static Span startRequest(final String url)
+	{
+		final Tracer tracer = Trace.tracer;
+		if (tracer == null)
+			return NOOP;
+
+		final Span parent = CURRENT.get();
+		final Span span = new Span(tracer, "request", parent != null ? parent.network : null, parent);
+		span.url(url);
+		tracer.started(span);
+		return span;
+	}
+
+	/**
+	 * Reduce a URL to a template: scheme, host and path are kept, user info is dropped and query values are replaced by
+	 * {@code {}}.
+	 */
+	public static String urlTemplate(final String url)
+	{
+		final int schemeEnd = url.indexOf("://");
+		final int authorityStart = schemeEnd >= 0 ? schemeEnd + 3 : 0;
+		final int queryStart = url.indexOf('?', authorityStart);
+		final int pathEnd = queryStart >= 0 ? queryStart : url.length();
+		int pathStart = url.indexOf('/', authorityStart);
+		if (pathStart < 0 || pathStart > pathEnd)
+			pathStart = pathEnd;
+		final int userInfoEnd = url.lastIndexOf('@', pathStart - 1);
+		final int hostStart = userInfoEnd >= authorityStart ? userInfoEnd + 1 : authorityStart;
+
+		final StringBuilder template = new StringBuilder(url.length());
+		template.append(url, 0, authorityStart);
+		template.append(url, hostStart, pathEnd);
+
+		if (queryStart >= 0)
+		{
+			template.append('?');
+			boolean first = true;
+			for (final String parameter : url.substring(queryStart + 1).split("&"))
+			{
+				if (parameter.length() == 0)
+					continue;
+				if (!first)
+					template.append('&');
+				final int equals = parameter.indexOf('=');
+				template.append(equals >= 0 ? parameter.substring(0, equals) : parameter).append("={}");
+				first = false;
+			}
+		}
+
+		return template.toString();
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Default {@link HttpTransport}, backed by {@link HttpURLConnection}.
+ * 
+ * <p>
+ * Connections are kept alive and reused by the platform's connection cache, as long as response bodies are closed after
+ * use. The number of idle connections kept per host is governed by the {@code http.maxConnections} system property.
+ * Additionally, the number of concurrently open connections per host is limited, so that a burst of requests queues up
+ * locally rather than opening a new TCP (and TLS) connection for each one.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public class UrlConnectionTransport implements HttpTransport
+{
+	public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+	public static final int DEFAULT_READ_TIMEOUT = 15000;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+	/** shared instance, so that per-host limits apply across all providers talking to the same host */
+	public static final UrlConnectionTransport DEFAULT = new UrlConnectionTransport();
+
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final int maxConnectionsPerHost;
+	private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+	public UrlConnectionTransport()
+	{
+		this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONNECTIONS_PER_HOST);
+	}
+
+	/**
+	 * @param maxConnectionsPerHost
+	 *            maximum number of concurrently open connections per host, or {@code 0} for no limit
+	 */
+	public UrlConnectionTransport(final int connectTimeout, final int readTimeout, final int maxConnectionsPerHost)
+	{
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	public Response execute(final Request request) throws IOException
+	{
+		final URL url = request.url;
+		final Semaphore permits = permits(url);
+
+		if (permits != null)
+		{
+			try
+			{
+				permits.acquire();
+			}
+			catch (final InterruptedException x)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for connection to " + url.getHost());
+			}
+		}
+
+		final QueryProbe probe = QueryProbe.current();
+		boolean success = false;
+
+		try
+		{
+			final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+			connection.setDoInput(true);
+			connection.setDoOutput(request.isPost());
+			connection.setConnectTimeout(connectTimeout);
+			connection.setReadTimeout(readTimeout);
+			connection.setUseCaches(false);
+
+			for (final Map.Entry<String, String> header : request.headers.entrySet())
+				connection.addRequestProperty(header.getKey(), header.getValue());
+
+			if (request.isPost())
+				connection.setRequestMethod("POST");
+
+			final long connectStart = System.nanoTime();
+			connection.connect();
+			final long connectNanos = System.nanoTime() - connectStart;
+
+			if (request.isPost())
+			{
+				final OutputStream os = connection.getOutputStream();
+				os.write(request.postBody);
+				os.close();
+			}
+
+			final int responseCode = connection.getResponseCode();
+			if (probe != null)
+				probe.connected(connectNanos, System.nanoTime() - connectStart);
+			final InputStream body = responseCode < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection
+					.getErrorStream();
+
+			final Response response = new Response(connection.getURL(), responseCode, connection.getResponseMessage(),
+					connection.getHeaderFields(), body != null ? new ReleasingInputStream(body, permits) : null);
+
+			// without a body, there is nothing to close, so give back the permit right away
+			success = body != null;
+
+			return response;
+		}
+		finally
+		{
+			if (!success && permits != null)
+				permits.release();
+		}
+	}
+
+	private Semaphore permits(final URL url)
+	{
+		if (maxConnectionsPerHost <= 0)
+			return null;
+
+		final String key = url.getProtocol() + "://" + url.getAuthority();
+
+		final Semaphore permits = hostPermits.get(key);
+		if (permits != null)
+			return permits;
+
+		final Semaphore newPermits = new Semaphore(maxConnectionsPerHost, true);
+		final Semaphore existingPermits = hostPermits.putIfAbsent(key, newPermits);
+		return existingPermits != null ? existingPermits : newPermits;
+	}
+
+	private static final class ReleasingInputStream extends FilterInputStream
+	{
+		private final Semaphore permits;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		public ReleasingInputStream(final InputStream in, final Semaphore permits)
+		{
+			super(in);
+			this.permits = permits;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				// closing lets the platform put the connection back into its keep-alive cache
+				super.close();
+			}
+			finally
+			{
+				if (permits != null && released.compareAndSet(false, true))
+					permits.release();
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Hands out reusable {@link XmlPullParser} instances, so that neither the factory lookup nor the buffers of the parser
+ * are paid for on every request.
+ * 
+ * <p>
+ * Each thread keeps one idle parser. A parser obtained while the thread's parser is in use, for example by a nested
+ * request, is created fresh and simply dropped if the slot is taken when it is recycled. Callers must not touch a
+ * parser after recycling it.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+public final class XmlPullParserPool
+{
+	private static final XmlPullParserFactory FACTORY;
+
+	static
+	{
+		try
+		{
+			FACTORY = XmlPullParserFactory.newInstance(System.getProperty(XmlPullParserFactory.PROPERTY_NAME), null);
+		}
+		catch (final XmlPullParserException x)
+		{
+			throw new RuntimeException(x);
+		}
+	}
+
+	private static final ThreadLocal<XmlPullParser> IDLE = new ThreadLocal<XmlPullParser>();
+
+	private XmlPullParserPool()
+	{
+	}
+
+	/**
+	 * Obtain a parser. Its input needs to be set via {@link XmlPullParser#setInput}, which also resets it.
+	 */
+	public static XmlPullParser obtain() throws XmlPullParserException
+	{
+		final XmlPullParser pp = IDLE.get();
+		if (pp != null)
+		{
+			IDLE.set(null);
+			return pp;
+		}
+
+		synchronized (FACTORY)
+		{
+			return FACTORY.newPullParser();
+		}
+	}
+
+	/**
+	 * Give a parser back for reuse. Accepts {@code null} for convenience in finally blocks.
+	 */
+	public static void recycle(final XmlPullParser pp)
+	{
+		if (pp == null)
+			return;
+
+		try
+		{
+			// drop the reference to the input, so it can be garbage collected
+			pp.setInput(null);
+		}
+		catch (final XmlPullParserException x)
+		{
+			return;
+		}
+
+		if (IDLE.get() == null)
+			IDLE.set(pp);
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.dto.SuggestedLocation;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class AsyncNetworkProviderTest
+{
+	private final ExecutorService executor = AsyncNetworkProvider.newExecutor("test", 1, 1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final SuggestLocationsResult result = new SuggestLocationsResult(null, Collections.<SuggestedLocation> emptyList());
+	private final IOException failure = new IOException("upstream down");
+
+	private final AsyncNetworkProvider provider = new AsyncNetworkProvider(new StubNetworkProvider()
+	{
+		@Override
+		public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+		{
+			if ("block".equals(constraint))
+			{
+				try
+				{
+					release.await();
+				}
+				catch (final InterruptedException x)
+				{
+					throw new RuntimeException(x);
+				}
+			}
+			else if ("fail".equals(constraint))
+			{
+				throw failure;
+			}
+			return result;
+		}
+	}, executor);
+
+	@After
+	public void tearDown()
+	{
+		release.countDown();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void resultReachesCallback() throws Exception
+	{
+		final RecordingCallback callback = new RecordingCallback();
+		final Future<SuggestLocationsResult> future = provider.suggestLocations("gare", callback);
+
+		assertSame(result, callback.await());
+		assertSame(result, future.get());
+	}
+
+	@Test
+	public void errorReachesCallback() throws Exception
+	{
+		final RecordingCallback callback = new RecordingCallback();
+		provider.suggestLocations("fail", callback);
+
+		assertSame(failure, callback.await());
+	}
+
+	@Test
+	public void cancellationReachesCallback() throws Exception
+	{
+		final RecordingCallback callback = new RecordingCallback();
+		final Future<SuggestLocationsResult> future = provider.suggestLocations("block", callback);
+
+		assertTrue(future.cancel(true));
+		assertTrue(callback.await() instanceof CancellationException);
+	}
+
+	@Test
+	public void rejectsWhenSaturated() throws Exception
+	{
+		// one query running, one queued
+		provider.suggestLocations("block", null);
+		provider.suggestLocations("block", null);
+
+		final RecordingCallback callback = new RecordingCallback();
+		try
+		{
+			provider.suggestLocations("gare", callback);
+			fail("expected " + RejectedExecutionException.class.getSimpleName());
+		}
+		catch (final RejectedExecutionException x)
+		{
+			// expected
+		}
+
+		release.countDown();
+		assertEquals(0, callback.outcomes.size());
+	}
+
+	private static final class RecordingCallback implements AsyncNetworkProvider.Callback<SuggestLocationsResult>
+	{
+		private final BlockingQueue<Object> outcomes = new LinkedBlockingQueue<Object>();
+
+		public void onResult(final SuggestLocationsResult result)
+		{
+			outcomes.add(result);
+		}
+
+		public void onError(final Throwable x)
+		{
+			outcomes.add(x);
+		}
+
+		public Object await() throws InterruptedException
+		{
+			final Object outcome = outcomes.poll(5, TimeUnit.SECONDS);
+			if (outcome == null)
+				fail("callback not notified");
+			return outcome;
+		}
+	}
+}
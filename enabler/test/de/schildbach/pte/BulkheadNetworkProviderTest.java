@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.dto.SuggestedLocation;
+import de.schildbach.pte.exception.BulkheadFullException;
+import de.schildbach.pte.util.QueryProbe;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class BulkheadNetworkProviderTest
+{
+	private final Semaphore entered = new Semaphore(0);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private final NetworkProvider delegate = new StubNetworkProvider()
+	{
+		@Override
+		public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+		{
+			entered.release();
+			try
+			{
+				release.await();
+			}
+			catch (final InterruptedException x)
+			{
+				throw new RuntimeException(x);
+			}
+			return new SuggestLocationsResult(null, Collections.<SuggestedLocation> emptyList());
+		}
+	};
+
+	@After
+	public void tearDown() throws InterruptedException
+	{
+		release.countDown();
+		for (final Thread thread : threads)
+			thread.join(5000);
+	}
+
+	@Test
+	public void rejectsWhenQueueIsFull() throws Exception
+	{
+		final BulkheadNetworkProvider provider = new BulkheadNetworkProvider(delegate, 2, 1, 5000);
+
+		startQuery(provider);
+		startQuery(provider);
+		assertTrue(entered.tryAcquire(2, 5, TimeUnit.SECONDS));
+		assertEquals(2, provider.inFlight());
+
+		startQuery(provider);
+		awaitQueued(provider, 1);
+
+		try
+		{
+			provider.suggestLocations("gare");
+			fail("expected " + BulkheadFullException.class.getSimpleName());
+		}
+		catch (final BulkheadFullException x)
+		{
+			assertEquals(NetworkId.RT, x.getNetwork());
+		}
+		assertEquals(1, provider.rejectedCount());
+		assertEquals(1, provider.queued());
+
+		release.countDown();
+		for (final Thread thread : threads)
+			thread.join(5000);
+
+		// the queued query ran once a permit became free
+		assertEquals(1, entered.availablePermits());
+		assertEquals(0, provider.queued());
+		assertEquals(0, provider.inFlight());
+		assertEquals(1, provider.rejectedCount());
+	}
+
+	@Test
+	public void rejectsWhenWaitTimesOut() throws Exception
+	{
+		final BulkheadNetworkProvider provider = new BulkheadNetworkProvider(delegate, 1, 1, 100);
+
+		startQuery(provider);
+		assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+
+		final QueryProbe probe = QueryProbe.start();
+		try
+		{
+			provider.suggestLocations("gare");
+			fail("expected " + BulkheadFullException.class.getSimpleName());
+		}
+		catch (final BulkheadFullException x)
+		{
+			// expected
+		}
+		finally
+		{
+			probe.stop();
+		}
+
+		assertTrue(probe.waitNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(1, provider.rejectedCount());
+		assertEquals(0, provider.queued());
+		assertEquals(1, provider.inFlight());
+	}
+
+	@Test
+	public void recordsWaitOfAdmittedQuery() throws Exception
+	{
+		final BulkheadNetworkProvider provider = new BulkheadNetworkProvider(delegate, 1, 1, 5000);
+
+		startQuery(provider);
+		assertTrue(entered.tryAcquire(5, TimeUnit.SECONDS));
+
+		final Thread releaser = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					awaitQueued(provider, 1);
+					Thread.sleep(50);
+				}
+				catch (final InterruptedException x)
+				{
+					// release anyway
+				}
+				release.countDown();
+			}
+		};
+		threads.add(releaser);
+		releaser.start();
+
+		final QueryProbe probe = QueryProbe.start();
+		try
+		{
+			provider.suggestLocations("gare");
+		}
+		finally
+		{
+			probe.stop();
+		}
+
+		assertTrue(probe.waitNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(0, provider.rejectedCount());
+		assertEquals(0, provider.queued());
+	}
+
+	@Test
+	public void doesNotRecordWaitWithFreePermit() throws Exception
+	{
+		final BulkheadNetworkProvider provider = new BulkheadNetworkProvider(delegate, 1, 0, 0);
+		release.countDown();
+
+		final QueryProbe probe = QueryProbe.start();
+		try
+		{
+			provider.suggestLocations("gare");
+		}
+		finally
+		{
+			probe.stop();
+		}
+
+		assertEquals(0, probe.waitNanos());
+		assertEquals(0, provider.inFlight());
+	}
+
+	private void startQuery(final BulkheadNetworkProvider provider)
+	{
+		final Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					provider.suggestLocations("gare");
+				}
+				catch (final IOException x)
+				{
+					throw new RuntimeException(x);
+				}
+			}
+		};
+		threads.add(thread);
+		thread.start();
+	}
+
+	private static void awaitQueued(final BulkheadNetworkProvider provider, final int queued) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (provider.queued() < queued && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		assertEquals(queued, provider.queued());
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.schildbach.pte.CachingNetworkProvider.Operation;
+import de.schildbach.pte.CachingNetworkProvider.Policy;
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.LocationType;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.dto.SuggestedLocation;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class CachingNetworkProviderTest
+{
+	private static final long MINUTE_MS = 60 * 1000;
+	private static final Location STATION = new Location(LocationType.STATION, "8000001");
+
+	private int suggestCalls = 0;
+	private int nearbyCalls = 0;
+	private int departuresCalls = 0;
+	private int areaCalls = 0;
+	private boolean serviceDown = false;
+
+	private final NetworkProvider delegate = new StubNetworkProvider()
+	{
+		@Override
+		public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+		{
+			suggestCalls++;
+			if (serviceDown)
+				return new SuggestLocationsResult(null, SuggestLocationsResult.Status.SERVICE_DOWN);
+			return new SuggestLocationsResult(null, Collections.<SuggestedLocation> emptyList());
+		}
+
+		@Override
+		public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations)
+				throws IOException
+		{
+			nearbyCalls++;
+			if (serviceDown)
+				return new NearbyStationsResult(null, NearbyStationsResult.Status.SERVICE_DOWN);
+			return new NearbyStationsResult(null, Collections.<Location> emptyList());
+		}
+
+		@Override
+		public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+				throws IOException
+		{
+			departuresCalls++;
+			if (serviceDown)
+				return new QueryDeparturesResult(null, QueryDeparturesResult.Status.SERVICE_DOWN);
+			return new QueryDeparturesResult(null);
+		}
+
+		@Override
+		public Point[] getArea() throws IOException
+		{
+			areaCalls++;
+			return new Point[] { new Point(1, 2), new Point(3, 4) };
+		}
+	};
+
+	@Test
+	public void hitsAndMisses() throws Exception
+	{
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate);
+
+		final SuggestLocationsResult result = provider.suggestLocations("gare");
+		assertSame(result, provider.suggestLocations("gare"));
+		assertEquals(1, suggestCalls);
+
+		provider.suggestLocations("bahnhof");
+		assertEquals(2, suggestCalls);
+	}
+
+	@Test
+	public void operationsHaveSeparateCaches() throws Exception
+	{
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate);
+
+		provider.suggestLocations("gare");
+		provider.queryNearbyStations(STATION, 1000, 10);
+		provider.queryNearbyStations(STATION, 1000, 10);
+		provider.queryDepartures("8000001", new Date(), 10, false);
+
+		assertEquals(1, suggestCalls);
+		assertEquals(1, nearbyCalls);
+		assertEquals(1, departuresCalls);
+		assertEquals(1, provider.cache(Operation.SUGGEST_LOCATIONS).size());
+		assertEquals(1, provider.cache(Operation.NEARBY_STATIONS).size());
+		assertEquals(1, provider.cache(Operation.DEPARTURES).size());
+		assertEquals(0, provider.cache(Operation.AREA).size());
+
+		provider.clear();
+		provider.suggestLocations("gare");
+		assertEquals(2, suggestCalls);
+	}
+
+	@Test
+	public void serviceDownIsNotCached() throws Exception
+	{
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate);
+		serviceDown = true;
+
+		provider.suggestLocations("gare");
+		provider.suggestLocations("gare");
+		provider.queryNearbyStations(STATION, 1000, 10);
+		provider.queryNearbyStations(STATION, 1000, 10);
+		provider.queryDepartures("8000001", new Date(), 10, false);
+		provider.queryDepartures("8000001", new Date(), 10, false);
+
+		assertEquals(2, suggestCalls);
+		assertEquals(2, nearbyCalls);
+		assertEquals(2, departuresCalls);
+
+		serviceDown = false;
+		provider.suggestLocations("gare");
+		provider.suggestLocations("gare");
+		assertEquals(3, suggestCalls);
+	}
+
+	@Test
+	public void expires() throws Exception
+	{
+		final Map<Operation, Policy> policies = new EnumMap<Operation, Policy>(Operation.class);
+		policies.put(Operation.SUGGEST_LOCATIONS, new Policy(200, 1024 * 1024));
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate, policies);
+
+		provider.suggestLocations("gare");
+		provider.suggestLocations("gare");
+		assertEquals(1, suggestCalls);
+
+		Thread.sleep(300);
+		provider.suggestLocations("gare");
+		assertEquals(2, suggestCalls);
+	}
+
+	@Test
+	public void departuresAreBucketedByTimeToLive() throws Exception
+	{
+		final Map<Operation, Policy> policies = new EnumMap<Operation, Policy>(Operation.class);
+		policies.put(Operation.DEPARTURES, new Policy(MINUTE_MS, 1024 * 1024));
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate, policies);
+		final long bucketStart = (System.currentTimeMillis() / MINUTE_MS + 10) * MINUTE_MS;
+
+		provider.queryDepartures("8000001", new Date(bucketStart), 10, false);
+		provider.queryDepartures("8000001", new Date(bucketStart + MINUTE_MS - 1), 10, false);
+		assertEquals(1, departuresCalls);
+
+		provider.queryDepartures("8000001", new Date(bucketStart + MINUTE_MS), 10, false);
+		assertEquals(2, departuresCalls);
+	}
+
+	@Test
+	public void areaIsCopiedOnReturn() throws Exception
+	{
+		final CachingNetworkProvider provider = new CachingNetworkProvider(delegate);
+
+		final Point[] area = provider.getArea();
+		area[0] = null;
+
+		final Point[] cached = provider.getArea();
+		assertEquals(new Point(1, 2), cached[0]);
+		cached[1] = null;
+
+		assertEquals(new Point(3, 4), provider.getArea()[1]);
+		assertEquals(1, areaCalls);
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.dto.SuggestedLocation;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class CoalescingNetworkProviderTest
+{
+	private static final int CALLERS = 8;
+
+	private final CountDownLatch entered = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final AtomicInteger calls = new AtomicInteger();
+	private volatile IOException failure = null;
+
+	private final NetworkProvider delegate = new StubNetworkProvider()
+	{
+		@Override
+		public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+		{
+			calls.incrementAndGet();
+			entered.countDown();
+			try
+			{
+				release.await();
+			}
+			catch (final InterruptedException x)
+			{
+				throw new RuntimeException(x);
+			}
+
+			if (failure != null)
+				throw failure;
+			return new SuggestLocationsResult(null, Collections.<SuggestedLocation> emptyList());
+		}
+	};
+	private final CoalescingNetworkProvider provider = new CoalescingNetworkProvider(delegate);
+
+	@Test
+	public void concurrentIdenticalQueriesShareOneRequest() throws Exception
+	{
+		final List<Caller> callers = startCallers();
+		release.countDown();
+
+		final Object result = callers.get(0).outcome();
+		for (final Caller caller : callers)
+			assertSame(result, caller.outcome());
+
+		assertEquals(1, calls.get());
+		assertEquals(CALLERS, provider.requestCount());
+		assertEquals(CALLERS - 1, provider.coalescedCount());
+		assertEquals(0, provider.inFlightCount());
+	}
+
+	@Test
+	public void failingQueryFailsAllWaiters() throws Exception
+	{
+		failure = new IOException("upstream down");
+
+		final List<Caller> callers = startCallers();
+		release.countDown();
+
+		for (final Caller caller : callers)
+			assertSame(failure, caller.outcome());
+
+		assertEquals(1, calls.get());
+		assertEquals(0, provider.inFlightCount());
+
+		// nothing of the failure is kept
+		failure = null;
+		assertTrue(provider.suggestLocations("gare") instanceof SuggestLocationsResult);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void departureKeysAreBucketed()
+	{
+		final long bucketMs = 60 * 1000;
+		final Date time = new Date(bucketMs * 1000);
+
+		assertEquals(QueryKeys.departures(NetworkId.RT, "1", time, 10, false, bucketMs),
+				QueryKeys.departures(NetworkId.RT, "1", new Date(time.getTime() + bucketMs - 1), 10, false, bucketMs));
+		assertFalse(QueryKeys.departures(NetworkId.RT, "1", time, 10, false, bucketMs).equals(
+				QueryKeys.departures(NetworkId.RT, "1", new Date(time.getTime() + bucketMs), 10, false, bucketMs)));
+	}
+
+	@Test
+	public void departureKeysWithoutTimeNeverMatchExplicitTime()
+	{
+		final long bucketMs = 60 * 1000;
+		final String nowKey = QueryKeys.departures(NetworkId.RT, "1", null, 10, false, bucketMs);
+
+		for (long offset = -bucketMs; offset <= bucketMs; offset += bucketMs)
+		{
+			final Date time = new Date(System.currentTimeMillis() + offset);
+			assertFalse(nowKey.equals(QueryKeys.departures(NetworkId.RT, "1", time, 10, false, bucketMs)));
+		}
+	}
+
+	private List<Caller> startCallers() throws InterruptedException
+	{
+		final List<Caller> callers = new ArrayList<Caller>(CALLERS);
+
+		final Caller leader = new Caller();
+		callers.add(leader);
+		leader.start();
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+		for (int i = 1; i < CALLERS; i++)
+		{
+			final Caller caller = new Caller();
+			callers.add(caller);
+			caller.start();
+		}
+
+		// wait for all followers to join the request in flight
+		final long deadline = System.currentTimeMillis() + 5000;
+		while (provider.coalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		assertEquals(CALLERS - 1, provider.coalescedCount());
+
+		return callers;
+	}
+
+	private final class Caller extends Thread
+	{
+		private volatile Object outcome;
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				outcome = provider.suggestLocations("gare");
+			}
+			catch (final Exception x)
+			{
+				outcome = x;
+			}
+		}
+
+		public Object outcome() throws InterruptedException
+		{
+			join(5000);
+			assertFalse(isAlive());
+			return outcome;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.LocationType;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.Stop;
+import de.schildbach.pte.dto.Trip;
+import de.schildbach.pte.util.HttpTransport;
+
+/**
+ * Decodes synthetic binary trip responses for a normal service day and for the days daylight saving time starts and
+ * ends. Expected values are those of the original, {@link java.util.GregorianCalendar} based decoder.
+ * 
+ * @author Andreas Schildbach
+ */
+public class HafasBinaryTripsTest
+{
+	@Test
+	public void normalDay() throws Exception
+	{
+		final QueryTripsResult result = query("hafas-query-trips.bin");
+
+		assertEquals(QueryTripsResult.Status.OK, result.status);
+		assertEquals("[C-0, C-1, C-2, C-3, C-4, C-5, C-7, C-8, C-9, C-10, C-11, C-12]", ids(result.trips).toString());
+
+		final Trip trip = result.trips.get(0);
+		assertEquals("Berlin Hbf", trip.from.name);
+		assertEquals("Musterstraße 5, München", trip.to.name);
+		assertEquals(LocationType.ADDRESS, trip.to.type);
+		assertEquals(4, trip.legs.size());
+		assertEquals("2015-06-10 00:05 +0200", format(trip.getFirstDepartureTime()));
+		assertEquals("2015-06-10 01:50 +0200", format(trip.getLastArrivalTime()));
+
+		final Trip.Public leg = (Trip.Public) trip.legs.get(2);
+		assertEquals("?ICE500", leg.line.label);
+		assertEquals("Zürich, HB", leg.destination.name);
+		assertEquals("Ersatzverkehr & Umleitung", leg.message);
+		assertEquals("7", leg.departureStop.plannedDeparturePosition.name);
+		assertEquals("8", leg.departureStop.predictedDeparturePosition.name);
+		assertEquals("2015-06-10 00:15 +0200", format(leg.departureStop.plannedDepartureTime));
+		assertEquals("2015-06-10 00:16 +0200", format(leg.departureStop.predictedDepartureTime));
+		assertEquals("2015-06-10 02:15 +0200", format(leg.arrivalStop.plannedArrivalTime));
+		assertEquals("2015-06-10 02:19 +0200", format(leg.arrivalStop.predictedArrivalTime));
+		assertEquals(3, leg.intermediateStops.size());
+		final Stop stop = leg.intermediateStops.get(0);
+		assertEquals("2015-06-10 00:20 +0200", format(stop.plannedArrivalTime));
+		assertEquals("2015-06-10 00:22 +0200", format(stop.plannedDepartureTime));
+
+		// other service day
+		assertEquals("2015-06-20 03:05 +0200", format(result.trips.get(1).getFirstDepartureTime()));
+		// next day
+		assertEquals("2015-06-11 00:05 +0200", format(result.trips.get(7).getFirstDepartureTime()));
+	}
+
+	@Test
+	public void daylightSavingTimeStarts() throws Exception
+	{
+		final QueryTripsResult result = query("hafas-query-trips-dst-start.bin");
+
+		assertEquals(12, result.trips.size());
+
+		final Trip.Public leg = (Trip.Public) result.trips.get(0).legs.get(2);
+		assertEquals("2015-03-29 00:15 +0100", format(leg.departureStop.plannedDepartureTime));
+		// 02:15 doesn't exist on that day
+		assertEquals("2015-03-29 03:15 +0200", format(leg.arrivalStop.plannedArrivalTime));
+		assertEquals("2015-03-29 03:19 +0200", format(leg.arrivalStop.predictedArrivalTime));
+		assertEquals("2015-03-29 06:05 +0200", format(result.trips.get(2).getFirstDepartureTime()));
+		assertEquals("2015-04-08 03:05 +0200", format(result.trips.get(1).getFirstDepartureTime()));
+	}
+
+	@Test
+	public void daylightSavingTimeEnds() throws Exception
+	{
+		final QueryTripsResult result = query("hafas-query-trips-dst-end.bin");
+
+		assertEquals(12, result.trips.size());
+
+		final Trip.Public leg = (Trip.Public) result.trips.get(0).legs.get(2);
+		assertEquals("2015-10-25 00:15 +0200", format(leg.departureStop.plannedDepartureTime));
+		// 02:15 exists twice on that day
+		assertEquals("2015-10-25 02:15 +0100", format(leg.arrivalStop.plannedArrivalTime));
+		assertEquals("2015-10-25 02:19 +0100", format(leg.arrivalStop.predictedArrivalTime));
+		assertEquals("2015-10-25 06:05 +0100", format(result.trips.get(2).getFirstDepartureTime()));
+		assertEquals("2015-11-04 03:05 +0100", format(result.trips.get(1).getFirstDepartureTime()));
+	}
+
+	private static QueryTripsResult query(final String fixture) throws IOException
+	{
+		final byte[] response = read(fixture);
+		final RtProvider provider = new RtProvider();
+		provider.setHttpTransport(new HttpTransport()
+		{
+			public Response execute(final Request request)
+			{
+				return new Response(request.url, 200, "OK", new HashMap<String, List<String>>(), new ByteArrayInputStream(response));
+			}
+		});
+
+		return provider.queryTrips(new Location(LocationType.STATION, "8000001"), null, new Location(LocationType.STATION, "8000002"),
+				new Date(1427580000000L), true, null, null, null, null);
+	}
+
+	private static byte[] read(final String fixture) throws IOException
+	{
+		final InputStream is = HafasBinaryTripsTest.class.getResourceAsStream("fixtures/" + fixture);
+		try
+		{
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			final byte[] buf = new byte[4096];
+			int read;
+			while ((read = is.read(buf)) != -1)
+				os.write(buf, 0, read);
+			return os.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	private static List<String> ids(final List<Trip> trips)
+	{
+		final List<String> ids = new ArrayList<String>(trips.size());
+		for (final Trip trip : trips)
+			ids.add(trip.getId());
+		return ids;
+	}
+
+	private static String format(final Date time)
+	{
+		final DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm Z", Locale.ENGLISH);
+		format.setTimeZone(TimeZone.getTimeZone("Europe/Berlin"));
+		return format.format(time);
+	}
+}
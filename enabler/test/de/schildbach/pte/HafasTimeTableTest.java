@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Compares {@link AbstractHafasProvider.TimeTable} with the {@link GregorianCalendar} computation it replaces, for
+ * every minute of two days following the result date.
+ * 
+ * @author Andreas Schildbach
+ */
+public class HafasTimeTableTest
+{
+	private static final TimeZone CET = TimeZone.getTimeZone("CET");
+
+	@Test
+	public void normalDay()
+	{
+		assertSameAsCalendar(12945); // 2015-06-10
+	}
+
+	@Test
+	public void daylightSavingTimeStarts()
+	{
+		assertSameAsCalendar(12872); // 2015-03-29, last Sunday of March
+	}
+
+	@Test
+	public void daylightSavingTimeEnds()
+	{
+		assertSameAsCalendar(13082); // 2015-10-25, last Sunday of October
+	}
+
+	@Test
+	public void dayBeforeDaylightSavingTimeStarts()
+	{
+		assertSameAsCalendar(12871); // 2015-03-28, transition at day offset 1
+	}
+
+	@Test
+	public void unknownTime()
+	{
+		assertEquals(0, new AbstractHafasProvider.TimeTable(CET, 12945).time(0xffff, 0));
+	}
+
+	private static void assertSameAsCalendar(final int days)
+	{
+		final AbstractHafasProvider.TimeTable timeTable = new AbstractHafasProvider.TimeTable(CET, days);
+		final long baseDate = date(days);
+
+		for (int dayOffset = 0; dayOffset < 3; dayOffset++)
+			for (int hours = 0; hours < 48; hours++)
+				for (int minutes = 0; minutes < 60; minutes++)
+				{
+					final int value = hours * 100 + minutes;
+					assertEquals("day offset " + dayOffset + ", time " + value, calendarTime(value, baseDate, dayOffset), timeTable.time(value,
+							dayOffset));
+				}
+	}
+
+	private static long date(final int days)
+	{
+		final Calendar date = new GregorianCalendar(CET);
+		date.clear();
+		date.set(Calendar.YEAR, 1980);
+		date.set(Calendar.DAY_OF_YEAR, days);
+		return date.getTimeInMillis();
+	}
+
+	private static long calendarTime(final int value, final long baseDate, final int dayOffset)
+	{
+		final Calendar time = new GregorianCalendar(CET);
+		time.setTimeInMillis(baseDate);
+		time.add(Calendar.DAY_OF_YEAR, dayOffset);
+		time.set(Calendar.HOUR, value / 100);
+		time.set(Calendar.MINUTE, value % 100);
+		return time.getTimeInMillis();
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.schildbach.pte.MetricsNetworkProvider.Operation;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.util.HttpTransport;
+import de.schildbach.pte.util.QueryProbe;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class MetricsNetworkProviderTest
+{
+	private static final long FETCH_MS = 50;
+	private static final String RESPONSE = "{\"StatusCode\":200,\"Data\":[{\"Id\":\"5000\",\"PointType\":4,\"Name\":\"Hauptbahnhof\","
+			+ "\"Latitude\":43.29,\"Longitude\":5.37,\"Locality\":{\"Id\":\"100\",\"Name\":\"Marseille\",\"InseeCode\":\"13000\"}}]}";
+
+	private final List<String> records = new ArrayList<String>();
+	private QueryProbe recordedProbe = null;
+	private boolean recorderFails = false;
+
+	private final MetricsNetworkProvider.Recorder recorder = new MetricsNetworkProvider.Recorder()
+	{
+		public void record(final NetworkId network, final Operation operation, final QueryProbe probe, final int cardinality,
+				final String outcome)
+		{
+			records.add(network + " " + operation + " " + cardinality + " " + outcome);
+			recordedProbe = probe;
+			if (recorderFails)
+				throw new IllegalStateException("recorder failed");
+		}
+	};
+
+	@Test
+	public void splitsFetchAndParseTime() throws Exception
+	{
+		final MetricsNetworkProvider provider = new MetricsNetworkProvider(provider(false), recorder);
+
+		final SuggestLocationsResult result = provider.suggestLocations("gare");
+
+		assertEquals(SuggestLocationsResult.Status.OK, result.status);
+		assertEquals("[PACA SUGGEST_LOCATIONS 1 OK]", records.toString());
+		assertEquals(1, recordedProbe.requests());
+		assertTrue(recordedProbe.fetchNanos() >= TimeUnit.MILLISECONDS.toNanos(FETCH_MS));
+		assertTrue(recordedProbe.parseNanos() >= 0);
+		assertEquals(recordedProbe.elapsedNanos(), recordedProbe.fetchNanos() + recordedProbe.waitNanos() + recordedProbe.parseNanos());
+		assertEquals(RESPONSE.length(), recordedProbe.uncompressedBytes());
+		assertNull(QueryProbe.current());
+	}
+
+	@Test
+	public void recordsFailureOnce() throws Exception
+	{
+		final MetricsNetworkProvider provider = new MetricsNetworkProvider(provider(true), recorder);
+
+		try
+		{
+			provider.suggestLocations("gare");
+			fail("expected IOException");
+		}
+		catch (final IOException x)
+		{
+			// expected
+		}
+
+		assertEquals("[PACA SUGGEST_LOCATIONS 0 IOException]", records.toString());
+		assertEquals(1, recordedProbe.requests());
+		assertNull(QueryProbe.current());
+	}
+
+	@Test
+	public void failingRecorderDoesNotRecordTwice() throws Exception
+	{
+		final MetricsNetworkProvider provider = new MetricsNetworkProvider(provider(false), recorder);
+		recorderFails = true;
+
+		try
+		{
+			provider.suggestLocations("gare");
+			fail("expected IllegalStateException");
+		}
+		catch (final IllegalStateException x)
+		{
+			// expected
+		}
+
+		assertEquals("[PACA SUGGEST_LOCATIONS 1 OK]", records.toString());
+		assertNull(QueryProbe.current());
+	}
+
+	private static NetworkProvider provider(final boolean fail)
+	{
+		final PacaProvider provider = new PacaProvider();
+		provider.setHttpTransport(new HttpTransport()
+		{
+			public Response execute(final Request request) throws IOException
+			{
+				try
+				{
+					Thread.sleep(FETCH_MS);
+				}
+				catch (final InterruptedException x)
+				{
+					throw new RuntimeException(x);
+				}
+
+				if (fail)
+					throw new IOException("connection refused");
+
+				final byte[] body = RESPONSE.getBytes("UTF-8");
+				return new Response(request.url, 200, "OK", new HashMap<String, List<String>>(), new ByteArrayInputStream(body));
+			}
+		});
+		return provider;
+	}
+}
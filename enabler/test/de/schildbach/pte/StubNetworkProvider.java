@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.Point;
+import de.schildbach.pte.dto.Product;
+import de.schildbach.pte.dto.QueryDeparturesResult;
+import de.schildbach.pte.dto.QueryTripsContext;
+import de.schildbach.pte.dto.QueryTripsResult;
+import de.schildbach.pte.dto.Style;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+
+/**
+ * Provider for testing decorators. Every query fails unless overridden.
+ * 
+ * @author Andreas Schildbach
+ */
+public class StubNetworkProvider implements NetworkProvider
+{
+	public NetworkId id()
+	{
+		return NetworkId.RT;
+	}
+
+	public boolean hasCapabilities(final Capability... capabilities)
+	{
+		return false;
+	}
+
+	public NearbyStationsResult queryNearbyStations(final Location location, final int maxDistance, final int maxStations) throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public QueryDeparturesResult queryDepartures(final String stationId, final Date time, final int maxDepartures, final boolean equivs)
+			throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public SuggestLocationsResult suggestLocations(final CharSequence constraint) throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public Collection<Product> defaultProducts()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public QueryTripsResult queryTrips(final Location from, final Location via, final Location to, final Date date, final boolean dep,
+			final Collection<Product> products, final WalkSpeed walkSpeed, final Accessibility accessibility, final Set<Option> options)
+			throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public QueryTripsResult queryMoreTrips(final QueryTripsContext context, final boolean later) throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public Style lineStyle(final String network, final String line)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public Point[] getArea() throws IOException
+	{
+		throw new UnsupportedOperationException();
+	}
+}
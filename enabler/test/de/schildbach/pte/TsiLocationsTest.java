@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.schildbach.pte.dto.Location;
+import de.schildbach.pte.dto.LocationType;
+import de.schildbach.pte.dto.NearbyStationsResult;
+import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.util.HttpTransport;
+
+/**
+ * Reads TSI location responses with the status before and after the data, and with data that is not made of locations
+ * because of an error status.
+ * 
+ * @author Andreas Schildbach
+ */
+public class TsiLocationsTest
+{
+	private static final String STATION = "{\"Id\":\"5000\",\"PointType\":4,\"Name\":\"Hauptbahnhof\",\"Latitude\":43.29,\"Longitude\":5.37,"
+			+ "\"Locality\":{\"Id\":\"100\",\"Name\":\"Marseille\",\"InseeCode\":\"13000\"}}";
+	private static final Location MARSEILLE = new Location(LocationType.ADDRESS, null, 43290000, 5370000);
+
+	@Test
+	public void statusBeforeData() throws Exception
+	{
+		final SuggestLocationsResult result = provider("{\"StatusCode\":200,\"Data\":[" + STATION + "," + STATION + "]}").suggestLocations(
+				"gare");
+
+		assertEquals(SuggestLocationsResult.Status.OK, result.status);
+		assertEquals(2, result.getLocations().size());
+		assertEquals("5000", result.getLocations().get(0).id);
+		assertEquals("Hauptbahnhof", result.getLocations().get(0).name);
+	}
+
+	@Test
+	public void statusAfterData() throws Exception
+	{
+		final NearbyStationsResult result = provider("{\"Data\":[" + STATION + "],\"StatusCode\":200}").queryNearbyStations(MARSEILLE,
+				1000, 50);
+
+		assertEquals(NearbyStationsResult.Status.OK, result.status);
+		assertEquals(1, result.stations.size());
+		assertEquals("5000", result.stations.get(0).id);
+	}
+
+	@Test
+	public void errorStatusBeforeData() throws Exception
+	{
+		final String response = "{\"StatusCode\":500,\"Data\":[{\"bogus\":1}]}";
+
+		assertEquals(SuggestLocationsResult.Status.SERVICE_DOWN, provider(response).suggestLocations("gare").status);
+	}
+
+	@Test
+	public void errorStatusAfterData() throws Exception
+	{
+		final String response = "{\"Data\":[{\"bogus\":1}],\"StatusCode\":300}";
+
+		assertEquals(NearbyStationsResult.Status.INVALID_STATION, provider(response).queryNearbyStations(MARSEILLE, 1000, 50).status);
+	}
+
+	private static PacaProvider provider(final String response) throws UnsupportedEncodingException
+	{
+		final byte[] body = response.getBytes("UTF-8");
+		final PacaProvider provider = new PacaProvider();
+		provider.setHttpTransport(new HttpTransport()
+		{
+			public Response execute(final Request request) throws IOException
+			{
+				return new Response(request.url, 200, "OK", new HashMap<String, List<String>>(), new ByteArrayInputStream(body));
+			}
+		});
+		return provider;
+	}
+}
@@ -19,10 +19,12 @@ package de.schildbach.pte.live;
 
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Date;
 
+import de.schildbach.pte.AbstractNetworkProvider;
 import de.schildbach.pte.NetworkProvider;
 import de.schildbach.pte.NetworkProvider.Accessibility;
 import de.schildbach.pte.NetworkProvider.WalkSpeed;
@@ -33,6 +35,9 @@ import de.schildbach.pte.dto.QueryDeparturesResult;
 import de.schildbach.pte.dto.QueryTripsContext;
 import de.schildbach.pte.dto.QueryTripsResult;
 import de.schildbach.pte.dto.SuggestLocationsResult;
+import de.schildbach.pte.util.RecordingTransport;
+import de.schildbach.pte.util.ReplayTransport;
+import de.schildbach.pte.util.UrlConnectionTransport;
 
 /**
  * @author Andreas Schildbach
@@ -41,9 +46,38 @@ public abstract class AbstractProviderLiveTest
 {
 	protected final NetworkProvider provider;
 
+	/**
+	 * date and time parameters are different on every run, and keys are redacted on recording, so they are not matched on
+	 * replay
+	 */
+	private static final String[] REPLAY_IGNORED_PARAMETERS = { "date", "time", "REQ0JourneyDate", "REQ0JourneyTime", "itdDate", "itdTime",
+			"from_datetime", "datetime", "DepartureTime", "ArrivalTime", "Key" };
+
+	/**
+	 * Run with {@code -Dpte.record=<archive>} to record all traffic to the given archive, or with
+	 * {@code -Dpte.replay=<archive>} to serve responses from it rather than from the network.
+	 */
 	public AbstractProviderLiveTest(final NetworkProvider provider)
 	{
 		this.provider = provider;
+
+		final String record = System.getProperty("pte.record");
+		final String replay = System.getProperty("pte.replay");
+
+		if (provider instanceof AbstractNetworkProvider)
+		{
+			try
+			{
+				if (replay != null)
+					((AbstractNetworkProvider) provider).setHttpTransport(new ReplayTransport(new File(replay), REPLAY_IGNORED_PARAMETERS));
+				else if (record != null)
+					((AbstractNetworkProvider) provider).setHttpTransport(new RecordingTransport(UrlConnectionTransport.DEFAULT, new File(record)));
+			}
+			catch (final IOException x)
+			{
+				throw new RuntimeException(x);
+			}
+		}
 	}
 
 	protected final void print(final NearbyStationsResult result)
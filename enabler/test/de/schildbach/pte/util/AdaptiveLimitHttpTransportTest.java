@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.schildbach.pte.exception.LimitExceededException;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class AdaptiveLimitHttpTransportTest
+{
+	@Test
+	public void rejectsBeyondLimitUntilBodyClosed() throws Exception
+	{
+		final DelayingTransport delegate = new DelayingTransport();
+		final AdaptiveLimitHttpTransport transport = new AdaptiveLimitHttpTransport(delegate, new AdaptiveLimitHttpTransport.Policy(1, 1, 1,
+				20, 2, 0.5));
+
+		final HttpTransport.Response response = transport.execute(get());
+
+		try
+		{
+			transport.execute(get());
+			fail();
+		}
+		catch (final LimitExceededException x)
+		{
+			assertEquals(1, delegate.count);
+		}
+
+		response.close();
+		transport.execute(get()).close();
+		assertEquals(2, delegate.count);
+	}
+
+	@Test
+	public void dropsOnOverload() throws Exception
+	{
+		final DelayingTransport delegate = new DelayingTransport(503, 429, new SocketTimeoutException());
+		final AdaptiveLimitHttpTransport transport = new AdaptiveLimitHttpTransport(delegate, new AdaptiveLimitHttpTransport.Policy(16, 2,
+				16, 20, 2, 0.5));
+
+		transport.execute(get()).close();
+		assertEquals(8, transport.limit(get().url));
+		transport.execute(get()).close();
+		assertEquals(4, transport.limit(get().url));
+
+		try
+		{
+			transport.execute(get());
+			fail();
+		}
+		catch (final SocketTimeoutException x)
+		{
+			assertEquals(2, transport.limit(get().url));
+		}
+	}
+
+	@Test
+	public void growsOnlyWhileUsed() throws Exception
+	{
+		final DelayingTransport delegate = new DelayingTransport();
+		delegate.delayMs = 1;
+		final AdaptiveLimitHttpTransport transport = new AdaptiveLimitHttpTransport(delegate, new AdaptiveLimitHttpTransport.Policy(4, 1, 16,
+				20, 2, 0.5));
+
+		for (int i = 0; i < 20; i++)
+			transport.execute(get()).close();
+		final int idleLimit = transport.limit(get().url);
+		assertTrue(idleLimit <= 4);
+
+		final List<HttpTransport.Response> held = new LinkedList<HttpTransport.Response>();
+		for (int i = 0; i < idleLimit - 1; i++)
+			held.add(transport.execute(get()));
+		for (int i = 0; i < 10; i++)
+			transport.execute(get()).close();
+		assertTrue(transport.limit(get().url) > idleLimit);
+
+		for (final HttpTransport.Response response : held)
+			response.close();
+	}
+
+	@Test
+	public void shrinksWhenLatencyRises() throws Exception
+	{
+		final DelayingTransport delegate = new DelayingTransport();
+		delegate.delayMs = 1;
+		final AdaptiveLimitHttpTransport transport = new AdaptiveLimitHttpTransport(delegate, new AdaptiveLimitHttpTransport.Policy(16, 1,
+				16, 20, 2, 0.5));
+
+		final List<HttpTransport.Response> held = new LinkedList<HttpTransport.Response>();
+		for (int i = 0; i < 10; i++)
+			held.add(transport.execute(get()));
+		for (final HttpTransport.Response response : held)
+			response.close();
+		assertEquals(16, transport.limit(get().url));
+
+		delegate.delayMs = 30;
+		for (int i = 0; i < 10; i++)
+			transport.execute(get()).close();
+		assertTrue(transport.limit(get().url) < 16);
+	}
+
+	private static HttpTransport.Request get() throws IOException
+	{
+		return new HttpTransport.Request(new URL("http://example.com/stboard"), Collections.<String, String> emptyMap(), null);
+	}
+
+	private static final class DelayingTransport implements HttpTransport
+	{
+		private final List<Object> script = new LinkedList<Object>();
+		private volatile long delayMs = 0;
+		private int count = 0;
+
+		/**
+		 * @param script
+		 *            status codes to answer with or exceptions to throw, in order; {@code 200} once exhausted
+		 */
+		public DelayingTransport(final Object... script)
+		{
+			Collections.addAll(this.script, script);
+		}
+
+		public synchronized Response execute(final Request request) throws IOException
+		{
+			count++;
+
+			try
+			{
+				Thread.sleep(delayMs);
+			}
+			catch (final InterruptedException x)
+			{
+				throw new RuntimeException(x);
+			}
+
+			final Object next = script.isEmpty() ? 200 : script.remove(0);
+			if (next instanceof IOException)
+				throw (IOException) next;
+
+			return new Response(request.url, (Integer) next, "", Collections.<String, List<String>> emptyMap(), new ByteArrayInputStream(
+					new byte[0]));
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class HistogramTest
+{
+	@Test
+	public void exactForSmallValues()
+	{
+		final Histogram histogram = new Histogram();
+		for (int i = 1; i <= 10; i++)
+			histogram.record(i);
+
+		assertEquals(10, histogram.count());
+		assertEquals(55, histogram.sum());
+		assertEquals(10, histogram.max());
+		assertEquals(5, histogram.valueAtPercentile(50));
+		assertEquals(9, histogram.valueAtPercentile(90));
+		assertEquals(10, histogram.valueAtPercentile(100));
+	}
+
+	@Test
+	public void boundedRelativeError()
+	{
+		final Histogram histogram = new Histogram();
+		for (long value = 1; value <= 1000000; value++)
+			histogram.record(value);
+
+		for (final double percentile : new double[] { 10, 50, 90, 99, 99.9 })
+		{
+			final long expected = (long) (percentile * 10000);
+			final long actual = histogram.valueAtPercentile(percentile);
+			assertTrue(percentile + ": " + actual, actual >= expected && actual <= expected * 1.04);
+		}
+		assertEquals(1000000, histogram.valueAtPercentile(100));
+	}
+
+	@Test
+	public void clampsOutOfRangeValues()
+	{
+		final Histogram histogram = new Histogram();
+		histogram.record(-1);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.valueAtPercentile(50));
+		assertEquals(Histogram.MAX_VALUE, histogram.max());
+		assertEquals(Histogram.MAX_VALUE, histogram.valueAtPercentile(100));
+	}
+
+	@Test
+	public void empty()
+	{
+		final Histogram histogram = new Histogram();
+
+		assertEquals(0, histogram.count());
+		assertEquals(0, histogram.mean());
+		assertEquals(0, histogram.valueAtPercentile(99));
+	}
+}
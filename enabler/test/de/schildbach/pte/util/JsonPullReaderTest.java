@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class JsonPullReaderTest
+{
+	@Test
+	public void pullTokens() throws Exception
+	{
+		final JsonPullReader reader = new JsonPullReader(new StringReader(" {\"a\": [1, -2.5e1, \"x\\\"\\u00e4\"], \"b\": true, \"c\": null} "));
+		reader.beginObject();
+		assertEquals("a", reader.nextName());
+		reader.beginArray();
+		assertEquals(1, reader.nextInt());
+		assertEquals(JsonPullReader.Token.NUMBER, reader.peek());
+		assertEquals("-2.5e1", reader.nextString());
+		assertEquals("x\"\u00e4", reader.nextString());
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertEquals("b", reader.nextName());
+		assertTrue(reader.nextBoolean());
+		assertEquals("c", reader.nextName());
+		reader.nextNull();
+		reader.endObject();
+		assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+	}
+
+	@Test
+	public void skipValue() throws Exception
+	{
+		final JsonPullReader reader = new JsonPullReader(new StringReader("{\"skip\": {\"x\": [{}, [], \"]}\"]}, \"keep\": 1}"));
+		reader.beginObject();
+		assertEquals("skip", reader.nextName());
+		reader.skipValue();
+		assertEquals("keep", reader.nextName());
+		assertEquals(1, reader.nextInt());
+		reader.endObject();
+	}
+
+	@Test
+	public void nextObjectSkipsNames() throws Exception
+	{
+		final JsonPullReader reader = new JsonPullReader(new StringReader(
+				"{\"id\": \"a\", \"geojson\": {\"coordinates\": [[1, 2]]}, \"sub\": {\"geojson\": [], \"n\": 3000000000}}"));
+		final JSONObject object = reader.nextObject(Collections.singleton("geojson"));
+		assertEquals("a", object.getString("id"));
+		assertFalse(object.has("geojson"));
+		assertFalse(object.getJSONObject("sub").has("geojson"));
+		assertEquals(3000000000L, object.getJSONObject("sub").getLong("n"));
+	}
+
+	@Test(expected = JSONException.class)
+	public void malformed() throws Exception
+	{
+		final JsonPullReader reader = new JsonPullReader(new StringReader("{\"a\" 1}"));
+		reader.nextObject();
+	}
+}
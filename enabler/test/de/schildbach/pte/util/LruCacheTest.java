@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class LruCacheTest
+{
+	private static final LruCache.Weigher<String> LENGTH = new LruCache.Weigher<String>()
+	{
+		public int weigh(final String value)
+		{
+			return value.length();
+		}
+	};
+
+	@Test
+	public void evictsLeastRecentlyUsed()
+	{
+		final LruCache<String, String> cache = new LruCache<String, String>(60000, 10, LENGTH);
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		cache.get("a");
+		cache.put("c", "cccc");
+
+		assertEquals("aaaa", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("cccc", cache.get("c"));
+		assertEquals(8, cache.weight());
+		assertEquals(1, cache.evictionCount());
+		assertEquals(3, cache.hitCount());
+		assertEquals(1, cache.missCount());
+	}
+
+	@Test
+	public void expiresEntries() throws Exception
+	{
+		final LruCache<String, String> cache = new LruCache<String, String>(1, 10, LENGTH);
+		cache.put("a", "aaaa");
+		Thread.sleep(5);
+
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.weight());
+		assertEquals(1, cache.expirationCount());
+	}
+
+	@Test
+	public void skipsOverweightValue()
+	{
+		final LruCache<String, String> cache = new LruCache<String, String>(60000, 3, LENGTH);
+		cache.put("a", "aaaa");
+
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class MultiStringReplaceReaderTest
+{
+	@Test
+	public void replacesAllPatterns() throws Exception
+	{
+		final MultiStringReplaceReader reader = new MultiStringReplaceReader(new StringReader("<b>A & B</b> -> C <> D"));
+		reader.replace(" & ", " &amp; ");
+		reader.replace("<b>", " ");
+		reader.replace("</b>", " ");
+		reader.replace(" ->", " &#x2192;");
+		reader.replace(" <> ", " &#x2194; ");
+
+		assertEquals(" A &amp; B  &#x2192; C &#x2194; D", readFully(reader, 4096));
+	}
+
+	@Test
+	public void prefersLongestPattern() throws Exception
+	{
+		final MultiStringReplaceReader reader = new MultiStringReplaceReader(new StringReader("<br /><b>"));
+		reader.replace("<b", "x");
+		reader.replace("<br />", "y");
+		reader.replace("<b>", "z");
+
+		assertEquals("yz", readFully(reader, 4096));
+	}
+
+	@Test
+	public void matchesAcrossBufferBoundaries() throws Exception
+	{
+		final StringBuilder input = new StringBuilder();
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+		{
+			input.append("Park&Ride ").append(i).append(' ');
+			expected.append("Park&amp;Ride ").append(i).append(' ');
+		}
+
+		// deliver input in tiny chunks
+		final Reader slow = new StringReader(input.toString())
+		{
+			@Override
+			public int read(final char[] cbuf, final int off, final int len) throws IOException
+			{
+				return super.read(cbuf, off, Math.min(len, 3));
+			}
+		};
+		final MultiStringReplaceReader reader = new MultiStringReplaceReader(slow);
+		reader.replace("Park&Ride", "Park&amp;Ride");
+
+		assertEquals(expected.toString(), readFully(reader, 7));
+	}
+
+	@Test
+	public void singleCharReads() throws Exception
+	{
+		final MultiStringReplaceReader reader = new MultiStringReplaceReader(new StringReader("a<u>b"));
+		reader.replace("<u>", "");
+
+		assertEquals('a', reader.read());
+		assertEquals('b', reader.read());
+		assertEquals(-1, reader.read());
+	}
+
+	@Test
+	public void chainedReadersMatchOutputOfPreviousPass() throws Exception
+	{
+		final MultiStringReplaceReader markup = new MultiStringReplaceReader(new StringReader(
+				"dir=\"Foo<br /><- Bar\" x=\"A</b><> B\" y=\"C <><u><- D\""));
+		markup.replace("</b>", " ");
+		markup.replace("<u>", " ");
+		markup.replace("<br />", " ");
+		final MultiStringReplaceReader leftArrows = new MultiStringReplaceReader(markup);
+		leftArrows.replace(" <-", " &#x2190;");
+		final MultiStringReplaceReader leftRightArrows = new MultiStringReplaceReader(leftArrows);
+		leftRightArrows.replace(" <> ", " &#x2194; ");
+
+		assertEquals("dir=\"Foo &#x2190; Bar\" x=\"A &#x2194; B\" y=\"C &#x2194; &#x2190; D\"", readFully(leftRightArrows, 4096));
+	}
+
+	@Test
+	public void passesThroughWithoutPatterns() throws Exception
+	{
+		final MultiStringReplaceReader reader = new MultiStringReplaceReader(new StringReader("<b>A & B</b>"));
+
+		assertEquals("<b>A & B</b>", readFully(reader, 3));
+	}
+
+	private static String readFully(final Reader reader, final int chunkSize) throws IOException
+	{
+		final StringBuilder builder = new StringBuilder();
+		final char[] buf = new char[chunkSize];
+		int read;
+		while ((read = reader.read(buf)) != -1)
+			builder.append(buf, 0, read);
+		return builder.toString();
+	}
+}
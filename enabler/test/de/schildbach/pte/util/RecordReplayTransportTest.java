@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class RecordReplayTransportTest
+{
+	private File archive;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		archive = File.createTempFile("pte-archive", null);
+	}
+
+	@After
+	public void tearDown()
+	{
+		archive.delete();
+	}
+
+	@Test
+	public void roundTrip() throws Exception
+	{
+		final HttpTransport recording = new RecordingTransport(new CountingTransport(), archive);
+		assertEquals("1", read(recording.execute(get("http://example.com/stboard?input=1&date=10.06.15"))));
+		assertEquals("2", read(recording.execute(get("http://example.com/stboard?input=1&date=11.06.15"))));
+		assertEquals("3", read(recording.execute(post("http://example.com/query", "from=1&to=2"))));
+
+		final HttpTransport replay = new ReplayTransport(archive, "date");
+		final HttpTransport.Response response = replay.execute(get("http://example.com/stboard?input=1&date=01.01.16"));
+		assertEquals(200, response.code);
+		assertEquals("gzip", response.contentEncoding());
+		assertEquals(Collections.singletonList("HTTP/1.1 200 OK"), response.headers.get(null));
+		assertEquals("1", read(response));
+		assertEquals("2", read(replay.execute(get("http://example.com/stboard?input=1&date=01.01.16"))));
+		assertEquals("1", read(replay.execute(get("http://example.com/stboard?input=1"))));
+		assertEquals("3", read(replay.execute(post("http://example.com/query", "from=1&to=2"))));
+	}
+
+	@Test(expected = IOException.class)
+	public void notRecorded() throws Exception
+	{
+		new RecordingTransport(new CountingTransport(), archive).execute(get("http://example.com/stboard?input=1"));
+
+		new ReplayTransport(archive).execute(get("http://example.com/stboard?input=2"));
+	}
+
+	@Test
+	public void appendsAcrossRuns() throws Exception
+	{
+		new RecordingTransport(new CountingTransport(), archive).execute(get("http://example.com/a"));
+		new RecordingTransport(new CountingTransport(), archive).execute(get("http://example.com/b"));
+
+		final List<HttpArchive.Exchange> exchanges = HttpArchive.read(archive);
+		assertEquals(2, exchanges.size());
+		assertEquals("http://example.com/b", exchanges.get(1).request.url.toString());
+		assertArrayEquals("1".getBytes(), exchanges.get(1).responseBody);
+	}
+
+	@Test
+	public void leavesOutCredentials() throws Exception
+	{
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		headers.put("Accept", "*/*");
+		headers.put("Authorization", "secret-token");
+		headers.put("cookie", "SID=secret-session");
+		new RecordingTransport(new CountingTransport(), archive).execute(new HttpTransport.Request(new URL("http://example.com/a"), headers,
+				null));
+
+		final HttpTransport.Request recorded = HttpArchive.read(archive).get(0).request;
+		assertEquals(Collections.singletonMap("Accept", "*/*"), recorded.headers);
+
+		final HttpTransport.Request replayed = new HttpTransport.Request(new URL("http://example.com/a"), Collections.singletonMap(
+				"Authorization", "other-token"), null);
+		assertEquals("1", read(new ReplayTransport(archive).execute(replayed)));
+	}
+
+	@Test
+	public void redactsKeyParameters() throws Exception
+	{
+		final HttpTransport recording = new RecordingTransport(new CountingTransport(), archive);
+		final HttpTransport.Response response = recording.execute(get("http://example.com/a?Key=secret&q=1"));
+		assertEquals("http://example.com/a?Key=secret&q=1", response.url.toString());
+
+		final HttpArchive.Exchange recorded = HttpArchive.read(archive).get(0);
+		assertEquals("http://example.com/a?Key=REDACTED&q=1", recorded.request.url.toString());
+		assertEquals("http://example.com/a?Key=REDACTED&q=1", recorded.responseUrl.toString());
+
+		final HttpTransport replay = new ReplayTransport(archive, RecordingTransport.DEFAULT_REDACTED_PARAMETERS);
+		assertEquals("1", read(replay.execute(get("http://example.com/a?Key=other&q=1"))));
+	}
+
+	@Test
+	public void redactsGivenParameters() throws Exception
+	{
+		new RecordingTransport(new CountingTransport(), archive, "token").execute(get("http://example.com/a?Key=1&token=secret"));
+
+		assertEquals("http://example.com/a?Key=1&token=REDACTED", HttpArchive.read(archive).get(0).request.url.toString());
+	}
+
+	private static HttpTransport.Request get(final String url) throws IOException
+	{
+		return new HttpTransport.Request(new URL(url), Collections.singletonMap("Accept", "*/*"), null);
+	}
+
+	private static HttpTransport.Request post(final String url, final String body) throws IOException
+	{
+		return new HttpTransport.Request(new URL(url), Collections.<String, String> emptyMap(), body.getBytes("US-ASCII"));
+	}
+
+	private static String read(final HttpTransport.Response response) throws IOException
+	{
+		final InputStream is = response.body;
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		int b;
+		while ((b = is.read()) != -1)
+			os.write(b);
+		response.close();
+		return os.toString("US-ASCII");
+	}
+
+	private static final class CountingTransport implements HttpTransport
+	{
+		private int count = 0;
+
+		public Response execute(final Request request)
+		{
+			final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+			headers.put(null, Collections.singletonList("HTTP/1.1 200 OK"));
+			headers.put("Content-Encoding", Arrays.asList("gzip"));
+
+			return new Response(request.url, 200, "OK", headers, new ByteArrayInputStream(Integer.toString(++count).getBytes()));
+		}
+	}
+}
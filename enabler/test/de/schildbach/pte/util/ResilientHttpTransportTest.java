@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.schildbach.pte.exception.CircuitOpenException;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class ResilientHttpTransportTest
+{
+	private static final ResilientHttpTransport.Policy POLICY = new ResilientHttpTransport.Policy(2, 1, 2, 0, 3, 50, 100);
+
+	@Test
+	public void retriesUntilSuccess() throws Exception
+	{
+		final ScriptedTransport script = new ScriptedTransport(503, new ConnectException(), 200);
+		final ResilientHttpTransport transport = new ResilientHttpTransport(script, POLICY);
+
+		assertEquals(200, transport.execute(get()).code);
+		assertEquals(3, script.count);
+	}
+
+	@Test
+	public void returnsLastFailedResponse() throws Exception
+	{
+		final ScriptedTransport script = new ScriptedTransport(502, 502, 504, 200);
+		final ResilientHttpTransport transport = new ResilientHttpTransport(script, POLICY);
+
+		assertEquals(504, transport.execute(get()).code);
+		assertEquals(3, script.count);
+	}
+
+	@Test
+	public void doesNotRetryTimeouts() throws Exception
+	{
+		final ScriptedTransport script = new ScriptedTransport(new SocketTimeoutException(), 200);
+		final ResilientHttpTransport transport = new ResilientHttpTransport(script, POLICY);
+
+		try
+		{
+			transport.execute(get());
+			fail();
+		}
+		catch (final SocketTimeoutException x)
+		{
+			assertEquals(1, script.count);
+		}
+	}
+
+	@Test
+	public void retriesAreBudgeted() throws Exception
+	{
+		final ScriptedTransport script = new ScriptedTransport();
+		final ResilientHttpTransport transport = new ResilientHttpTransport(script, new ResilientHttpTransport.Policy(100, 0, 0, 0, 1000,
+				50, 100));
+
+		assertEquals(503, transport.execute(get()).code);
+		assertEquals(11, script.count);
+		assertEquals(503, transport.execute(get()).code);
+		assertEquals(12, script.count);
+	}
+
+	@Test
+	public void opensAndRecovers() throws Exception
+	{
+		final ScriptedTransport script = new ScriptedTransport(503, 503, 503, 503, 200);
+		final ResilientHttpTransport transport = new ResilientHttpTransport(script, POLICY);
+
+		assertEquals(503, transport.execute(get()).code);
+		assertEquals(ResilientHttpTransport.State.OPEN, transport.state(get().url));
+
+		try
+		{
+			transport.execute(get());
+			fail();
+		}
+		catch (final CircuitOpenException x)
+		{
+			assertEquals(3, script.count);
+		}
+
+		Thread.sleep(60);
+
+		// failed probe opens the breaker again
+		assertEquals(503, transport.execute(get()).code);
+		assertEquals(4, script.count);
+		assertEquals(ResilientHttpTransport.State.OPEN, transport.state(get().url));
+
+		Thread.sleep(110);
+
+		assertEquals(200, transport.execute(get()).code);
+		assertEquals(ResilientHttpTransport.State.CLOSED, transport.state(get().url));
+	}
+
+	private static HttpTransport.Request get() throws IOException
+	{
+		return new HttpTransport.Request(new URL("http://example.com/stboard"), Collections.<String, String> emptyMap(), null);
+	}
+
+	private static final class ScriptedTransport implements HttpTransport
+	{
+		private final List<Object> script = new LinkedList<Object>();
+		private int count = 0;
+
+		/**
+		 * @param script
+		 *            status codes to answer with or exceptions to throw, in order; {@code 503} once exhausted
+		 */
+		public ScriptedTransport(final Object... script)
+		{
+			Collections.addAll(this.script, script);
+		}
+
+		public Response execute(final Request request) throws IOException
+		{
+			count++;
+
+			final Object next = script.isEmpty() ? 503 : script.remove(0);
+			if (next instanceof IOException)
+				throw (IOException) next;
+
+			return new Response(request.url, (Integer) next, "", Collections.<String, List<String>> emptyMap(), new ByteArrayInputStream(
+					new byte[0]));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.HttpCookie;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class SessionCookieJarTest
+{
+	@Test
+	public void sessionsAreIsolated()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID");
+		final SessionCookieJar.Session a = jar.session(jar.newSessionKey());
+		final SessionCookieJar.Session b = jar.session(jar.newSessionKey());
+
+		a.set(new HttpCookie("SID", "a"));
+		b.set(new HttpCookie("SID", "b"));
+
+		assertEquals("a", a.get().getValue());
+		assertEquals("b", b.get().getValue());
+
+		a.clear();
+		assertNull(a.get());
+		assertEquals("b", b.get().getValue());
+	}
+
+	@Test
+	public void evictsOldestSession()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID", 2);
+
+		jar.put("1", new HttpCookie("SID", "1"));
+		jar.put("2", new HttpCookie("SID", "2"));
+		jar.put("3", new HttpCookie("SID", "3"));
+
+		assertEquals(2, jar.size());
+		assertNull(jar.get("1"));
+		assertEquals("3", jar.get("3").getValue());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedSession()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID", 2);
+
+		jar.put("1", new HttpCookie("SID", "1"));
+		jar.put("2", new HttpCookie("SID", "2"));
+		jar.get("1");
+		jar.put("3", new HttpCookie("SID", "3"));
+
+		assertEquals("1", jar.get("1").getValue());
+		assertNull(jar.get("2"));
+	}
+
+	@Test
+	public void clearedSessionsFreeTheirSlot()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID", 2);
+
+		for (int i = 0; i < 100; i++)
+		{
+			final SessionCookieJar.Session session = jar.session(jar.newSessionKey());
+			session.set(new HttpCookie("SID", Integer.toString(i)));
+			session.clear();
+		}
+		assertEquals(0, jar.size());
+
+		jar.put("a", new HttpCookie("SID", "a"));
+		jar.put("b", new HttpCookie("SID", "b"));
+		assertEquals("a", jar.get("a").getValue());
+		assertEquals("b", jar.get("b").getValue());
+	}
+
+	@Test
+	public void reputClearedSessionIsNotEvictedByStaleEntry()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID", 2);
+
+		jar.put("1", new HttpCookie("SID", "1"));
+		jar.remove("1");
+		jar.put("2", new HttpCookie("SID", "2"));
+		jar.put("1", new HttpCookie("SID", "1b"));
+		jar.put("1", new HttpCookie("SID", "1c"));
+
+		assertEquals(2, jar.size());
+		assertEquals("1c", jar.get("1").getValue());
+		assertEquals("2", jar.get("2").getValue());
+
+		jar.put("3", new HttpCookie("SID", "3"));
+
+		assertEquals(2, jar.size());
+		assertNull(jar.get("1"));
+		assertEquals("2", jar.get("2").getValue());
+		assertEquals("3", jar.get("3").getValue());
+	}
+
+	@Test
+	public void staysBoundedUnderConcurrentUse() throws Exception
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID", 16);
+		final List<Thread> threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < 8; t++)
+		{
+			final Thread thread = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 1000; i++)
+					{
+						final SessionCookieJar.Session session = jar.session(jar.newSessionKey());
+						session.set(new HttpCookie("SID", Integer.toString(i)));
+						session.get();
+					}
+				}
+			};
+			threads.add(thread);
+			thread.start();
+		}
+		for (final Thread thread : threads)
+			thread.join();
+
+		assertTrue(jar.size() <= 16);
+	}
+
+	@Test
+	public void dropsExpiredCookie()
+	{
+		final SessionCookieJar jar = new SessionCookieJar("SID");
+		final HttpCookie cookie = new HttpCookie("SID", "x");
+		cookie.setMaxAge(0);
+		jar.put("1", cookie);
+
+		assertNull(jar.get("1"));
+		assertEquals(0, jar.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsForeignCookie()
+	{
+		new SessionCookieJar("SID").put("1", new HttpCookie("OTHER", "x"));
+	}
+}
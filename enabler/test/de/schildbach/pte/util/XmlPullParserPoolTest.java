@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * @author Andreas Schildbach
+ */
+public class XmlPullParserPoolTest
+{
+	@Test
+	public void reusesRecycledParser() throws Exception
+	{
+		final XmlPullParser pp = XmlPullParserPool.obtain();
+		pp.setInput(new StringReader("<a><b /></a>"));
+		XmlPullUtil.enter(pp, "a");
+		XmlPullParserPool.recycle(pp);
+
+		final XmlPullParser reused = XmlPullParserPool.obtain();
+		assertSame(pp, reused);
+		reused.setInput(new StringReader("<c />"));
+		reused.nextTag();
+		assertEquals("c", reused.getName());
+		XmlPullParserPool.recycle(reused);
+	}
+
+	@Test
+	public void nestedObtainGetsOwnParser() throws Exception
+	{
+		final XmlPullParser outer = XmlPullParserPool.obtain();
+		final XmlPullParser inner = XmlPullParserPool.obtain();
+		assertNotSame(outer, inner);
+
+		XmlPullParserPool.recycle(inner);
+		XmlPullParserPool.recycle(outer);
+		assertSame(inner, XmlPullParserPool.obtain());
+	}
+}
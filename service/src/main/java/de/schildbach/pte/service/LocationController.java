@@ -17,15 +17,18 @@
 
 package de.schildbach.pte.service;
 
-import java.io.IOException;
+import java.util.concurrent.Callable;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
-import de.schildbach.pte.RtProvider;
+import de.schildbach.pte.NetworkId;
+import de.schildbach.pte.NetworkProvider;
 import de.schildbach.pte.dto.Location;
 import de.schildbach.pte.dto.LocationType;
 import de.schildbach.pte.dto.NearbyStationsResult;
@@ -37,20 +40,49 @@ import de.schildbach.pte.dto.SuggestLocationsResult;
 @Controller
 public class LocationController
 {
-	private final RtProvider provider = new RtProvider();
+	private static final long SUGGEST_TIMEOUT_MS = Long.getLong("pte.timeout.suggest", 5000);
+	private static final long NEARBY_TIMEOUT_MS = Long.getLong("pte.timeout.nearby", 10000);
+
+	private final ProviderRegistry providers;
+	private final QueryExecutor executor;
+
+	@Autowired
+	public LocationController(final ProviderRegistry providers, final QueryExecutor executor)
+	{
+		this.providers = providers;
+		this.executor = executor;
+	}
 
 	@RequestMapping(value = "/location/suggest", method = RequestMethod.GET)
 	@ResponseBody
-	public SuggestLocationsResult suggest(@RequestParam("q") final String query) throws IOException
+	public DeferredResult<SuggestLocationsResult> suggest(
+			@RequestParam(value = "network", required = false, defaultValue = "RT") final NetworkId network,
+			@RequestParam("q") final String query)
 	{
-		return provider.suggestLocations(query);
+		final NetworkProvider provider = providers.get(network);
+		return executor.execute(SUGGEST_TIMEOUT_MS, new Callable<SuggestLocationsResult>()
+		{
+			public SuggestLocationsResult call() throws Exception
+			{
+				return provider.suggestLocations(query);
+			}
+		});
 	}
 
 	@RequestMapping(value = "/location/nearby", method = RequestMethod.GET)
 	@ResponseBody
-	public NearbyStationsResult nearby(@RequestParam("lat") final int lat, @RequestParam("lon") final int lon) throws IOException
+	public DeferredResult<NearbyStationsResult> nearby(
+			@RequestParam(value = "network", required = false, defaultValue = "RT") final NetworkId network,
+			@RequestParam("lat") final int lat, @RequestParam("lon") final int lon)
 	{
+		final NetworkProvider provider = providers.get(network);
 		final Location location = new Location(LocationType.ANY, lat, lon);
-		return provider.queryNearbyStations(location, 5000, 100);
+		return executor.execute(NEARBY_TIMEOUT_MS, new Callable<NearbyStationsResult>()
+		{
+			public NearbyStationsResult call() throws Exception
+			{
+				return provider.queryNearbyStations(location, 5000, 100);
+			}
+		});
 	}
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import de.schildbach.pte.BulkheadNetworkProvider;
+import de.schildbach.pte.util.AdaptiveLimitHttpTransport;
+
+/**
+ * @author Andreas Schildbach
+ */
+@Controller
+public class MetricsController
+{
+	private final ProviderRegistry providers;
+
+	@Autowired
+	public MetricsController(final ProviderRegistry providers)
+	{
+		this.providers = providers;
+	}
+
+	@RequestMapping(value = "/metrics", method = RequestMethod.GET)
+	public void metrics(final Writer writer) throws IOException
+	{
+		writer.write(providers.metrics().toString());
+		for (final BulkheadNetworkProvider bulkhead : providers.bulkheads())
+			writer.write(bulkhead + "\n");
+		writer.write(AdaptiveLimitHttpTransport.DEFAULT.toString());
+	}
+}
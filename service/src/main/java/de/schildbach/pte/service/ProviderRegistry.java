@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.schildbach.pte.service;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.springframework.stereotype.Component;
+
+import de.schildbach.pte.BulkheadNetworkProvider;
+import de.schildbach.pte.MetricsNetworkProvider;
+import de.schildbach.pte.NetworkId;
+import de.schildbach.pte.NetworkProvider;
+import de.schildbach.pte.QueryMetrics;
+
+/**
+ * Providers by network, shared by all controllers. Providers are created on first use only, so that a node doesn't
+ * load the classes and style tables of networks it never serves. Creating the provider of one network doesn't hold up
+ * requests for other networks. All providers are measured into one
+ * {@link QueryMetrics}, and each is isolated by a {@link BulkheadNetworkProvider} of its own, so that a slow network
+ * can't take up all query threads.
+ * 
+ * <p>
+ * Providers that need a key or endpoint to be constructed get it from the system property
+ * {@code pte.provider.<network>}, e.g. {@code -Dpte.provider.PARIS=<authorization>}.
+ * </p>
+ * 
+ * <p>
+ * Bulkhead limits are set via {@code pte.bulkhead.concurrent}, {@code pte.bulkhead.queued} and
+ * {@code pte.bulkhead.wait} (in milliseconds), and can be overridden per network, e.g.
+ * {@code -Dpte.bulkhead.DB.concurrent=16}.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+@Component
+public class ProviderRegistry
+{
+	private static final String PROVIDER_PACKAGE = "de.schildbach.pte.";
+	private static final String PROPERTY_PREFIX = "pte.provider.";
+	private static final String BULKHEAD_PREFIX = "pte.bulkhead.";
+
+	// networks whose provider class doesn't follow the naming convention
+	private static final Map<NetworkId, String> CLASS_NAMES = new EnumMap<NetworkId, String>(NetworkId.class);
+
+	static
+	{
+		CLASS_NAMES.put(NetworkId.DB, "BahnProvider");
+	}
+
+	private final ConcurrentMap<NetworkId, FutureTask<NetworkProvider>> providers = new ConcurrentHashMap<NetworkId, FutureTask<NetworkProvider>>();
+	private final ConcurrentMap<NetworkId, BulkheadNetworkProvider> bulkheads = new ConcurrentHashMap<NetworkId, BulkheadNetworkProvider>();
+	private final QueryMetrics metrics = new QueryMetrics();
+
+	public NetworkProvider get(final NetworkId network)
+	{
+		FutureTask<NetworkProvider> task = providers.get(network);
+
+		if (task == null)
+		{
+			// created on the calling thread, callers asking for the same network meanwhile wait for it
+			final FutureTask<NetworkProvider> newTask = new FutureTask<NetworkProvider>(new Callable<NetworkProvider>()
+			{
+				public NetworkProvider call()
+				{
+					final BulkheadNetworkProvider bulkhead = new BulkheadNetworkProvider(create(network), bulkheadSetting(network, "concurrent",
+							BulkheadNetworkProvider.DEFAULT_MAX_CONCURRENT), bulkheadSetting(network, "queued",
+							BulkheadNetworkProvider.DEFAULT_MAX_QUEUED), bulkheadSetting(network, "wait",
+							(int) BulkheadNetworkProvider.DEFAULT_MAX_WAIT_MS));
+					bulkheads.put(network, bulkhead);
+					return new MetricsNetworkProvider(bulkhead, metrics);
+				}
+			});
+
+			task = providers.putIfAbsent(network, newTask);
+			if (task == null)
+			{
+				task = newTask;
+				task.run();
+			}
+		}
+
+		try
+		{
+			return task.get();
+		}
+		catch (final InterruptedException x)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted while waiting for provider of " + network, x);
+		}
+		catch (final ExecutionException x)
+		{
+			// not kept, so that the next request tries again
+			providers.remove(network, task);
+
+			final Throwable cause = x.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	public QueryMetrics metrics()
+	{
+		return metrics;
+	}
+
+	public Collection<BulkheadNetworkProvider> bulkheads()
+	{
+		return Collections.unmodifiableCollection(bulkheads.values());
+	}
+
+	private static int bulkheadSetting(final NetworkId network, final String name, final int defaultValue)
+	{
+		return Integer.getInteger(BULKHEAD_PREFIX + network.name() + "." + name, Integer.getInteger(BULKHEAD_PREFIX + name, defaultValue));
+	}
+
+	private NetworkProvider create(final NetworkId network)
+	{
+		final String className = CLASS_NAMES.containsKey(network) ? CLASS_NAMES.get(network) : network.name().charAt(0)
+				+ network.name().substring(1).toLowerCase(Locale.ENGLISH) + "Provider";
+
+		final Class<? extends NetworkProvider> providerClass;
+		try
+		{
+			providerClass = Class.forName(PROVIDER_PACKAGE + className).asSubclass(NetworkProvider.class);
+		}
+		catch (final ClassNotFoundException x)
+		{
+			throw new UnknownNetworkException(network, "no provider");
+		}
+
+		try
+		{
+			final String parameter = System.getProperty(PROPERTY_PREFIX + network.name());
+			if (parameter != null)
+			{
+				final Constructor<? extends NetworkProvider> constructor = providerClass.getConstructor(String.class);
+				return constructor.newInstance(parameter);
+			}
+			else
+			{
+				return providerClass.newInstance();
+			}
+		}
+		catch (final NoSuchMethodException x)
+		{
+			throw new UnknownNetworkException(network, "provider takes no parameter");
+		}
+		catch (final InstantiationException x)
+		{
+			throw new UnknownNetworkException(network, "provider needs parameter " + PROPERTY_PREFIX + network.name());
+		}
+		catch (final IllegalAccessException x)
+		{
+			throw new UnknownNetworkException(network, "provider needs parameter " + PROPERTY_PREFIX + network.name());
+		}
+		catch (final InvocationTargetException x)
+		{
+			throw new RuntimeException("cannot create provider for " + network, x.getCause());
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.schildbach.pte.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import de.schildbach.pte.AsyncNetworkProvider;
+import de.schildbach.pte.exception.BulkheadFullException;
+import de.schildbach.pte.exception.CircuitOpenException;
+import de.schildbach.pte.exception.LimitExceededException;
+
+/**
+ * Runs upstream queries on a bounded pool of its own, so that servlet threads are released while waiting for slow
+ * backends. A query that misses its deadline answers with 504 and is cancelled, and a query that finds the pool
+ * saturated answers with 503 right away. So does a query turned away by its network's bulkhead, by an open circuit
+ * breaker or by the concurrency limit of its upstream host.
+ * 
+ * <p>
+ * Pool size and queue length can be set via the system properties {@code pte.query.threads} and
+ * {@code pte.query.queue}. The pool is shut down along with the application context, so that its threads do not
+ * outlive a redeployment.
+ * </p>
+ * 
+ * @author Andreas Schildbach
+ */
+@Component
+public class QueryExecutor implements DisposableBean
+{
+	private final ExecutorService executor = AsyncNetworkProvider.newExecutor("pte-query", Integer.getInteger("pte.query.threads", 64),
+			Integer.getInteger("pte.query.queue", 256));
+
+	public <T> DeferredResult<T> execute(final long timeoutMs, final Callable<T> query)
+	{
+		final DeferredResult<T> result = new DeferredResult<T>(timeoutMs, new QueryTimeoutException(timeoutMs));
+
+		final Future<?> future;
+		try
+		{
+			future = executor.submit(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						result.setResult(query.call());
+					}
+					catch (final BulkheadFullException x)
+					{
+						result.setErrorResult(new QueryRejectedException(x.getMessage()));
+					}
+					catch (final CircuitOpenException x)
+					{
+						result.setErrorResult(new QueryRejectedException(x.getMessage()));
+					}
+					catch (final LimitExceededException x)
+					{
+						result.setErrorResult(new QueryRejectedException(x.getMessage()));
+					}
+					catch (final Exception x)
+					{
+						result.setErrorResult(x);
+					}
+				}
+			});
+		}
+		catch (final RejectedExecutionException x)
+		{
+			result.setErrorResult(new QueryRejectedException());
+			return result;
+		}
+
+		result.onTimeout(new Runnable()
+		{
+			public void run()
+			{
+				future.cancel(true);
+			}
+		});
+
+		return result;
+	}
+
+	public void destroy()
+	{
+		executor.shutdownNow();
+	}
+}
@@ -17,18 +17,21 @@
 
 package de.schildbach.pte.service;
 
-import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import de.schildbach.pte.NetworkId;
+import de.schildbach.pte.NetworkProvider;
 import de.schildbach.pte.NetworkProvider.Accessibility;
 import de.schildbach.pte.NetworkProvider.WalkSpeed;
-import de.schildbach.pte.RtProvider;
 import de.schildbach.pte.dto.Location;
 import de.schildbach.pte.dto.LocationType;
 import de.schildbach.pte.dto.Product;
@@ -40,19 +43,38 @@ import de.schildbach.pte.dto.QueryTripsResult;
 @Controller
 public class TripController
 {
-	private final RtProvider provider = new RtProvider();
+	private static final long TRIP_TIMEOUT_MS = Long.getLong("pte.timeout.trip", 20000);
+
+	private final ProviderRegistry providers;
+	private final QueryExecutor executor;
+
+	@Autowired
+	public TripController(final ProviderRegistry providers, final QueryExecutor executor)
+	{
+		this.providers = providers;
+		this.executor = executor;
+	}
 
 	@RequestMapping(value = "/trip", method = RequestMethod.GET)
 	@ResponseBody
-	public QueryTripsResult trip(@RequestParam(value = "fromType", required = false, defaultValue = "ANY") final LocationType fromType,
+	public DeferredResult<QueryTripsResult> trip(@RequestParam(value = "network", required = false, defaultValue = "RT") final NetworkId network,
+			@RequestParam(value = "fromType", required = false, defaultValue = "ANY") final LocationType fromType,
 			@RequestParam(value = "from", required = false) final String from,
 			@RequestParam(value = "fromId", required = false) final String fromId,
 			@RequestParam(value = "toType", required = false, defaultValue = "ANY") final LocationType toType,
 			@RequestParam(value = "to", required = false) final String to,
-			@RequestParam(value = "toId", required = false) final String toId) throws IOException
+			@RequestParam(value = "toId", required = false) final String toId)
 	{
+		final NetworkProvider provider = providers.get(network);
 		final Location fromLocation = new Location(fromType, fromId, null, from);
 		final Location toLocation = new Location(toType, toId, null, to);
-		return provider.queryTrips(fromLocation, null, toLocation, new Date(), true, Product.ALL, WalkSpeed.NORMAL, Accessibility.NEUTRAL, null);
+		final Date date = new Date();
+		return executor.execute(TRIP_TIMEOUT_MS, new Callable<QueryTripsResult>()
+		{
+			public QueryTripsResult call() throws Exception
+			{
+				return provider.queryTrips(fromLocation, null, toLocation, date, true, Product.ALL, WalkSpeed.NORMAL, Accessibility.NEUTRAL, null);
+			}
+		});
 	}
 }